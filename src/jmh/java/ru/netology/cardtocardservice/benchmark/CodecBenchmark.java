@@ -0,0 +1,53 @@
+package ru.netology.cardtocardservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.http.MockHttpInputMessage;
+import ru.netology.cardtocardservice.controler.TransferMessageConverter;
+import ru.netology.cardtocardservice.domain.TransferInfo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор тела /transfer: ObjectMapper с проверкой Bean Validation против {@link TransferMessageConverter}
+ * <p>
+ * Запуск: mvn -Pbenchmarks test-compile exec:exec -Djmh.args="CodecBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+    private static final byte[] BODY = ("{\"cardFromNumber\":\"4548987854653322\",\"cardFromValidTill\":\"12/99\"," +
+            "\"cardFromCVV\":\"123\",\"cardToNumber\":\"4548987854653311\",\"amount\":{\"value\":500,\"currency\":\"RUR\"}}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    private final TransferMessageConverter converter = new TransferMessageConverter(objectMapper.getFactory(), validator);
+
+    @Benchmark
+    public Object objectMapperWithValidation() throws IOException {
+        TransferInfo transferInfo = objectMapper.readValue(BODY, TransferInfo.class);
+        return validator.validate(transferInfo);
+    }
+
+    @Benchmark
+    public Object transferMessageConverter() throws IOException {
+        return converter.read(TransferInfo.class, new MockHttpInputMessage(BODY));
+    }
+}
@@ -0,0 +1,81 @@
+package ru.netology.cardtocardservice.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import ru.netology.cardtocardservice.domain.AccountTransaction;
+import ru.netology.cardtocardservice.domain.ConfirmType;
+import ru.netology.cardtocardservice.repository.Storagable;
+import ru.netology.cardtocardservice.service.TransferService;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Общее для всех потоков хранилище с заранее накопленной историей из history завершенных транзакций
+ */
+@State(Scope.Benchmark)
+public class LedgerState {
+    private static final int FILL_BATCH = 10_000;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int history;
+
+    @Param({"MAP", "PRIMITIVE", "JOURNAL", "JOURNAL_GROUP_COMMIT", "SINGLE_WRITER"})
+    StorageBackend backend;
+
+    Storagable storage;
+    TransferService transferService;
+
+    private Path directory;
+    private final List<Closeable> resources = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("ledger-benchmark");
+        storage = backend.open(directory, resources);
+        transferService = new TransferService(storage);
+        fillHistory();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (Closeable resource : resources) {
+            resource.close();
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Метод накапливает историю откаченных транзакций: остатки счетов не меняются, таблица транзакций растет
+     */
+    private void fillHistory() {
+        Map<String, AccountTransaction> transactions = storage.getTransactions();
+        for (int filled = 0; filled < history; filled += FILL_BATCH) {
+            int size = Math.min(FILL_BATCH, history - filled);
+            List<String> operationIds = storage.createTransactions(
+                    Collections.nCopies(size, TransferState.transfer(TransferState.CARD_A, TransferState.CARD_B, 1)));
+
+            List<AccountTransaction> created = new ArrayList<>(size);
+            for (String operationId : operationIds) {
+                created.add(transactions.get(operationId));
+            }
+            storage.confirmTransactions(created, Collections.nCopies(size, ConfirmType.ROLLBACK));
+        }
+    }
+}
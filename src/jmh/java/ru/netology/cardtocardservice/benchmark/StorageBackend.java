@@ -0,0 +1,68 @@
+package ru.netology.cardtocardservice.benchmark;
+
+import ru.netology.cardtocardservice.repository.Storagable;
+import ru.netology.cardtocardservice.repository.TransferRepository;
+import ru.netology.cardtocardservice.repository.balance.BalanceStore;
+import ru.netology.cardtocardservice.repository.journal.FileLedgerJournal;
+import ru.netology.cardtocardservice.repository.journal.LedgerJournal;
+import ru.netology.cardtocardservice.repository.ring.SingleWriterLedger;
+import ru.netology.cardtocardservice.repository.shard.ShardedLedger;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Реализации {@link Storagable}, сравниваемые на одинаковой нагрузке
+ * Новая реализация хранилища подключается к бенчмаркам добавлением значения в перечисление
+ */
+public enum StorageBackend {
+    MAP {
+        @Override
+        Storagable open(Path directory, List<Closeable> resources) {
+            return new TransferRepository(BalanceStore.Type.MAP, LedgerJournal.NONE);
+        }
+    },
+    PRIMITIVE {
+        @Override
+        Storagable open(Path directory, List<Closeable> resources) {
+            return new TransferRepository(BalanceStore.Type.PRIMITIVE, LedgerJournal.NONE);
+        }
+    },
+    JOURNAL {
+        @Override
+        Storagable open(Path directory, List<Closeable> resources) {
+            FileLedgerJournal journal = new FileLedgerJournal(directory, false);
+            resources.add(journal);
+            return new TransferRepository(BalanceStore.Type.MAP, journal);
+        }
+    },
+    JOURNAL_GROUP_COMMIT {
+        @Override
+        Storagable open(Path directory, List<Closeable> resources) {
+            FileLedgerJournal journal = new FileLedgerJournal(directory, true);
+            resources.add(journal);
+            return new TransferRepository(BalanceStore.Type.MAP, journal);
+        }
+    },
+    SINGLE_WRITER {
+        @Override
+        Storagable open(Path directory, List<Closeable> resources) {
+            SingleWriterLedger ledger = new SingleWriterLedger();
+            resources.add(ledger::close);
+            return ledger;
+        }
+    },
+    SHARDED {
+        @Override
+        Storagable open(Path directory, List<Closeable> resources) {
+            return new ShardedLedger(4);
+        }
+    };
+
+    /**
+     * @param directory каталог для файлов хранилища
+     * @param resources ресурсы, которые нужно закрыть по окончании прогона
+     */
+    abstract Storagable open(Path directory, List<Closeable> resources);
+}
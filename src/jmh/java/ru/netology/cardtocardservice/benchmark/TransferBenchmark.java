@@ -0,0 +1,81 @@
+package ru.netology.cardtocardservice.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.netology.cardtocardservice.domain.OperationInfo;
+import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.exception.TransferException;
+import ru.netology.cardtocardservice.processor.ValidationProcessor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки горячего пути перевода и подтверждения
+ * <p>
+ * Перевод без подтверждения удерживает сумму на счете, поэтому бенчмарки, создающие транзакцию,
+ * завершают ее откатом или подтверждением в том же вызове: иначе остаток тестового счета исчерпывается
+ * за время прогона. Стоимость doConfirm - разница doConfirm и doTransaction.
+ * Отказ в переводе (TransferException) возвращается как результат и не прерывает прогон
+ * <p>
+ * Запуск: mvn -Pbenchmarks test-compile exec:exec -Djmh.args="TransferBenchmark -p history=1000 -t 4 -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class TransferBenchmark {
+
+    @Benchmark
+    public Object validateTransferInfo(TransferState transfers) {
+        TransferInfo transferInfo = transfers.next();
+        ValidationProcessor.validateTransferInfo(transferInfo);
+        return transferInfo;
+    }
+
+    /**
+     * doTransaction и откат созданной транзакции в хранилище
+     */
+    @Benchmark
+    public Object doTransaction(LedgerState ledger, TransferState transfers) {
+        try {
+            String operationId = ledger.transferService.doTransaction(transfers.next());
+            return ledger.storage.rollbackTransaction(operationId);
+        } catch (TransferException e) {
+            return e;
+        }
+    }
+
+    /**
+     * doTransaction и подтверждение созданной транзакции через doConfirm
+     */
+    @Benchmark
+    public Object doConfirm(LedgerState ledger, TransferState transfers) {
+        try {
+            OperationInfo operationInfo = new OperationInfo();
+            operationInfo.setOperationId(ledger.transferService.doTransaction(transfers.next()));
+            operationInfo.setCode("0000");
+            return ledger.transferService.doConfirm(operationInfo);
+        } catch (TransferException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Создание и подтверждение транзакции напрямую в хранилище, без проверок сервисного слоя
+     */
+    @Benchmark
+    public Object commitTransaction(LedgerState ledger, TransferState transfers) {
+        try {
+            String operationId = ledger.storage.createTransaction(transfers.next());
+            return ledger.storage.commitTransaction(ledger.storage.getTransactions().get(operationId));
+        } catch (TransferException e) {
+            return e;
+        }
+    }
+}
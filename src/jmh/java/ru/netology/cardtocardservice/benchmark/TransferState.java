@@ -0,0 +1,42 @@
+package ru.netology.cardtocardservice.benchmark;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import ru.netology.cardtocardservice.domain.TransferAmount;
+import ru.netology.cardtocardservice.domain.TransferInfo;
+
+/**
+ * Переводы одного потока: поочередно с карты A на карту B и обратно на одну и ту же сумму,
+ * поэтому подтвержденные переводы не исчерпывают остатки тестовых счетов.
+ * Сумма меньше 100, комиссия по ней равна 0
+ */
+@State(Scope.Thread)
+public class TransferState {
+    static final String CARD_A = "4548987854653322";
+    static final String CARD_B = "4548987854653311";
+    private static final int AMOUNT = 25;
+
+    private final TransferInfo forward = transfer(CARD_A, CARD_B, AMOUNT);
+    private final TransferInfo backward = transfer(CARD_B, CARD_A, AMOUNT);
+    private boolean toggle;
+
+    TransferInfo next() {
+        toggle = !toggle;
+        return toggle ? forward : backward;
+    }
+
+    static TransferInfo transfer(String cardFrom, String cardTo, int value) {
+        TransferAmount amount = new TransferAmount();
+        amount.setValue(value);
+        amount.setCurrency("RUR");
+
+        TransferInfo transferInfo = new TransferInfo();
+        transferInfo.setCardFromNumber(cardFrom);
+        transferInfo.setCardFromValidTill("12/99");
+        transferInfo.setCardFromCVV("123");
+        transferInfo.setCardToNumber(cardTo);
+        transferInfo.setAmount(amount);
+        transferInfo.setCommissionAmount(0);
+        return transferInfo;
+    }
+}
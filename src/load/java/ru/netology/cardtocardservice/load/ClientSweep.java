@@ -0,0 +1,104 @@
+package ru.netology.cardtocardservice.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сравнение веб-слоев servlet и reactive на одном клиенте (закрытая модель нагрузки): --clients клиентов
+ * одновременно выполняют по --rounds раундов "перевод, ожидание кода подтверждения --otp-wait, подтверждение".
+ * Следующий запрос клиента отправляется только после ответа на предыдущий, поэтому все клиенты держат
+ * соединения с сервисом открытыми весь прогон
+ * <p>
+ * Задержка запроса считается от его отправки, частота - по всем запросам прогона, включая ожидание кода.
+ * Сервис запускается дважды с spring.main.web-application-type=servlet и reactive, клиент и сценарий не меняются:
+ * mvn -Pcapacity test-compile exec:exec -Dload.main=ru.netology.cardtocardservice.load.ClientSweep
+ * -Dload.args="--target http://localhost:5500 --clients 10000"
+ * <ul>
+ * <li>--scenario, --target, --timeout, --balance - как у {@link LoadGenerator}</li>
+ * <li>--clients - число клиентов (по умолчанию 1000), --rounds - раундов на клиента (по умолчанию 3)</li>
+ * <li>--otp-wait - пауза между ответом на перевод и подтверждением (ISO-8601, по умолчанию PT1S)</li>
+ * </ul>
+ */
+public class ClientSweep {
+    private final Scenario scenario;
+    private final Target target;
+    private final int clients;
+    private final int rounds;
+    private final Duration otpWait;
+    private final AtomicLong requests = new AtomicLong();
+    private final LoadReport report = new LoadReport();
+
+    ClientSweep(Scenario scenario, Target target, int clients, int rounds, Duration otpWait) {
+        this.scenario = scenario;
+        this.target = target;
+        this.clients = clients;
+        this.rounds = rounds;
+        this.otpWait = otpWait;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadGenerator.parseOptions(args);
+        ObjectMapper objectMapper = new ObjectMapper();
+        Scenario scenario = Scenario.load(Path.of(options.getOrDefault("scenario", "src/load/resources/scenarios/capacity.ndjson")), objectMapper);
+        int clients = Integer.parseInt(options.getOrDefault("clients", "1000"));
+        int rounds = Integer.parseInt(options.getOrDefault("rounds", "3"));
+        Duration otpWait = Duration.parse(options.getOrDefault("otp-wait", "PT1S"));
+        if (clients < 1 || rounds < 1 || otpWait.isNegative()) {
+            throw new IllegalArgumentException("clients and rounds must be positive, otp-wait must not be negative");
+        }
+
+        try (Target target = LoadGenerator.createTarget(options, objectMapper)) {
+            System.out.printf("Scenario %s (%d transfers), target %s, %d clients x %d rounds, otp wait %s%n",
+                    scenario.getFile(), scenario.size(), options.getOrDefault("target", LoadGenerator.IN_PROCESS),
+                    clients, rounds, otpWait);
+            new ClientSweep(scenario, target, clients, rounds, otpWait).run();
+        }
+    }
+
+    void run() throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        long started;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int client = 0; client < clients; client++) {
+                int first = client * rounds;
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                        for (int round = 0; round < rounds; round++) {
+                            execute(scenario.get(first + round));
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            started = System.nanoTime();
+            start.countDown();
+            //закрытие исполнителя ждет, пока все клиенты выполнят свои раунды
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("%n%d requests in %.1f s, %.0f req/s%n", requests.get(), seconds, requests.get() / seconds);
+        report.printTable(System.out, seconds);
+    }
+
+    private void execute(Scenario.Flow flow) throws InterruptedException {
+        long sent = System.nanoTime();
+        Target.Outcome transfer = target.transfer(flow.transferBody());
+        report.record("transfer", transfer.result(), System.nanoTime() - sent);
+        requests.incrementAndGet();
+        if (transfer.isOk() && flow.confirmCode() != null) {
+            Thread.sleep(otpWait);
+            sent = System.nanoTime();
+            Target.Outcome confirm = target.confirm(transfer.operationId(), flow.confirmCode());
+            report.record("confirmOperation", confirm.result(), System.nanoTime() - sent);
+            requests.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package ru.netology.cardtocardservice.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.netology.cardtocardservice.domain.OperationInfo;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+
+/**
+ * Запущенный сервис по HTTP/1.1. Результат ошибки - поле id тела ответа (ExceptionInfo),
+ * если его нет - HTTP-статус; ошибки соединения и таймауты учитываются отдельными результатами
+ */
+class HttpTarget implements Target {
+    private final URI transferUri;
+    private final URI confirmUri;
+    private final Duration timeout;
+    private final ObjectMapper objectMapper;
+    private final HttpClient client;
+
+    HttpTarget(URI baseUri, Duration timeout, ObjectMapper objectMapper) {
+        this.transferUri = baseUri.resolve("/transfer");
+        this.confirmUri = baseUri.resolve("/confirmOperation");
+        this.timeout = timeout;
+        this.objectMapper = objectMapper;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    @Override
+    public Outcome transfer(byte[] body) {
+        return post(transferUri, body);
+    }
+
+    @Override
+    public Outcome confirm(String operationId, String code) {
+        OperationInfo operationInfo = new OperationInfo();
+        operationInfo.setOperationId(operationId);
+        operationInfo.setCode(code);
+        try {
+            return post(confirmUri, objectMapper.writeValueAsBytes(operationInfo));
+        } catch (IOException e) {
+            return Outcome.error(e.getClass().getSimpleName());
+        }
+    }
+
+    private Outcome post(URI uri, byte[] body) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        try {
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            JsonNode answer = response.body().length == 0 ? null : objectMapper.readTree(response.body());
+            if (response.statusCode() == 200 && answer != null && answer.hasNonNull("operationId")) {
+                return Outcome.ok(answer.get("operationId").asText());
+            }
+            if (answer != null && answer.hasNonNull("id")) {
+                return Outcome.error(answer.get("id").asText());
+            }
+            return Outcome.error("HTTP " + response.statusCode());
+        } catch (HttpTimeoutException e) {
+            return Outcome.error("TIMEOUT");
+        } catch (IOException e) {
+            return Outcome.error(e.getClass().getSimpleName());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Outcome.error("INTERRUPTED");
+        }
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+}
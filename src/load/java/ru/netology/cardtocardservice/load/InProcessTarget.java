@@ -0,0 +1,71 @@
+package ru.netology.cardtocardservice.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import ru.netology.cardtocardservice.domain.OperationInfo;
+import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.exception.TransferException;
+import ru.netology.cardtocardservice.processor.ValidationProcessor;
+import ru.netology.cardtocardservice.repository.TransferRepository;
+import ru.netology.cardtocardservice.repository.balance.BalanceStore;
+import ru.netology.cardtocardservice.repository.journal.LedgerJournal;
+import ru.netology.cardtocardservice.service.TransferService;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Сервис в процессе генератора: те же проверки, что у контроллера, и {@link TransferService}
+ * над хранилищем в памяти без журнала и срока подтверждения. Замер не включает HTTP и Tomcat
+ */
+class InProcessTarget implements Target {
+    private final ObjectMapper objectMapper;
+    private final ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
+    private final Validator validator = validatorFactory.getValidator();
+    private final TransferService transferService;
+
+    InProcessTarget(BalanceStore.Type balanceStoreType, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.transferService = new TransferService(new TransferRepository(balanceStoreType, LedgerJournal.NONE));
+    }
+
+    @Override
+    public Outcome transfer(byte[] body) {
+        try {
+            //объект перевода создается на каждый вызов: сервис дописывает в него комиссию и время регистрации
+            TransferInfo transferInfo = objectMapper.readValue(body, TransferInfo.class);
+            Set<ConstraintViolation<TransferInfo>> violations = validator.validate(transferInfo);
+            if (!violations.isEmpty()) {
+                return Outcome.error("107");
+            }
+            ValidationProcessor.validateTransferInfo(transferInfo);
+            return Outcome.ok(transferService.doTransaction(transferInfo));
+        } catch (TransferException e) {
+            return Outcome.error(String.valueOf(e.getId()));
+        } catch (IOException | RuntimeException e) {
+            return Outcome.error(e.getClass().getSimpleName());
+        }
+    }
+
+    @Override
+    public Outcome confirm(String operationId, String code) {
+        OperationInfo operationInfo = new OperationInfo();
+        operationInfo.setOperationId(operationId);
+        operationInfo.setCode(code);
+        try {
+            return Outcome.ok(transferService.doConfirm(operationInfo));
+        } catch (TransferException e) {
+            return Outcome.error(String.valueOf(e.getId()));
+        } catch (RuntimeException e) {
+            return Outcome.error(e.getClass().getSimpleName());
+        }
+    }
+
+    @Override
+    public void close() {
+        validatorFactory.close();
+    }
+}
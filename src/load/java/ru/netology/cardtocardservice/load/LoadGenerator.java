@@ -0,0 +1,150 @@
+package ru.netology.cardtocardservice.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.netology.cardtocardservice.repository.balance.BalanceStore;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Нагрузочный тест: сценарии из NDJSON ({@link Scenario}) запускаются с постоянной частотой по расписанию
+ * (открытая модель нагрузки) против сервиса в процессе или запущенного по HTTP
+ * <p>
+ * Момент запуска i-го сценария - start + i / rate и не зависит от ответов на предыдущие сценарии, каждый
+ * сценарий выполняется в своем виртуальном потоке. Задержка /transfer считается от запланированного момента,
+ * а не от фактической отправки, поэтому медленный ответ не откладывает следующие запросы и не скрывается
+ * из статистики (coordinated omission). /confirmOperation отправляется после ответа на перевод, его задержка
+ * считается от этого ответа. Ответы сценариев, запланированных в прогреве, в отчет не попадают
+ * <p>
+ * Запуск: mvn -Pcapacity test-compile exec:exec -Dload.args="--target http://localhost:5500 --rate 500"
+ * <ul>
+ * <li>--scenario - файл сценария, по умолчанию src/load/resources/scenarios/capacity.ndjson</li>
+ * <li>--target - in-process (по умолчанию) или адрес сервиса</li>
+ * <li>--rate - сценариев в секунду, --duration и --warmup - длительность замера и прогрева (ISO-8601)</li>
+ * <li>--max-in-flight - ограничение одновременно выполняемых сценариев, сверх него сценарии отбрасываются</li>
+ * <li>--timeout - таймаут HTTP-запроса, --balance - хранилище остатков сервиса в процессе (MAP, PRIMITIVE)</li>
+ * </ul>
+ */
+public class LoadGenerator {
+    static final String IN_PROCESS = "in-process";
+
+    private final Scenario scenario;
+    private final Target target;
+    private final double rate;
+    private final Duration warmup;
+    private final Duration duration;
+    private final Semaphore inFlight;
+    private final LoadReport report = new LoadReport();
+
+    LoadGenerator(Scenario scenario, Target target, double rate, Duration warmup, Duration duration, int maxInFlight) {
+        this.scenario = scenario;
+        this.target = target;
+        this.rate = rate;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        ObjectMapper objectMapper = new ObjectMapper();
+        Scenario scenario = Scenario.load(Path.of(options.getOrDefault("scenario", "src/load/resources/scenarios/capacity.ndjson")), objectMapper);
+        String targetName = options.getOrDefault("target", IN_PROCESS);
+        double rate = Double.parseDouble(options.getOrDefault("rate", "200"));
+        Duration warmup = Duration.parse(options.getOrDefault("warmup", "PT10S"));
+        Duration duration = Duration.parse(options.getOrDefault("duration", "PT60S"));
+        int maxInFlight = Integer.parseInt(options.getOrDefault("max-in-flight", "10000"));
+        if (rate <= 0 || duration.isNegative() || duration.isZero() || warmup.isNegative() || maxInFlight < 1) {
+            throw new IllegalArgumentException("rate, duration and max-in-flight must be positive, warmup must not be negative");
+        }
+
+        try (Target target = createTarget(options, objectMapper)) {
+            System.out.printf("Scenario %s (%d transfers), target %s, rate %.0f/s, warmup %s, duration %s%n",
+                    scenario.getFile(), scenario.size(), targetName, rate, warmup, duration);
+            new LoadGenerator(scenario, target, rate, warmup, duration, maxInFlight).run();
+        }
+    }
+
+    void run() {
+        long periodNanos = Math.max(1L, Math.round(TimeUnit.SECONDS.toNanos(1) / rate));
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; ; i++) {
+                long intended = start + i * periodNanos;
+                if (intended - end >= 0) {
+                    break;
+                }
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                boolean measured = intended - measureFrom >= 0;
+                if (measured) {
+                    report.schedulerLag(System.nanoTime() - intended);
+                }
+                if (!inFlight.tryAcquire()) {
+                    if (measured) {
+                        report.drop();
+                    }
+                    continue;
+                }
+                Scenario.Flow flow = scenario.get(i);
+                executor.execute(() -> {
+                    try {
+                        execute(flow, intended, measured);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            //закрытие исполнителя ждет ответов на все запущенные сценарии
+        }
+        report.print(System.out, rate, duration.toNanos() / 1e9);
+    }
+
+    private void execute(Scenario.Flow flow, long intended, boolean measured) {
+        Target.Outcome transfer = target.transfer(flow.transferBody());
+        long transferred = System.nanoTime();
+        if (measured) {
+            report.record("transfer", transfer.result(), transferred - intended);
+        }
+        if (transfer.isOk() && flow.confirmCode() != null) {
+            Target.Outcome confirm = target.confirm(transfer.operationId(), flow.confirmCode());
+            if (measured) {
+                report.record("confirmOperation", confirm.result(), System.nanoTime() - transferred);
+            }
+        }
+    }
+
+    /**
+     * @return сервис по --target: in-process (по умолчанию) или адрес сервиса
+     */
+    static Target createTarget(Map<String, String> options, ObjectMapper objectMapper) {
+        String targetName = options.getOrDefault("target", IN_PROCESS);
+        return IN_PROCESS.equals(targetName)
+                ? new InProcessTarget(BalanceStore.Type.valueOf(options.getOrDefault("balance", "MAP")), objectMapper)
+                : new HttpTarget(URI.create(targetName), Duration.parse(options.getOrDefault("timeout", "PT5S")), objectMapper);
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Options are expected as --name value pairs: " + String.join(" ", args));
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+}
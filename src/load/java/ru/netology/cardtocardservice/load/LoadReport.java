@@ -0,0 +1,77 @@
+package ru.netology.cardtocardservice.load;
+
+import ru.netology.cardtocardservice.metrics.LatencyHistogram;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Результаты прогона: гистограмма задержек на каждую пару эндпоинт - результат и итог по эндпоинту
+ */
+class LoadReport {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String ALL = "ALL";
+
+    private final Map<String, Map<String, LatencyHistogram>> endpoints = new ConcurrentHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong maxSchedulerLag = new AtomicLong();
+
+    /**
+     * @param nanos задержка от запланированного момента отправки до получения ответа
+     */
+    void record(String endpoint, String result, long nanos) {
+        Map<String, LatencyHistogram> results = endpoints.computeIfAbsent(endpoint, key -> new ConcurrentHashMap<>());
+        results.computeIfAbsent(result, key -> new LatencyHistogram()).record(nanos);
+        results.computeIfAbsent(ALL, key -> new LatencyHistogram()).record(nanos);
+    }
+
+    /**
+     * Сценарий не запущен: в работе уже максимальное число сценариев
+     */
+    void drop() {
+        dropped.incrementAndGet();
+    }
+
+    /**
+     * @param nanos опоздание запуска сценария относительно расписания на стороне генератора
+     */
+    void schedulerLag(long nanos) {
+        if (nanos > maxSchedulerLag.get()) {
+            maxSchedulerLag.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    void print(PrintStream out, double targetRate, double measuredSeconds) {
+        out.printf("%nTarget rate %.0f scenarios/s, measured %.1f s, dropped %d, max scheduler lag %.2f ms%n",
+                targetRate, measuredSeconds, dropped.get(), maxSchedulerLag.get() / 1e6);
+        printTable(out, measuredSeconds);
+    }
+
+    /**
+     * Метод печатает только таблицу задержек: для замера без расписания запусков (см. {@link ClientSweep})
+     */
+    void printTable(PrintStream out, double measuredSeconds) {
+        out.printf("%-18s %-22s %10s %10s %10s %10s %10s %10s %10s%n",
+                "endpoint", "result", "count", "rate/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<String, Map<String, LatencyHistogram>> endpoint : new TreeMap<>(endpoints).entrySet()) {
+            Map<String, LatencyHistogram> results = new TreeMap<>(endpoint.getValue());
+            LatencyHistogram all = results.remove(ALL);
+            for (Map.Entry<String, LatencyHistogram> result : results.entrySet()) {
+                printRow(out, endpoint.getKey(), result.getKey(), result.getValue(), measuredSeconds);
+            }
+            printRow(out, endpoint.getKey(), ALL, all, measuredSeconds);
+        }
+    }
+
+    private static void printRow(PrintStream out, String endpoint, String result, LatencyHistogram histogram, double seconds) {
+        long count = histogram.count();
+        out.printf("%-18s %-22s %10d %10.1f", endpoint, result, count, count / seconds);
+        for (double quantile : QUANTILES) {
+            out.printf(" %10.3f", histogram.percentile(quantile) / 1e6);
+        }
+        out.printf(" %10.3f%n", histogram.max() / 1e6);
+    }
+}
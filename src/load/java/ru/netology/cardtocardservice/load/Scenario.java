@@ -0,0 +1,75 @@
+package ru.netology.cardtocardservice.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сценарий нагрузки в формате NDJSON: строка - перевод и, если задан, код его подтверждения
+ * <pre>
+ * {"transfer":{тело запроса /transfer},"confirm":"0000"}
+ * </pre>
+ * confirm: 0000 - подтверждение, 0001 - откат, нет поля - перевод остается неподтвержденным.
+ * Пустые строки и строки, начинающиеся с //, пропускаются. Строки выполняются по кругу
+ */
+final class Scenario {
+    private final Path file;
+    private final List<Flow> flows;
+
+    private Scenario(Path file, List<Flow> flows) {
+        this.file = file;
+        this.flows = flows;
+    }
+
+    /**
+     * @param transferBody тело запроса /transfer
+     * @param confirmCode  код /confirmOperation после успешного перевода, null - без подтверждения
+     */
+    record Flow(byte[] transferBody, String confirmCode) {
+    }
+
+    static Scenario load(Path file, ObjectMapper objectMapper) throws IOException {
+        List<Flow> flows = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("//")) {
+                    continue;
+                }
+                JsonNode node = objectMapper.readTree(line);
+                JsonNode transfer = node.get("transfer");
+                if (transfer == null || !transfer.isObject()) {
+                    throw new IOException(String.format("%s:%d: field \"transfer\" with the /transfer body expected", file, lineNumber));
+                }
+                JsonNode confirm = node.get("confirm");
+                flows.add(new Flow(objectMapper.writeValueAsBytes(transfer),
+                        confirm == null || confirm.isNull() ? null : confirm.asText()));
+            }
+        }
+        if (flows.isEmpty()) {
+            throw new IOException(String.format("Scenario %s has no transfers", file));
+        }
+        return new Scenario(file, List.copyOf(flows));
+    }
+
+    Flow get(long index) {
+        return flows.get((int) (index % flows.size()));
+    }
+
+    int size() {
+        return flows.size();
+    }
+
+    Path getFile() {
+        return file;
+    }
+}
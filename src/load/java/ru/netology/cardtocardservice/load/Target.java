@@ -0,0 +1,37 @@
+package ru.netology.cardtocardservice.load;
+
+/**
+ * Сервис под нагрузкой: вызовы /transfer и /confirmOperation в процессе генератора или по HTTP
+ * Вызовы блокирующие, генератор выполняет каждый сценарий в отдельном виртуальном потоке
+ */
+interface Target extends AutoCloseable {
+    String OK = "OK";
+
+    /**
+     * @param body тело запроса /transfer в JSON
+     */
+    Outcome transfer(byte[] body);
+
+    Outcome confirm(String operationId, String code);
+
+    @Override
+    void close();
+
+    /**
+     * @param result      OK, код ошибки сервиса (99 - 110), HTTP-статус ответа без кода ошибки или вид ошибки клиента
+     * @param operationId operationId успешного ответа
+     */
+    record Outcome(String result, String operationId) {
+        static Outcome ok(String operationId) {
+            return new Outcome(OK, operationId);
+        }
+
+        static Outcome error(String result) {
+            return new Outcome(result, null);
+        }
+
+        boolean isOk() {
+            return OK.equals(result);
+        }
+    }
+}
@@ -1,33 +1,61 @@
 package ru.netology.cardtocardservice.advice;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import ru.netology.cardtocardservice.domain.ExceptionInfo;
 import ru.netology.cardtocardservice.exception.*;
+import ru.netology.cardtocardservice.metrics.TransferMetrics;
 
 @RestControllerAdvice
 public class ExceptionAdviceHandler {
+    private final TransferMetrics metrics;
+
+    public ExceptionAdviceHandler() {
+        this(TransferMetrics.DISABLED);
+    }
+
+    @Autowired
+    public ExceptionAdviceHandler(TransferMetrics metrics) {
+        this.metrics = metrics;
+    }
 
     @ExceptionHandler(AccountNotExist.class)
     public ResponseEntity<?> responseEntityAccountNotExist(AccountNotExist e) {
+        metrics.countResult(e.getId());
         return new ResponseEntity<>(new ExceptionInfo(e.getMessage(), e.getId()), HttpStatus.NOT_FOUND);
     }
 
     @ExceptionHandler(NegativeAccountState.class)
     public ResponseEntity<?> responseEntityNegativeAccountState(NegativeAccountState e) {
+        metrics.countResult(e.getId());
         return new ResponseEntity<>(new ExceptionInfo(e.getMessage(),e.getId()), HttpStatus.METHOD_NOT_ALLOWED
         );
     }
 
     @ExceptionHandler(OperationNotExist.class)
     public ResponseEntity<?> responseEntityOperationNotExist(OperationNotExist e) {
+        metrics.countResult(e.getId());
         return new ResponseEntity<>(new ExceptionInfo(e.getMessage(), e.getId()), HttpStatus.BAD_REQUEST);
     }
 
     @ExceptionHandler(UnknownAccountAction.class)
     public ResponseEntity<?> responseEntityUnknownAccountAction(UnknownAccountAction e) {
+        metrics.countResult(e.getId());
         return new ResponseEntity<>(new ExceptionInfo(e.getMessage(), e.getId()), HttpStatus.BAD_REQUEST);
     }
+
+    @ExceptionHandler(IdempotencyKeyConflict.class)
+    public ResponseEntity<?> responseEntityIdempotencyKeyConflict(IdempotencyKeyConflict e) {
+        metrics.countResult(e.getId());
+        return new ResponseEntity<>(new ExceptionInfo(e.getMessage(), e.getId()), HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @ExceptionHandler(AccountImportFailed.class)
+    public ResponseEntity<?> responseEntityAccountImportFailed(AccountImportFailed e) {
+        metrics.countResult(e.getId());
+        return new ResponseEntity<>(new ExceptionInfo(e.getMessage(), e.getId()), HttpStatus.UNPROCESSABLE_ENTITY);
+    }
 }
@@ -0,0 +1,36 @@
+package ru.netology.cardtocardservice.advice;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import ru.netology.cardtocardservice.domain.ExceptionInfo;
+import ru.netology.cardtocardservice.metrics.TransferMetrics;
+
+/**
+ * Ошибки валидации запроса в режиме WebFlux: ответ совпадает с {@link ValidationExceptionHandler}
+ */
+@RestControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveValidationExceptionHandler {
+    private final TransferMetrics metrics;
+
+    public ReactiveValidationExceptionHandler() {
+        this(TransferMetrics.DISABLED);
+    }
+
+    @Autowired
+    public ReactiveValidationExceptionHandler(TransferMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<?> processValidationMessage(WebExchangeBindException e) {
+        metrics.countResult(107);
+        ExceptionInfo exceptionInfo = new ExceptionInfo(e.getAllErrors().get(0).getDefaultMessage(), 107);
+        return new ResponseEntity<>(exceptionInfo, HttpStatus.BAD_REQUEST);
+    }
+}
@@ -1,17 +1,32 @@
 package ru.netology.cardtocardservice.advice;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 import ru.netology.cardtocardservice.domain.ExceptionInfo;
 import ru.netology.cardtocardservice.exception.DateInvalidException;
+import ru.netology.cardtocardservice.exception.RequestFieldInvalid;
 import ru.netology.cardtocardservice.exception.UnknownValidTypeException;
+import ru.netology.cardtocardservice.metrics.TransferMetrics;
 
 
 @RestControllerAdvice
 public class ValidationExceptionHandler {
+    private final TransferMetrics metrics;
+
+    public ValidationExceptionHandler() {
+        this(TransferMetrics.DISABLED);
+    }
+
+    @Autowired
+    public ValidationExceptionHandler(TransferMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<?> processValidationMessage(MethodArgumentNotValidException e) {
 
@@ -23,17 +38,40 @@ public class ValidationExceptionHandler {
         mapError.put("id", new ArrayList<>());
         mapError.put("message", errorMessages);
 */
+        metrics.countResult(107);
         ExceptionInfo exceptionInfo = new ExceptionInfo(e.getAllErrors().get(0).getDefaultMessage(), 107);
         return new ResponseEntity<>(exceptionInfo, HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * Ошибка полей, найденная при разборе тела запроса {@link ru.netology.cardtocardservice.controler.TransferMessageConverter}:
+     * ответ совпадает с ответом на ошибку Bean Validation
+     */
+    @ExceptionHandler(RequestFieldInvalid.class)
+    public ResponseEntity<?> responseEntityRequestFieldInvalid(RequestFieldInvalid e) {
+        metrics.countResult(e.getId());
+        return new ResponseEntity<>(new ExceptionInfo(e.getMessage(), e.getId()), HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Параметр запроса не приводится к типу параметра метода, например нечисловой limit выписки
+     */
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<?> responseEntityArgumentTypeMismatch(MethodArgumentTypeMismatchException e) {
+        metrics.countResult(107);
+        String msg = String.format("Недопустимое значение {%s} параметра %s", e.getValue(), e.getName());
+        return new ResponseEntity<>(new ExceptionInfo(msg, 107), HttpStatus.BAD_REQUEST);
+    }
+
     @ExceptionHandler(DateInvalidException.class)
     public ResponseEntity<?> responseEntityUnknownAccountAction(DateInvalidException e) {
+        metrics.countResult(e.getId());
         return new ResponseEntity<>(new ExceptionInfo(e.getMessage(), e.getId()), HttpStatus.BAD_REQUEST);
     }
 
     @ExceptionHandler(UnknownValidTypeException.class)
     public ResponseEntity<?> responseEntityRuntimeException(UnknownValidTypeException e) {
+        metrics.countResult(e.getId());
         return new ResponseEntity<>(new ExceptionInfo(e.getMessage(), e.getId()), HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
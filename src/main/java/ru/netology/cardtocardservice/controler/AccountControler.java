@@ -0,0 +1,90 @@
+package ru.netology.cardtocardservice.controler;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.netology.cardtocardservice.domain.AccountBalance;
+import ru.netology.cardtocardservice.domain.ImportReport;
+import ru.netology.cardtocardservice.domain.StatementItem;
+import ru.netology.cardtocardservice.service.AccountImportService;
+import ru.netology.cardtocardservice.service.AccountService;
+
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Остаток и выписка по карте
+ * <p>
+ * Выписка отдается страницами от новых транзакций к старым: ответ {"items":[...],"next":"operationId"},
+ * следующая страница запрашивается с from=next, next = null - выписка прочитана полностью.
+ * Строки пишутся в ответ по мере чтения индекса и не собираются в памяти
+ * <p>
+ * POST /accounts/import - загрузка счетов и начальных остатков из NDJSON
+ */
+@RestController
+@RequestMapping("/accounts")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class AccountControler {
+    private final AccountService accountService;
+    private final AccountImportService accountImportService;
+    private final ObjectMapper objectMapper;
+
+    public AccountControler(AccountService accountService, AccountImportService accountImportService, ObjectMapper objectMapper) {
+        this.accountService = accountService;
+        this.accountImportService = accountImportService;
+        this.objectMapper = objectMapper;
+    }
+
+    @GetMapping("/{pan}/balance")
+    public ResponseEntity<AccountBalance> getBalance(@PathVariable String pan) {
+        return new ResponseEntity<>(accountService.getBalance(pan), HttpStatus.OK);
+    }
+
+    @GetMapping("/{pan}/transactions")
+    public ResponseEntity<StreamingResponseBody> getTransactions(@PathVariable String pan,
+                                                                 @RequestParam(required = false) String status,
+                                                                 @RequestParam(required = false) String from,
+                                                                 @RequestParam(defaultValue = "" + AccountService.DEFAULT_LIMIT) int limit) {
+        //проверки параметров выполняются до начала ответа, чтобы ошибка вернулась обычным ответом с кодом
+        Stream<StatementItem> statement = accountService.getStatement(pan, status, from, limit);
+
+        StreamingResponseBody body = outputStream -> {
+            try (statement; JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+                String last = null;
+                int count = 0;
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("items");
+                for (Iterator<StatementItem> items = statement.iterator(); items.hasNext(); ) {
+                    StatementItem item = items.next();
+                    generator.writeObject(item);
+                    last = item.getOperationId();
+                    count++;
+                }
+                generator.writeEndArray();
+                generator.writeStringField("next", count == limit ? last : null);
+                generator.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Загрузка счетов из тела запроса в формате NDJSON (см. {@link AccountImportService}).
+     * Тело читается потоком, ошибка в любой строке - ответ 109 и ни один счет не открывается
+     */
+    @PostMapping("/import")
+    public ResponseEntity<ImportReport> importAccounts(InputStream body) {
+        return new ResponseEntity<>(accountImportService.importAccounts(body), HttpStatus.OK);
+    }
+}
@@ -0,0 +1,83 @@
+package ru.netology.cardtocardservice.controler;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.netology.cardtocardservice.metrics.LatencyHistogram;
+import ru.netology.cardtocardservice.metrics.TransferMetrics;
+import ru.netology.cardtocardservice.repository.HoldExpiryWheel;
+import ru.netology.cardtocardservice.repository.TransferRepository;
+import ru.netology.cardtocardservice.service.IdempotencyCache;
+
+/**
+ * Метрики в текстовом формате Prometheus для сбора локальным агентом (transfer.metrics.enabled=true)
+ * Работает и в режиме Tomcat, и в режиме WebFlux
+ */
+@RestController
+@ConditionalOnProperty(name = "transfer.metrics.enabled", havingValue = "true")
+public class MetricsControler {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final TransferMetrics metrics;
+    private final HoldExpiryWheel expiryWheel;
+    private final IdempotencyCache idempotencyCache;
+    private final ObjectProvider<TransferRepository> transferRepository;
+
+    public MetricsControler(TransferMetrics metrics,
+                            HoldExpiryWheel expiryWheel,
+                            IdempotencyCache idempotencyCache,
+                            ObjectProvider<TransferRepository> transferRepository) {
+        this.metrics = metrics;
+        this.expiryWheel = expiryWheel;
+        this.idempotencyCache = idempotencyCache;
+        this.transferRepository = transferRepository;
+    }
+
+    @GetMapping(value = "/metrics", produces = "text/plain; version=0.0.4; charset=utf-8")
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+
+        out.append("# TYPE transfer_stage_latency_seconds summary\n");
+        for (TransferMetrics.Stage stage : TransferMetrics.Stage.values()) {
+            LatencyHistogram histogram = metrics.histogram(stage);
+            for (double quantile : QUANTILES) {
+                sample(out, "transfer_stage_latency_seconds{stage=\"" + stage.label() + "\",quantile=\"" + quantile + "\"}",
+                        histogram.percentile(quantile) / NANOS_PER_SECOND);
+            }
+            sample(out, "transfer_stage_latency_seconds_sum{stage=\"" + stage.label() + "\"}", histogram.sum() / NANOS_PER_SECOND);
+            sample(out, "transfer_stage_latency_seconds_count{stage=\"" + stage.label() + "\"}", histogram.count());
+            sample(out, "transfer_stage_latency_seconds_max{stage=\"" + stage.label() + "\"}", histogram.max() / NANOS_PER_SECOND);
+        }
+
+        out.append("# TYPE transfer_results_total counter\n");
+        sample(out, "transfer_results_total{code=\"0\"}", metrics.resultCount(TransferMetrics.SUCCESS));
+        for (int code = 99; code <= 110; code++) {
+            sample(out, "transfer_results_total{code=\"" + code + "\"}", metrics.resultCount(code));
+        }
+        sample(out, "transfer_results_total{code=\"other\"}", metrics.resultCount(-1));
+
+        out.append("# TYPE transfer_expired_total counter\n");
+        sample(out, "transfer_expired_total", expiryWheel.getExpiredCount());
+        out.append("# TYPE transfer_idempotency_keys gauge\n");
+        sample(out, "transfer_idempotency_keys", idempotencyCache.size());
+
+        TransferRepository repository = transferRepository.getIfAvailable();
+        if (repository != null) {
+            out.append("# TYPE transfer_archived_transactions gauge\n");
+            sample(out, "transfer_archived_transactions", repository.getArchivedCount());
+            out.append("# TYPE transfer_archive_offheap_bytes gauge\n");
+            sample(out, "transfer_archive_offheap_bytes", repository.getArchiveOffHeapBytes());
+        }
+        return out.toString();
+    }
+
+    private static void sample(StringBuilder out, String name, double value) {
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, long value) {
+        out.append(name).append(' ').append(value).append('\n');
+    }
+}
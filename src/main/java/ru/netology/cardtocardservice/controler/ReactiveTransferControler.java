@@ -0,0 +1,60 @@
+package ru.netology.cardtocardservice.controler;
+
+import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import ru.netology.cardtocardservice.domain.OperationInfo;
+import ru.netology.cardtocardservice.domain.TransactionInfo;
+import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.metrics.TransferMetrics;
+import ru.netology.cardtocardservice.processor.ValidationProcessor;
+import ru.netology.cardtocardservice.service.ReactiveTransferService;
+
+/**
+ * Контроллер для режима WebFlux (spring.main.web-application-type=reactive)
+ * Контракт /transfer и /confirmOperation совпадает с {@link TransferControler}, ошибки обрабатываются
+ * теми же обработчиками advice
+ */
+@Slf4j
+@RestController
+@RequestMapping("/")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveTransferControler {
+    private final ReactiveTransferService transferService;
+    private final TransferMetrics metrics;
+
+    public ReactiveTransferControler(ReactiveTransferService transferService) {
+        this(transferService, TransferMetrics.DISABLED);
+    }
+
+    @Autowired
+    public ReactiveTransferControler(ReactiveTransferService transferService, TransferMetrics metrics) {
+        this.transferService = transferService;
+        this.metrics = metrics;
+    }
+
+    @PostMapping("/transfer")
+    public Mono<TransactionInfo> doTransfer(@Valid @RequestBody TransferInfo transferInfo,
+                                            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        long start = metrics.start();
+        ValidationProcessor.validateTransferInfo(transferInfo);
+        metrics.record(TransferMetrics.Stage.VALIDATION, start);
+
+        log.debug("{}", transferInfo);
+        return transferService.doTransaction(transferInfo, idempotencyKey).map(TransactionInfo::new);
+    }
+
+    @PostMapping("/confirmOperation")
+    public Mono<TransactionInfo> commit(@Valid @RequestBody OperationInfo operationInfo) {
+
+        log.debug("{}", operationInfo);
+        return transferService.doConfirm(operationInfo).map(TransactionInfo::new);
+    }
+}
@@ -0,0 +1,31 @@
+package ru.netology.cardtocardservice.controler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Регистрирует {@link TransferMessageConverter} первым конвертером режима servlet, поэтому тела /transfer
+ * и /confirmOperation не проходят через ObjectMapper. Пакетные запросы (списки) разбираются как прежде
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class TransferCodecConfig implements WebMvcConfigurer {
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    public TransferCodecConfig(ObjectMapper objectMapper, Validator validator) {
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new TransferMessageConverter(objectMapper.getFactory(), validator));
+    }
+}
@@ -1,43 +1,164 @@
 package ru.netology.cardtocardservice.controler;
 
-import jakarta.validation.Valid;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ru.netology.cardtocardservice.domain.BatchItemResult;
+import ru.netology.cardtocardservice.domain.ExceptionInfo;
 import ru.netology.cardtocardservice.domain.OperationInfo;
 import ru.netology.cardtocardservice.domain.TransactionInfo;
 import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.exception.TransferException;
+import ru.netology.cardtocardservice.metrics.TransferMetrics;
 import ru.netology.cardtocardservice.processor.ValidationProcessor;
 import ru.netology.cardtocardservice.service.TransferService;
 
-import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
 
 @Slf4j
 @Validated
 @RestController
 @RequestMapping("/")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class TransferControler {
     private final TransferService transferService;
+    private final Validator validator;
+    private final TransferMetrics metrics;
 
-    public TransferControler(TransferService transferService) {
+    public TransferControler(TransferService transferService, Validator validator) {
+        this(transferService, validator, TransferMetrics.DISABLED);
+    }
+
+    @Autowired
+    public TransferControler(TransferService transferService, Validator validator, TransferMetrics metrics) {
         this.transferService = transferService;
+        this.validator = validator;
+        this.metrics = metrics;
     }
 
+    /**
+     * Регистрация перевода. Повтор запроса с тем же заголовком Idempotency-Key возвращает operationId
+     * первого запроса и не создает новую транзакцию
+     * Поля тела проверяет {@link TransferMessageConverter} при разборе, поэтому @Valid здесь не нужен
+     */
     @PostMapping("/transfer")
-    public ResponseEntity<?> doTransfer(@Valid @RequestBody TransferInfo transferInfo) throws IllegalAccessException, ParseException {
+    public ResponseEntity<?> doTransfer(@RequestBody TransferInfo transferInfo,
+                                        @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        long start = metrics.start();
         ValidationProcessor.validateTransferInfo(transferInfo);
+        metrics.record(TransferMetrics.Stage.VALIDATION, start);
+
+        log.debug("{}", transferInfo);
+        return new ResponseEntity<>(new TransactionInfo(transferService.doTransaction(transferInfo, idempotencyKey)), HttpStatus.OK);
+    }
+
+    /**
+     * Пакетная регистрация переводов. Каждый перевод валидируется отдельно, ошибка одного перевода
+     * возвращается в его элементе ответа и не прерывает обработку пакета
+     */
+    @PostMapping("/transfer/batch")
+    public ResponseEntity<?> doTransferBatch(@RequestBody List<TransferInfo> transfers) {
+        BatchItemResult[] results = new BatchItemResult[transfers.size()];
+        List<TransferInfo> validTransfers = new ArrayList<>(transfers.size());
+        List<Integer> validPositions = new ArrayList<>(transfers.size());
+
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferInfo transferInfo = transfers.get(i);
+            if (transferInfo == null) {
+                results[i] = BatchItemResult.failure(new ExceptionInfo("Перевод не передан", 107));
+                continue;
+            }
+
+            Set<ConstraintViolation<TransferInfo>> violations = validator.validate(transferInfo);
+            if (!violations.isEmpty()) {
+                results[i] = BatchItemResult.failure(new ExceptionInfo(violations.iterator().next().getMessage(), 107));
+                continue;
+            }
+
+            try {
+                ValidationProcessor.validateTransferInfo(transferInfo);
+                validTransfers.add(transferInfo);
+                validPositions.add(i);
+            } catch (TransferException e) {
+                results[i] = BatchItemResult.failure(e);
+            }
+        }
 
-        log.debug(transferInfo.toString());
-        return new ResponseEntity<>(new TransactionInfo(transferService.doTransaction(transferInfo)), HttpStatus.OK);
+        List<BatchItemResult> processed = transferService.doTransactionBatch(validTransfers);
+        for (int i = 0; i < processed.size(); i++) {
+            results[validPositions.get(i)] = processed.get(i);
+        }
+
+        countResults(results);
+        if (log.isDebugEnabled()) {
+            log.debug("Batch of {{}} transfers is processed", transfers.size());
+        }
+        return new ResponseEntity<>(Arrays.asList(results), HttpStatus.OK);
     }
 
+    /**
+     * Подтверждение\откат транзакции, поля тела проверяет {@link TransferMessageConverter}
+     */
     @PostMapping("/confirmOperation")
-    public ResponseEntity<?> commit(@Valid @RequestBody OperationInfo operationInfo) {
+    public ResponseEntity<?> commit(@RequestBody OperationInfo operationInfo) {
 
-        log.debug(operationInfo.toString());
+        log.debug("{}", operationInfo);
         return new ResponseEntity<>(new TransactionInfo(transferService.doConfirm(operationInfo)), HttpStatus.OK);
     }
 
+    /**
+     * Пакетное подтверждение\откат транзакций. Результат каждой операции возвращается в ее элементе ответа
+     */
+    @PostMapping("/confirmOperation/batch")
+    public ResponseEntity<?> commitBatch(@RequestBody List<OperationInfo> operations) {
+        BatchItemResult[] results = new BatchItemResult[operations.size()];
+        List<OperationInfo> validOperations = new ArrayList<>(operations.size());
+        List<Integer> validPositions = new ArrayList<>(operations.size());
+
+        for (int i = 0; i < operations.size(); i++) {
+            OperationInfo operationInfo = operations.get(i);
+            if (operationInfo == null) {
+                results[i] = BatchItemResult.failure(new ExceptionInfo("Операция не передана", 107));
+                continue;
+            }
+
+            Set<ConstraintViolation<OperationInfo>> violations = validator.validate(operationInfo);
+            if (!violations.isEmpty()) {
+                results[i] = BatchItemResult.failure(new ExceptionInfo(violations.iterator().next().getMessage(), 107));
+                continue;
+            }
+            validOperations.add(operationInfo);
+            validPositions.add(i);
+        }
+
+        List<BatchItemResult> processed = transferService.doConfirmBatch(validOperations);
+        for (int i = 0; i < processed.size(); i++) {
+            results[validPositions.get(i)] = processed.get(i);
+        }
+
+        countResults(results);
+        if (log.isDebugEnabled()) {
+            log.debug("Batch of {{}} confirmations is processed", operations.size());
+        }
+        return new ResponseEntity<>(Arrays.asList(results), HttpStatus.OK);
+    }
+
+    /**
+     * Пакетный запрос отвечает 200 и не доходит до обработчиков ошибок, поэтому результат каждого элемента
+     * учитывается в счетчиках кодов ответа здесь
+     */
+    private void countResults(BatchItemResult[] results) {
+        for (BatchItemResult result : results) {
+            metrics.countResult(result.getError() == null ? TransferMetrics.SUCCESS : result.getError().getId());
+        }
+    }
 }
@@ -0,0 +1,252 @@
+package ru.netology.cardtocardservice.controler;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import ru.netology.cardtocardservice.domain.OperationInfo;
+import ru.netology.cardtocardservice.domain.TransferAmount;
+import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.exception.RequestFieldInvalid;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Чтение тел запросов /transfer и /confirmOperation потоковым парсером Jackson без рефлексии
+ * <p>
+ * Поля фиксированной схемы записываются сеттерами прямо в объект запроса, проверки аннотаций Bean Validation
+ * (16 цифр номера карты, MM/YY, 3 цифры CVV, валюта RUR, неотрицательная сумма, обязательные поля) выполняются
+ * по мере чтения полей. Текст ошибки берется у {@link Validator} только для поля с ошибкой,
+ * поэтому ответ (код 107) совпадает с ответом {@link ru.netology.cardtocardservice.advice.ValidationExceptionHandler}.
+ * Неизвестные поля пропускаются, как и при разборе через ObjectMapper
+ */
+public class TransferMessageConverter extends AbstractHttpMessageConverter<Object> {
+    private static final int VALIDATION_ERROR = 107;
+
+    private final JsonFactory jsonFactory;
+    private final Validator validator;
+
+    public TransferMessageConverter(JsonFactory jsonFactory, Validator validator) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.jsonFactory = jsonFactory;
+        this.validator = validator;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == TransferInfo.class || clazz == OperationInfo.class;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(inputMessage.getBody())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new HttpMessageNotReadableException("JSON object expected for " + clazz.getSimpleName(), inputMessage);
+            }
+            return clazz == TransferInfo.class ? readTransferInfo(parser) : readOperationInfo(parser);
+        } catch (JsonProcessingException | NumberFormatException e) {
+            throw new HttpMessageNotReadableException("JSON parse error: " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object object, HttpOutputMessage outputMessage) {
+        throw new UnsupportedOperationException("TransferMessageConverter is read-only");
+    }
+
+    private TransferInfo readTransferInfo(JsonParser parser) throws IOException {
+        TransferInfo transferInfo = new TransferInfo();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "cardFromNumber" -> transferInfo.setCardFromNumber(checkPan("cardFromNumber", readString(parser)));
+                case "cardFromValidTill" -> transferInfo.setCardFromValidTill(checkValidTill(readString(parser)));
+                case "cardFromCVV" -> transferInfo.setCardFromCVV(checkCvv(readString(parser)));
+                case "cardToNumber" -> transferInfo.setCardToNumber(checkPan("cardToNumber", readString(parser)));
+                case "amount" -> transferInfo.setAmount(readAmount(parser));
+                case "transactionRegistrationTime" -> transferInfo.setTransactionRegistrationTime(readString(parser));
+                case "commissionAmount" -> transferInfo.setCommissionAmount(readInteger(parser));
+                default -> parser.skipChildren();
+            }
+        }
+
+        //обязательные поля, которых не было в запросе
+        requirePresent(TransferInfo.class, "cardFromNumber", transferInfo.getCardFromNumber());
+        requirePresent(TransferInfo.class, "cardFromValidTill", transferInfo.getCardFromValidTill());
+        requirePresent(TransferInfo.class, "cardFromCVV", transferInfo.getCardFromCVV());
+        requirePresent(TransferInfo.class, "cardToNumber", transferInfo.getCardToNumber());
+        requirePresent(TransferInfo.class, "amount", transferInfo.getAmount());
+        return transferInfo;
+    }
+
+    private TransferAmount readAmount(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new JsonMappingError(parser, "amount");
+        }
+        TransferAmount amount = new TransferAmount();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "value" -> amount.setValue(checkValue(readInteger(parser)));
+                case "currency" -> amount.setCurrency(checkCurrency(readString(parser)));
+                default -> parser.skipChildren();
+            }
+        }
+        requirePresent(TransferAmount.class, "currency", amount.getCurrency());
+        return amount;
+    }
+
+    private OperationInfo readOperationInfo(JsonParser parser) throws IOException {
+        OperationInfo operationInfo = new OperationInfo();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "operationId" -> operationInfo.setOperationId(checkNotBlank(OperationInfo.class, "operationId", readString(parser)));
+                case "code" -> operationInfo.setCode(checkNotBlank(OperationInfo.class, "code", readString(parser)));
+                default -> parser.skipChildren();
+            }
+        }
+        requirePresent(OperationInfo.class, "operationId", operationInfo.getOperationId());
+        requirePresent(OperationInfo.class, "code", operationInfo.getCode());
+        return operationInfo;
+    }
+
+    /**
+     * Строковое поле: как и ObjectMapper, принимает строку, число или логическое значение
+     */
+    private static String readString(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!token.isScalarValue()) {
+            throw new JsonMappingError(parser, parser.currentName());
+        }
+        return parser.getText();
+    }
+
+    /**
+     * Числовое поле: целое, дробное (отбрасывается дробная часть) или число в строке
+     */
+    private static Integer readInteger(JsonParser parser) throws IOException {
+        return switch (parser.currentToken()) {
+            case VALUE_NULL -> null;
+            case VALUE_NUMBER_INT -> parser.getIntValue();
+            case VALUE_NUMBER_FLOAT -> (int) parser.getDoubleValue();
+            case VALUE_STRING -> parser.getText().isBlank() ? null : Integer.valueOf(parser.getText().trim());
+            default -> throw new JsonMappingError(parser, parser.currentName());
+        };
+    }
+
+    private String checkPan(String field, String value) {
+        if (!isDigits(value, 16)) {
+            throw invalid(TransferInfo.class, field, value);
+        }
+        return value;
+    }
+
+    private String checkCvv(String value) {
+        if (!isDigits(value, 3)) {
+            throw invalid(TransferInfo.class, "cardFromCVV", value);
+        }
+        return value;
+    }
+
+    /**
+     * Формат (0[1-9]|1[012])/[0-9]{2}, срок действия проверяет {@link ru.netology.cardtocardservice.processor.ValidationProcessor}
+     */
+    private String checkValidTill(String value) {
+        if (value == null || value.length() != 5 || value.charAt(2) != '/'
+                || !isDigit(value.charAt(3)) || !isDigit(value.charAt(4))) {
+            throw invalid(TransferInfo.class, "cardFromValidTill", value);
+        }
+        char high = value.charAt(0);
+        char low = value.charAt(1);
+        if (!(high == '0' && low >= '1' && low <= '9') && !(high == '1' && low >= '0' && low <= '2')) {
+            throw invalid(TransferInfo.class, "cardFromValidTill", value);
+        }
+        return value;
+    }
+
+    private Integer checkValue(Integer value) {
+        if (value != null && value < 0) {
+            throw invalid(TransferAmount.class, "value", value);
+        }
+        return value;
+    }
+
+    private String checkCurrency(String value) {
+        if (!"RUR".equals(value)) {
+            throw invalid(TransferAmount.class, "currency", value);
+        }
+        return value;
+    }
+
+    private String checkNotBlank(Class<?> type, String field, String value) {
+        if (value == null || value.isBlank()) {
+            throw invalid(type, field, value);
+        }
+        return value;
+    }
+
+    private void requirePresent(Class<?> type, String field, Object value) {
+        if (value == null) {
+            throw invalid(type, field, null);
+        }
+    }
+
+    /**
+     * Текст ошибки запрашивается у Bean Validation для одного поля, только когда ошибка уже найдена
+     */
+    private <T> RequestFieldInvalid invalid(Class<T> type, String field, Object value) {
+        Set<ConstraintViolation<T>> violations = validator.validateValue(type, field, value);
+        String message = violations.isEmpty()
+                ? String.format("Недопустимое значение поля %s", field)
+                : violations.iterator().next().getMessage();
+        return new RequestFieldInvalid(message, VALIDATION_ERROR);
+    }
+
+    private static boolean isDigits(String value, int length) {
+        if (value == null || value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (!isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Значение поля неподходящего типа JSON (объект вместо строки и т.п.)
+     */
+    private static class JsonMappingError extends JsonProcessingException {
+        JsonMappingError(JsonParser parser, String field) {
+            super("Unexpected " + parser.currentToken() + " for field " + field, parser.currentLocation());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ru.netology.cardtocardservice.dictionary;
+
+import java.util.List;
+
+/**
+ * Описание тарифов в файле transfer.tariff.file (JSON)
+ *
+ * @param defaultTariff тариф для карт, BIN которых не попал ни в один диапазон
+ * @param ranges        тарифы для диапазонов BIN (первые 6 цифр номера карты отправителя), диапазоны не пересекаются
+ */
+public record TariffDefinition(Tariff defaultTariff, List<BinRange> ranges) {
+
+    /**
+     * @param tiers     ступени тарифа по сумме перевода, первая ступень начинается с 0
+     * @param min       минимальная комиссия
+     * @param max       максимальная комиссия, 0 - без ограничения
+     * @param freeLimit переводы на сумму не больше лимита выполняются без комиссии, 0 - без льготы
+     */
+    public record Tariff(List<Tier> tiers, int min, int max, int freeLimit) {
+    }
+
+    /**
+     * @param from   сумма перевода, начиная с которой действует ставка
+     * @param rateBp ставка в базисных пунктах (1/100 процента) от всей суммы перевода
+     */
+    public record Tier(int from, int rateBp) {
+    }
+
+    /**
+     * @param binFrom начало диапазона BIN включительно
+     * @param binTo   конец диапазона BIN включительно
+     */
+    public record BinRange(int binFrom, int binTo, Tariff tariff) {
+    }
+}
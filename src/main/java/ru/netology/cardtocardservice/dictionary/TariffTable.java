@@ -0,0 +1,174 @@
+package ru.netology.cardtocardservice.dictionary;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Скомпилированная неизменяемая таблица тарифов
+ * <p>
+ * Диапазоны BIN хранятся в отсортированных массивах, тариф карты находится двоичным поиском по BIN,
+ * ступени тарифа - массивами порогов и ставок. Расчет комиссии не создает объектов, поэтому таблица
+ * используется на каждом переводе без блокировок, а при перезагрузке тарифов заменяется целиком
+ */
+public final class TariffTable {
+    private static final int BIN_LENGTH = 6;
+    private static final int BASIS_POINTS = 10000;
+
+    /**
+     * Тариф C2C из {@link ComissionTransferDictionary}: процент от суммы перевода без ограничений
+     */
+    public static final TariffTable DEFAULT = compile(new TariffDefinition(
+            new TariffDefinition.Tariff(
+                    List.of(new TariffDefinition.Tier(0, ComissionTransferDictionary.getCommisionList().get("C2C") * 100)),
+                    0, 0, 0),
+            List.of()));
+
+    private final int[] binFrom;
+    private final int[] binTo;
+    private final Tariff[] rangeTariffs;
+    private final Tariff defaultTariff;
+
+    private TariffTable(int[] binFrom, int[] binTo, Tariff[] rangeTariffs, Tariff defaultTariff) {
+        this.binFrom = binFrom;
+        this.binTo = binTo;
+        this.rangeTariffs = rangeTariffs;
+        this.defaultTariff = defaultTariff;
+    }
+
+    /**
+     * Метод проверяет описание тарифов и строит по нему таблицу
+     *
+     * @throws IllegalArgumentException если описание некорректно
+     */
+    public static TariffTable compile(TariffDefinition definition) {
+        if (definition == null || definition.defaultTariff() == null) {
+            throw new IllegalArgumentException("Default tariff is not defined");
+        }
+        List<TariffDefinition.BinRange> ranges = new ArrayList<>(definition.ranges() == null ? List.of() : definition.ranges());
+        ranges.sort(Comparator.comparingInt(TariffDefinition.BinRange::binFrom));
+
+        int[] binFrom = new int[ranges.size()];
+        int[] binTo = new int[ranges.size()];
+        Tariff[] tariffs = new Tariff[ranges.size()];
+        for (int i = 0; i < ranges.size(); i++) {
+            TariffDefinition.BinRange range = ranges.get(i);
+            if (range.binFrom() < 0 || range.binFrom() > range.binTo() || range.binTo() > 999999) {
+                throw new IllegalArgumentException(String.format("Invalid BIN range {%d-%d}", range.binFrom(), range.binTo()));
+            }
+            if (i > 0 && range.binFrom() <= binTo[i - 1]) {
+                throw new IllegalArgumentException(String.format("BIN range {%d-%d} overlaps the previous range", range.binFrom(), range.binTo()));
+            }
+            binFrom[i] = range.binFrom();
+            binTo[i] = range.binTo();
+            tariffs[i] = Tariff.compile(range.tariff());
+        }
+        return new TariffTable(binFrom, binTo, tariffs, Tariff.compile(definition.defaultTariff()));
+    }
+
+    /**
+     * @param cardFromNumber номер карты отправителя
+     * @param amount         сумма перевода
+     * @return комиссия за перевод
+     */
+    public int commission(String cardFromNumber, int amount) {
+        return find(bin(cardFromNumber)).commission(amount);
+    }
+
+    private Tariff find(int bin) {
+        if (bin < 0) {
+            return defaultTariff;
+        }
+        int low = 0;
+        int high = binFrom.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (binFrom[middle] <= bin) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        //high - последний диапазон, начинающийся не позже BIN
+        return high >= 0 && bin <= binTo[high] ? rangeTariffs[high] : defaultTariff;
+    }
+
+    /**
+     * @return BIN карты, -1 - если номер короче 6 цифр
+     */
+    private static int bin(String cardNumber) {
+        if (cardNumber == null || cardNumber.length() < BIN_LENGTH) {
+            return -1;
+        }
+        int bin = 0;
+        for (int i = 0; i < BIN_LENGTH; i++) {
+            int digit = cardNumber.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            bin = bin * 10 + digit;
+        }
+        return bin;
+    }
+
+    private static final class Tariff {
+        private final int[] tierFrom;
+        private final int[] tierRate;
+        private final int min;
+        private final int max;
+        private final int freeLimit;
+
+        private Tariff(int[] tierFrom, int[] tierRate, int min, int max, int freeLimit) {
+            this.tierFrom = tierFrom;
+            this.tierRate = tierRate;
+            this.min = min;
+            this.max = max;
+            this.freeLimit = freeLimit;
+        }
+
+        private static Tariff compile(TariffDefinition.Tariff tariff) {
+            if (tariff == null || tariff.tiers() == null || tariff.tiers().isEmpty()) {
+                throw new IllegalArgumentException("Tariff has no tiers");
+            }
+            if (tariff.min() < 0 || tariff.max() < 0 || (tariff.max() > 0 && tariff.min() > tariff.max()) || tariff.freeLimit() < 0) {
+                throw new IllegalArgumentException(String.format("Invalid tariff limits {min=%d, max=%d, freeLimit=%d}",
+                        tariff.min(), tariff.max(), tariff.freeLimit()));
+            }
+            List<TariffDefinition.Tier> tiers = new ArrayList<>(tariff.tiers());
+            tiers.sort(Comparator.comparingInt(TariffDefinition.Tier::from));
+            if (tiers.get(0).from() != 0) {
+                throw new IllegalArgumentException("First tariff tier must start from 0");
+            }
+
+            int[] tierFrom = new int[tiers.size()];
+            int[] tierRate = new int[tiers.size()];
+            for (int i = 0; i < tiers.size(); i++) {
+                TariffDefinition.Tier tier = tiers.get(i);
+                if (tier.rateBp() < 0 || (i > 0 && tier.from() == tierFrom[i - 1])) {
+                    throw new IllegalArgumentException(String.format("Invalid tariff tier {from=%d, rateBp=%d}", tier.from(), tier.rateBp()));
+                }
+                tierFrom[i] = tier.from();
+                tierRate[i] = tier.rateBp();
+            }
+            return new Tariff(tierFrom, tierRate, tariff.min(), tariff.max(), tariff.freeLimit());
+        }
+
+        private int commission(int amount) {
+            if (amount <= freeLimit) {
+                return 0;
+            }
+            int tier = tierFrom.length - 1;
+            while (tierFrom[tier] > amount) {
+                tier--;
+            }
+            long commission = (long) amount * tierRate[tier] / BASIS_POINTS;
+            if (commission < min) {
+                commission = min;
+            }
+            if (max > 0 && commission > max) {
+                commission = max;
+            }
+            return (int) commission;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ru.netology.cardtocardservice.domain;
+
+import lombok.Data;
+
+/**
+ * Остаток карты: balance - остаток счета, hold - удержания по неподтвержденным транзакциям,
+ * available - сумма, доступная для новых переводов
+ */
+@Data
+public class AccountBalance {
+    private String account;
+    private long balance;
+    private long hold;
+    private long available;
+
+    public AccountBalance(String account, long balance, long hold) {
+        this.account = account;
+        this.balance = balance;
+        this.hold = hold;
+        this.available = balance - hold;
+    }
+}
@@ -6,6 +6,10 @@ import lombok.Data;
 public class AccountTransaction extends TransferInfo {
     private ConfirmType commitCode;
     private String operationId;
+    /**
+     * Ключ транзакции в хранилище, operationId - его внешнее представление
+     */
+    private long operationKey;
     private String transactionProcessedTime;
 
     public AccountTransaction(TransferInfo transferInfo) {
@@ -0,0 +1,31 @@
+package ru.netology.cardtocardservice.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import ru.netology.cardtocardservice.exception.TransferException;
+
+/**
+ * Результат обработки одного элемента пакетного запроса: operationId или описание ошибки
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+    private String operationId;
+    private ExceptionInfo error;
+
+    public static BatchItemResult success(String operationId) {
+        BatchItemResult result = new BatchItemResult();
+        result.setOperationId(operationId);
+        return result;
+    }
+
+    public static BatchItemResult failure(ExceptionInfo error) {
+        BatchItemResult result = new BatchItemResult();
+        result.setError(error);
+        return result;
+    }
+
+    public static BatchItemResult failure(TransferException e) {
+        return failure(new ExceptionInfo(e.getMessage(), e.getId()));
+    }
+}
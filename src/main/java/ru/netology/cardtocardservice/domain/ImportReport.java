@@ -0,0 +1,23 @@
+package ru.netology.cardtocardservice.domain;
+
+import lombok.Data;
+
+/**
+ * Итог загрузки счетов: прочитано строк, открыто счетов, длительность проверки и открытия счетов
+ */
+@Data
+public class ImportReport {
+    private long lines;
+    private long accounts;
+    private long validationMillis;
+    private long publishMillis;
+    private long accountsPerSecond;
+
+    public ImportReport(long lines, long accounts, long validationMillis, long publishMillis) {
+        this.lines = lines;
+        this.accounts = accounts;
+        this.validationMillis = validationMillis;
+        this.publishMillis = publishMillis;
+        this.accountsPerSecond = accounts * 1000 / Math.max(1L, validationMillis + publishMillis);
+    }
+}
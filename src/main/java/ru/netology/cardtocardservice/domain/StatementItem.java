@@ -0,0 +1,43 @@
+package ru.netology.cardtocardservice.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+/**
+ * Строка выписки по карте. Реквизиты карты отправителя (срок действия, CVV) в выписку не попадают
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StatementItem {
+    public static final String DEBIT = "DEBIT";
+    public static final String CREDIT = "CREDIT";
+
+    private String operationId;
+    private String direction;
+    private String counterpartyCard;
+    private Integer amount;
+    private String currency;
+    private Integer commissionAmount;
+    private ConfirmType status;
+    private String registrationTime;
+    private String processedTime;
+
+    /**
+     * @param account карта, по которой строится выписка: для нее транзакция - списание (DEBIT) или зачисление (CREDIT)
+     */
+    public static StatementItem of(String account, AccountTransaction transaction) {
+        StatementItem item = new StatementItem();
+        boolean debit = account.equals(transaction.getCardFromNumber());
+        item.setOperationId(transaction.getOperationId());
+        item.setDirection(debit ? DEBIT : CREDIT);
+        item.setCounterpartyCard(debit ? transaction.getCardToNumber() : transaction.getCardFromNumber());
+        item.setAmount(transaction.getAmount().getValue());
+        item.setCurrency(transaction.getAmount().getCurrency());
+        //комиссию платит отправитель, в выписке получателя она не показывается
+        item.setCommissionAmount(debit ? transaction.getCommissionAmount() : null);
+        item.setStatus(transaction.getCommitCode());
+        item.setRegistrationTime(transaction.getTransactionRegistrationTime());
+        item.setProcessedTime(transaction.getTransactionProcessedTime());
+        return item;
+    }
+}
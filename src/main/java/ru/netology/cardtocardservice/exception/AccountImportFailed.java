@@ -0,0 +1,8 @@
+package ru.netology.cardtocardservice.exception;
+
+public class AccountImportFailed extends TransferException {
+
+    public AccountImportFailed(String msg, Integer id) {
+        super(msg, id);
+    }
+}
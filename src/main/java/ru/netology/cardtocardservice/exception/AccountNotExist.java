@@ -1,14 +1,8 @@
 package ru.netology.cardtocardservice.exception;
 
-public class AccountNotExist extends RuntimeException {
-    private Integer id;
+public class AccountNotExist extends TransferException {
 
     public AccountNotExist(String msg, Integer id) {
-        super(msg);
-        this.id = id;
-    }
-
-    public Integer getId() {
-        return id;
+        super(msg, id);
     }
 }
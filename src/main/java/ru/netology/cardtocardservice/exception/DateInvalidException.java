@@ -1,14 +1,8 @@
 package ru.netology.cardtocardservice.exception;
 
-public class DateInvalidException extends RuntimeException {
-    private Integer id;
+public class DateInvalidException extends TransferException {
 
     public DateInvalidException(String msg, Integer id) {
-        super(msg);
-        this.id = id;
-    }
-
-    public Integer getId() {
-        return id;
+        super(msg, id);
     }
 }
@@ -0,0 +1,8 @@
+package ru.netology.cardtocardservice.exception;
+
+public class IdempotencyKeyConflict extends TransferException {
+
+    public IdempotencyKeyConflict(String msg, Integer id) {
+        super(msg, id);
+    }
+}
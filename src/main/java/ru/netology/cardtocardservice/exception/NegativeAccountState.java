@@ -1,13 +1,8 @@
 package ru.netology.cardtocardservice.exception;
 
-public class NegativeAccountState extends RuntimeException {
-    private Integer id;
-    public NegativeAccountState(String msg, Integer id) {
-        super(msg);
-        this.id = id;
-    }
+public class NegativeAccountState extends TransferException {
 
-    public Integer getId() {
-        return id;
+    public NegativeAccountState(String msg, Integer id) {
+        super(msg, id);
     }
 }
@@ -1,14 +1,8 @@
 package ru.netology.cardtocardservice.exception;
 
-public class OperationNotExist extends RuntimeException {
-    private Integer id;
+public class OperationNotExist extends TransferException {
 
     public OperationNotExist(String msg, Integer id) {
-        super(msg);
-        this.id = id;
-    }
-
-    public Integer getId() {
-        return id;
+        super(msg, id);
     }
 }
@@ -0,0 +1,8 @@
+package ru.netology.cardtocardservice.exception;
+
+public class RequestFieldInvalid extends TransferException {
+
+    public RequestFieldInvalid(String msg, Integer id) {
+        super(msg, id);
+    }
+}
@@ -0,0 +1,17 @@
+package ru.netology.cardtocardservice.exception;
+
+/**
+ * Общий предок прикладных исключений сервиса. Хранит код ошибки, который возвращается клиенту
+ */
+public abstract class TransferException extends RuntimeException {
+    private final Integer id;
+
+    protected TransferException(String msg, Integer id) {
+        super(msg);
+        this.id = id;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+}
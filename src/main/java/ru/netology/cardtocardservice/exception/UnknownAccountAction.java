@@ -1,14 +1,8 @@
 package ru.netology.cardtocardservice.exception;
 
-public class UnknownAccountAction extends RuntimeException {
-    private Integer id;
+public class UnknownAccountAction extends TransferException {
 
     public UnknownAccountAction(String msg, Integer id) {
-        super(msg);
-        this.id = id;
-    }
-
-    public Integer getId() {
-        return id;
+        super(msg, id);
     }
 }
@@ -1,14 +1,8 @@
 package ru.netology.cardtocardservice.exception;
 
-public class UnknownValidTypeException extends RuntimeException {
-    private Integer id;
+public class UnknownValidTypeException extends TransferException {
 
     public UnknownValidTypeException(String msg, Integer id) {
-        super(msg);
-        this.id = id;
-    }
-
-    public Integer getId() {
-        return id;
+        super(msg, id);
     }
 }
@@ -0,0 +1,91 @@
+package ru.netology.cardtocardservice.metrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Метрики горячего пути перевода: гистограммы задержек этапов и счетчики результатов по кодам ответа
+ * <p>
+ * При transfer.metrics.enabled=false методы сводятся к проверке поля final и не читают часы.
+ * Запись не создает объектов и не берет блокировок
+ */
+@Component
+public class TransferMetrics {
+    public static final TransferMetrics DISABLED = new TransferMetrics(false);
+    public static final int SUCCESS = 0;
+    private static final int FIRST_CODE = 99;
+    private static final int LAST_CODE = 110;
+    private static final int OTHER_INDEX = LAST_CODE - FIRST_CODE + 2;
+
+    /**
+     * Этапы обработки перевода
+     */
+    public enum Stage {
+        VALIDATION,
+        CHECK_ACCOUNTS,
+        HOLD,
+        CREATE_TRANSACTION,
+        COMMIT_TRANSACTION;
+
+        public String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final boolean enabled;
+    private final LatencyHistogram[] stages = new LatencyHistogram[Stage.values().length];
+    private final AtomicLongArray results = new AtomicLongArray(OTHER_INDEX + 1);
+
+    public TransferMetrics(@Value("${transfer.metrics.enabled:false}") boolean enabled) {
+        this.enabled = enabled;
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return момент начала этапа для {@link #record(Stage, long)}, 0 - если метрики выключены
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public void record(Stage stage, long start) {
+        if (enabled) {
+            stages[stage.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @param code код ошибки ответа, {@link #SUCCESS} - успешный ответ
+     */
+    public void countResult(int code) {
+        if (enabled) {
+            results.incrementAndGet(resultIndex(code));
+        }
+    }
+
+    public LatencyHistogram histogram(Stage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    /**
+     * @param code код ошибки ответа, {@link #SUCCESS} - успешный ответ, коды вне 99..110 считаются вместе
+     */
+    public long resultCount(int code) {
+        return results.get(resultIndex(code));
+    }
+
+    private static int resultIndex(int code) {
+        if (code == SUCCESS) {
+            return 0;
+        }
+        return code >= FIRST_CODE && code <= LAST_CODE ? code - FIRST_CODE + 1 : OTHER_INDEX;
+    }
+}
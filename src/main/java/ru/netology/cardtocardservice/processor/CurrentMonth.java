@@ -0,0 +1,43 @@
+package ru.netology.cardtocardservice.processor;
+
+import java.time.Clock;
+import java.time.YearMonth;
+
+/**
+ * Номер текущего месяца (год * 12 + месяц - 1), кэшированный до начала следующего месяца
+ * На каждый вызов читается только время часов, календарь пересчитывается один раз на границе месяца
+ */
+public class CurrentMonth {
+    private final Clock clock;
+    private volatile Window window = new Window(0, Long.MIN_VALUE);
+
+    public CurrentMonth(Clock clock) {
+        this.clock = clock;
+    }
+
+    public int index() {
+        Window current = window;
+        if (clock.millis() >= current.nextMonthMillis()) {
+            current = refresh();
+        }
+        return current.index();
+    }
+
+    public static int index(int year, int month) {
+        return year * 12 + month - 1;
+    }
+
+    private Window refresh() {
+        YearMonth month = YearMonth.now(clock);
+        long nextMonthMillis = month.plusMonths(1).atDay(1)
+                .atStartOfDay(clock.getZone())
+                .toInstant()
+                .toEpochMilli();
+        Window refreshed = new Window(index(month.getYear(), month.getMonthValue()), nextMonthMillis);
+        window = refreshed;
+        return refreshed;
+    }
+
+    private record Window(int index, long nextMonthMillis) {
+    }
+}
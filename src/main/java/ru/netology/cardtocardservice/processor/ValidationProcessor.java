@@ -6,53 +6,119 @@ import ru.netology.cardtocardservice.domain.TransferInfo;
 import ru.netology.cardtocardservice.exception.DateInvalidException;
 import ru.netology.cardtocardservice.exception.UnknownValidTypeException;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
+import java.lang.reflect.Method;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
 
+/**
+ * Проверка полей, отмеченных {@link ValidityDatePeriod}
+ * <p>
+ * Аннотации класса читаются один раз: для каждого отмеченного поля строится правило с геттером,
+ * созданным через {@link LambdaMetafactory}, и правила кэшируются в {@link ClassValue}.
+ * Срок MM/YY разбирается арифметически и сравнивается с номером текущего месяца из {@link CurrentMonth},
+ * поэтому проверка не использует рефлексию и не создает объектов дат. Карта действует до конца месяца MM/YY
+ */
 public class ValidationProcessor {
-    public static void validateTransferInfo(TransferInfo transferInfo) throws IllegalAccessException, ParseException {
-        Field[] fields = transferInfo.getClass().getDeclaredFields();
-        for (Field field : fields) {
-            if (field.isAnnotationPresent(ValidityDatePeriod.class)) {
-                ValidityDatePeriod annotation = field.getAnnotation(ValidityDatePeriod.class);
-
-                if (annotation.typeValid().equals(DateValidType.MMYY)) {
-                    String message = annotation.message();
-                    validatePeriodActionCard(transferInfo, field, message);
-                } else {
-                    throw new UnknownValidTypeException("Set the unknown type DateValidType", 503);
-                }
-
-            }
+    private static final ClassValue<List<Rule>> RULES = new ClassValue<>() {
+        @Override
+        protected List<Rule> computeValue(Class<?> type) {
+            return buildRules(type);
         }
-    }
-
-    public static void validatePeriodActionCard(TransferInfo transferInfo, Field field, String message) throws IllegalAccessException, ParseException {
+    };
+    private static final CurrentMonth CURRENT_MONTH = new CurrentMonth(Clock.systemDefaultZone());
 
-        field.setAccessible(true);
-
-        String name = (String) field.get(transferInfo);
-        String[] arrStr = name.split("/");
+    static {
+        //метаданные основного класса запроса читаются при загрузке
+        RULES.get(TransferInfo.class);
+    }
 
-        field.setAccessible(false);
+    public static void validateTransferInfo(TransferInfo transferInfo) {
+        validate(transferInfo, CURRENT_MONTH);
+    }
 
-        //String dateCard = "01." + name.substring(0, 2) + ".20" + name.substring(2);
-        String dateCard = "01." + arrStr[0] + ".20" + arrStr[1];
-        SimpleDateFormat dateFormat = new SimpleDateFormat("dd.MM.yyyy");
+    public static void validate(Object target, CurrentMonth currentMonth) {
+        for (Rule rule : RULES.get(target.getClass())) {
+            rule.check(target, currentMonth);
+        }
+    }
 
-        Date convertedDate = dateFormat.parse(dateCard);
+    /**
+     * Метод проверяет срок действия карты в формате MM/YY
+     *
+     * @return true - если карта действует в текущем месяце или позже
+     */
+    public static boolean isValidPeriod(String validTill, int currentMonthIndex) {
+        if (validTill == null || validTill.length() != 5 || validTill.charAt(2) != '/') {
+            return false;
+        }
+        int month = twoDigits(validTill, 0);
+        int year = twoDigits(validTill, 3);
+        if (month < 1 || month > 12 || year < 0) {
+            return false;
+        }
+        return CurrentMonth.index(2000 + year, month) >= currentMonthIndex;
+    }
 
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(convertedDate);
-        calendar.set(Calendar.DAY_OF_MONTH, calendar.getActualMaximum(Calendar.DAY_OF_MONTH));
+    private static int twoDigits(String value, int offset) {
+        int high = value.charAt(offset) - '0';
+        int low = value.charAt(offset + 1) - '0';
+        if (high < 0 || high > 9 || low < 0 || low > 9) {
+            return -1;
+        }
+        return high * 10 + low;
+    }
 
-        if (new Date().after(calendar.getTime())) {
-            throw new DateInvalidException(message, 110);
+    private static List<Rule> buildRules(Class<?> type) {
+        List<Rule> rules = new ArrayList<>();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                ValidityDatePeriod annotation = field.getAnnotation(ValidityDatePeriod.class);
+                if (annotation != null) {
+                    rules.add(new Rule(getter(current, field), annotation.typeValid(), annotation.message()));
+                }
+            }
         }
+        return List.copyOf(rules);
+    }
 
+    /**
+     * Метод создает функцию-геттер поля по публичному методу get<Поле>
+     */
+    @SuppressWarnings("unchecked")
+    private static Function<Object, String> getter(Class<?> type, Field field) {
+        String name = "get" + Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1);
+        try {
+            Method method = type.getMethod(name);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle handle = lookup.unreflect(method);
+            CallSite site = LambdaMetafactory.metafactory(lookup,
+                    "apply",
+                    MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class),
+                    handle,
+                    MethodType.methodType(String.class, type));
+            return (Function<Object, String>) site.getTarget().invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Field " + type.getName() + "." + field.getName() + " has no accessible getter " + name, e);
+        }
+    }
 
+    private record Rule(Function<Object, String> getter, DateValidType type, String message) {
+        void check(Object target, CurrentMonth currentMonth) {
+            if (!type.equals(DateValidType.MMYY)) {
+                throw new UnknownValidTypeException("Set the unknown type DateValidType", 503);
+            }
+            if (!isValidPeriod(getter.apply(target), currentMonth.index())) {
+                throw new DateInvalidException(message, 110);
+            }
+        }
     }
 }
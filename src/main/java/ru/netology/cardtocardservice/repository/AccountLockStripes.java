@@ -0,0 +1,71 @@
+package ru.netology.cardtocardservice.repository;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Набор блокировок счетов, разбитый на полосы (lock striping)
+ * Счет отображается на полосу по хэшу номера карты. Несколько счетов захватываются
+ * всегда в порядке возрастания номера полосы, поэтому взаимная блокировка невозможна,
+ * а операции по непересекающимся картам выполняются параллельно без общей блокировки
+ */
+public class AccountLockStripes {
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    public AccountLockStripes(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1) << 1);
+        this.locks = new ReentrantLock[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Метод захватывает блокировки всех переданных счетов в порядке возрастания номера полосы
+     *
+     * @param accounts номера счетов (карт)
+     * @return номера захваченных полос, которые нужно передать в {@link #unlock(int[])}
+     */
+    public int[] lock(String... accounts) {
+        int[] stripes = new int[accounts.length];
+        int count = 0;
+        for (String account : accounts) {
+            int stripe = stripeOf(account);
+            if (!contains(stripes, count, stripe)) {
+                stripes[count++] = stripe;
+            }
+        }
+        stripes = count == stripes.length ? stripes : Arrays.copyOf(stripes, count);
+        Arrays.sort(stripes);
+
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+        }
+        return stripes;
+    }
+
+    /**
+     * Метод освобождает ранее захваченные полосы в обратном порядке
+     */
+    public void unlock(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            locks[stripes[i]].unlock();
+        }
+    }
+
+    private int stripeOf(String account) {
+        int hash = account.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static boolean contains(int[] stripes, int count, int stripe) {
+        for (int i = 0; i < count; i++) {
+            if (stripes[i] == stripe) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,108 @@
+package ru.netology.cardtocardservice.repository;
+
+import ru.netology.cardtocardservice.domain.AccountTransaction;
+import ru.netology.cardtocardservice.domain.ConfirmType;
+import ru.netology.cardtocardservice.repository.id.OperationIdGenerator;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Вторичный индекс таблицы транзакций по картам: для каждой карты (Дебета и Кредита) - упорядоченное
+ * множество ключей ее транзакций
+ * <p>
+ * Выписка читается от новых операций к старым: ключи транзакций упорядочены по времени создания
+ * для обоих видов operationId (SNOWFLAKE и UUID строятся из одного ключа Snowflake,
+ * см. {@link ru.netology.cardtocardservice.repository.id.OperationIdGenerator}), поэтому продолжение выписки
+ * с ключа последней прочитанной транзакции (keyset) не просматривает всю таблицу
+ * <p>
+ * Для карты хранится не больше depth самых новых ключей: при добавлении сверх него самый старый ключ
+ * удаляется из индекса, поэтому индекс ограничен и без переноса транзакций в архив (transfer.history.hot-window=PT0S)
+ * <p>
+ * Индекс ведут все хранилища: {@link TransferRepository} и его шарды, а также
+ * {@link ru.netology.cardtocardservice.repository.ring.SingleWriterLedger}
+ */
+public class AccountTransactionIndex {
+    private final Map<String, AccountKeys> accounts = new ConcurrentHashMap<>();
+    private final int depth;
+
+    public AccountTransactionIndex(int depth) {
+        this.depth = depth;
+    }
+
+    public void add(AccountTransaction transaction) {
+        add(transaction.getCardFromNumber(), transaction.getOperationKey());
+        add(transaction.getCardToNumber(), transaction.getOperationKey());
+    }
+
+    public void remove(AccountTransaction transaction) {
+        remove(transaction.getCardFromNumber(), transaction.getOperationKey());
+        remove(transaction.getCardToNumber(), transaction.getOperationKey());
+    }
+
+    /**
+     * @param after        operationId, после которого продолжается выписка (не включается), null - с самой новой транзакции
+     * @param transactions таблица транзакций, ключи которой хранит индекс
+     * @return транзакции карты от новых к старым
+     */
+    public Stream<AccountTransaction> newestFirst(String account, String after, TransactionTable transactions) {
+        long afterKey = after == null ? -1L : OperationIdGenerator.parse(after);
+        if (after != null && afterKey < 0L) {
+            return Stream.empty();
+        }
+        return newestFirst(account, afterKey)
+                .map(transactions::get)
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * @param transactions таблица транзакций, ключи которой хранит индекс
+     * @return true - если у карты есть неподтвержденные транзакции (по Дебету или Кредиту)
+     */
+    public boolean hasPending(String account, TransactionTable transactions) {
+        return newestFirst(account, -1L)
+                .map(transactions::get)
+                .anyMatch(transaction -> transaction != null && transaction.getCommitCode() == ConfirmType.UNKNOWN);
+    }
+
+    /**
+     * @param after ключ, после которого продолжается выписка (не включается), -1 - с самой новой транзакции
+     * @return ключи транзакций карты от новых к старым
+     */
+    Stream<Long> newestFirst(String account, long after) {
+        AccountKeys accountKeys = accounts.get(account);
+        if (accountKeys == null) {
+            return Stream.empty();
+        }
+        NavigableSet<Long> keys = accountKeys.keys;
+        return (after < 0L ? keys.descendingSet() : keys.headSet(after, false).descendingSet()).stream();
+    }
+
+    private void add(String account, long key) {
+        AccountKeys accountKeys = accounts.computeIfAbsent(account, ignored -> new AccountKeys());
+        if (accountKeys.keys.add(key) && accountKeys.size.incrementAndGet() > depth
+                && accountKeys.keys.pollFirst() != null) {
+            accountKeys.size.decrementAndGet();
+        }
+    }
+
+    private void remove(String account, long key) {
+        AccountKeys accountKeys = accounts.get(account);
+        if (accountKeys != null && accountKeys.keys.remove(key)) {
+            accountKeys.size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Ключи карты и их количество: размер ConcurrentSkipListSet считается обходом всего множества
+     */
+    private static final class AccountKeys {
+        private final NavigableSet<Long> keys = new ConcurrentSkipListSet<>();
+        private final AtomicInteger size = new AtomicInteger();
+    }
+}
@@ -0,0 +1,125 @@
+package ru.netology.cardtocardservice.repository;
+
+import ru.netology.cardtocardservice.repository.balance.BalanceStore;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Накопитель зачислений на счет комиссий
+ * <p>
+ * Комиссия каждого подтвержденного перевода зачисляется на один счет, и его блокировка была общей
+ * для всех подтверждений. Зачисления накапливаются в {@link LongAdder}, ячейки которого разнесены
+ * по потокам, поэтому параллельные подтверждения не конкурируют. Накопленная сумма переносится
+ * на остаток счета в хранилище периодически ({@link #fold()}), а чтение остатка добавляет к нему
+ * еще не перенесенную сумму и поэтому всегда точно
+ */
+class CommissionAccumulator {
+    private final BalanceStore store;
+    private final String account;
+    private final LongAdder accrued = new LongAdder();
+    private final StampedLock foldLock = new StampedLock();
+    private long folded;
+
+    CommissionAccumulator(BalanceStore store, String account) {
+        this.store = store;
+        this.account = account;
+    }
+
+    void credit(long amount) {
+        accrued.add(amount);
+    }
+
+    /**
+     * @return остаток счета с учетом еще не перенесенных зачислений
+     */
+    long balance() {
+        long stamp = foldLock.tryOptimisticRead();
+        long balance = store.get(account) + (accrued.sum() - folded);
+        if (!foldLock.validate(stamp)) {
+            stamp = foldLock.readLock();
+            try {
+                balance = store.get(account) + (accrued.sum() - folded);
+            } finally {
+                foldLock.unlockRead(stamp);
+            }
+        }
+        return balance;
+    }
+
+    /**
+     * Метод переносит накопленные зачисления на остаток счета в хранилище
+     * Вызывается под блокировкой счета комиссий: прямые проводки по счету (перевод на него или с него)
+     * изменяют тот же остаток в хранилище
+     *
+     * @return перенесенная сумма
+     */
+    long fold() {
+        long stamp = foldLock.writeLock();
+        try {
+            long total = accrued.sum();
+            long delta = total - folded;
+            if (delta != 0L) {
+                store.add(account, delta);
+                folded = total;
+            }
+            return delta;
+        } finally {
+            foldLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return представление остатков, в котором остаток счета комиссий читается через {@link #balance()}
+     */
+    Map<String, Integer> overlay(Map<String, Integer> balances) {
+        return new AbstractMap<>() {
+            @Override
+            public Integer get(Object key) {
+                if (account.equals(key) && balances.containsKey(key)) {
+                    return Math.toIntExact(balance());
+                }
+                //отсутствующий счет - null
+                return balances.get(key);
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return balances.containsKey(key);
+            }
+
+            @Override
+            public int size() {
+                return balances.size();
+            }
+
+            @Override
+            public Set<Entry<String, Integer>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public Iterator<Entry<String, Integer>> iterator() {
+                        List<Entry<String, Integer>> entries = new ArrayList<>(balances.size());
+                        for (Entry<String, Integer> entry : balances.entrySet()) {
+                            entries.add(account.equals(entry.getKey())
+                                    ? Map.entry(account, Math.toIntExact(balance()))
+                                    : entry);
+                        }
+                        return entries.iterator();
+                    }
+
+                    @Override
+                    public int size() {
+                        return balances.size();
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,154 @@
+package ru.netology.cardtocardservice.repository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongPredicate;
+
+/**
+ * Хэшированное колесо таймеров для автоматического отката неподтвержденных транзакций
+ * <p>
+ * Транзакция ставится в ячейку колеса по ключу (см. {@link ru.netology.cardtocardservice.repository.id.OperationIdGenerator})
+ * и номеру такта истечения срока подтверждения (TTL).
+ * Поток колеса на каждом такте обрабатывает только одну ячейку, поэтому стоимость истечения
+ * в среднем O(1) на транзакцию и не зависит от размера таблицы транзакций. Подтвержденные
+ * и откаченные транзакции из колеса не удаляются: при срабатывании обработчик истечения
+ * возвращает для них false без исключения
+ */
+@Slf4j
+@Component
+public class HoldExpiryWheel {
+    public static final HoldExpiryWheel DISABLED = new HoldExpiryWheel(Duration.ZERO, Duration.ofSeconds(1));
+    private static final int MAX_WHEEL_SIZE = 1 << 16;
+
+    private final long ttlTicks;
+    private final long tickNanos;
+    private final int mask;
+    private final Queue<Timeout>[] wheel;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final LongAdder expiredCount = new LongAdder();
+
+    private volatile long currentTick;
+    private volatile boolean stopped;
+    private Thread worker;
+
+    @SuppressWarnings("unchecked")
+    public HoldExpiryWheel(@Value("${transfer.confirmation.ttl:PT15M}") Duration ttl,
+                           @Value("${transfer.confirmation.tick:PT1S}") Duration tick) {
+        this.tickNanos = tick.toNanos();
+        this.ttlTicks = ttl.isNegative() || ttl.isZero() ? 0L : Math.max(1L, (ttl.toNanos() + tickNanos - 1) / tickNanos);
+
+        int size = (int) Math.min(MAX_WHEEL_SIZE, Long.highestOneBit(Math.max(1L, ttlTicks)) << 1);
+        this.mask = size - 1;
+        this.wheel = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+    }
+
+    public boolean isEnabled() {
+        return ttlTicks > 0;
+    }
+
+    /**
+     * Метод запускает поток колеса
+     *
+     * @param onExpire обработчик истечения срока подтверждения транзакции, получает ключ транзакции и возвращает
+     *                 true - если транзакция откачена, false - если она уже завершена или отсутствует
+     */
+    public void start(LongPredicate onExpire) {
+        if (!isEnabled() || worker != null) {
+            return;
+        }
+        worker = new Thread(() -> run(onExpire), "hold-expiry-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Метод ставит транзакцию на автоматический откат по истечении срока подтверждения
+     */
+    public void schedule(long key) {
+        if (isEnabled()) {
+            scheduled.add(new Timeout(key, currentTick + ttlTicks));
+        }
+    }
+
+    /**
+     * @return количество транзакций, откаченных по истечении срока подтверждения
+     */
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        if (worker != null) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    private void run(LongPredicate onExpire) {
+        long startTime = System.nanoTime();
+        long tick = 0;
+        while (!stopped) {
+            long deadline = startTime + (tick + 1) * tickNanos;
+            long sleep;
+            while (!stopped && (sleep = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(sleep);
+            }
+            tick++;
+            currentTick = tick;
+
+            transferScheduled(tick);
+            int expired = expireBucket(tick, onExpire);
+            if (expired > 0) {
+                log.info("{} unconfirmed transactions are rolled back by confirmation timeout", expired);
+            }
+        }
+    }
+
+    /**
+     * Метод переносит новые транзакции из общей очереди в ячейки колеса
+     */
+    private void transferScheduled(long tick) {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            wheel[(int) (Math.max(timeout.deadlineTick(), tick) & mask)].add(timeout);
+        }
+    }
+
+    private int expireBucket(long tick, LongPredicate onExpire) {
+        Queue<Timeout> bucket = wheel[(int) (tick & mask)];
+        int expired = 0;
+        for (int i = bucket.size(); i > 0; i--) {
+            Timeout timeout = bucket.poll();
+            if (timeout.deadlineTick() > tick) {
+                //срок наступит на одном из следующих оборотов колеса
+                bucket.add(timeout);
+                continue;
+            }
+            try {
+                if (onExpire.test(timeout.key())) {
+                    expired++;
+                    expiredCount.increment();
+                }
+            } catch (RuntimeException e) {
+                log.error("Transaction {} is not rolled back by confirmation timeout", timeout.key(), e);
+            }
+        }
+        return expired;
+    }
+
+    private record Timeout(long key, long deadlineTick) {
+    }
+}
@@ -0,0 +1,44 @@
+package ru.netology.cardtocardservice.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Фоновое обслуживание хранилища LOCKING по расписанию Spring, у каждой задачи свой период:
+ * перенос накопленных комиссий (transfer.commission.fold-interval), перенос завершенных транзакций
+ * в архив (transfer.history.archive-interval) и снимок состояния при включенном журнале (transfer.journal.snapshot-interval)
+ * <p>
+ * Задачи выполняются в пуле планировщика размером spring.task.scheduling.pool.size, поэтому долгий снимок
+ * не задерживает перенос комиссий. Ошибка задачи записывается в лог и не отменяет ее следующие запуски
+ */
+@Component
+@ConditionalOnProperty(name = "transfer.storage.engine", havingValue = "LOCKING", matchIfMissing = true)
+public class LedgerMaintenance {
+    private final TransferRepository transferRepository;
+
+    public LedgerMaintenance(TransferRepository transferRepository) {
+        this.transferRepository = transferRepository;
+    }
+
+    @Scheduled(initialDelayString = "${transfer.commission.fold-interval:PT1S}",
+            fixedDelayString = "${transfer.commission.fold-interval:PT1S}")
+    public void foldCommission() {
+        transferRepository.foldCommission();
+    }
+
+    @Scheduled(initialDelayString = "${transfer.history.archive-interval:PT10S}",
+            fixedDelayString = "${transfer.history.archive-interval:PT10S}")
+    public void archiveFinalized() {
+        transferRepository.archiveFinalized();
+    }
+
+    /**
+     * Без журнала {@link TransferRepository#snapshot()} ничего не делает
+     */
+    @Scheduled(initialDelayString = "${transfer.journal.snapshot-interval:PT5M}",
+            fixedDelayString = "${transfer.journal.snapshot-interval:PT5M}")
+    public void snapshot() {
+        transferRepository.snapshot();
+    }
+}
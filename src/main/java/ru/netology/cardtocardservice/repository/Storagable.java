@@ -1,18 +1,75 @@
 package ru.netology.cardtocardservice.repository;
 
 import ru.netology.cardtocardservice.domain.AccountTransaction;
+import ru.netology.cardtocardservice.domain.ConfirmType;
 import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.exception.TransferException;
 
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 public interface Storagable {
     String createTransaction(TransferInfo transferInfo);
 
+    List<String> createTransactions(List<TransferInfo> transferInfos);
+
     String commitTransaction(AccountTransaction transaction);
 
     String rollbackTransaction(String operationId);
 
+    List<TransferException> confirmTransactions(List<AccountTransaction> transactions, List<ConfirmType> actions);
+
     Map<String, Integer> getAccountRest();
 
     Map<String, AccountTransaction> getTransactions();
+
+    ConfirmType getArchivedState(String operationId);
+
+    /**
+     * @return true - если счет открыт
+     */
+    boolean hasAccount(String account);
+
+    /**
+     * Остаток счета для проверок перевода: читается из хранилища без упаковки и без ограничения диапазоном Integer
+     *
+     * @return остаток счета, 0 - если счет не открыт
+     */
+    long getBalance(String account);
+
+    /**
+     * @return сумма удержаний (перевод + комиссия) по неподтвержденным транзакциям счета, 0 - если удержаний нет
+     */
+    long getHoldAmount(String account);
+
+    /**
+     * Метод открывает пакет счетов с начальными остатками: блокировки счетов пакета захватываются один раз,
+     * сохранение в журнал ожидается один раз для всего пакета. Существующие счета не изменяются
+     *
+     * @param opened отметки по счетам пакета: true - счет открыт этим вызовом. Заполняются до ожидания журнала,
+     *               поэтому при ошибке журнала показывают, какие счета уже открыты в памяти
+     * @return количество открытых счетов
+     */
+    int openAccounts(String[] accounts, long[] amounts, boolean[] opened);
+
+    /**
+     * Метод отменяет открытие пакета счетов (откат неудавшейся загрузки): счет закрывается, только если с ним
+     * еще не было операций - остаток равен начальному, нет удержаний и неподтвержденных транзакций по Дебету
+     * или Кредиту. Закрытие записывается в журнал, поэтому закрытый счет не восстанавливается при старте.
+     * Транзакция, созданная на закрываемый счет параллельно с закрытием, при подтверждении откатывается с ошибкой 100
+     *
+     * @param amounts начальные остатки, с которыми счета были открыты
+     * @return количество закрытых счетов
+     */
+    int closeAccounts(String[] accounts, long[] amounts);
+
+    /**
+     * Метод возвращает транзакции карты (по Дебету и Кредиту) из таблицы транзакций от новых к старым
+     * Хранилища читают выписку по индексу карт ({@link AccountTransactionIndex}), не просматривая всю таблицу
+     *
+     * @param account PAN - номер карты
+     * @param after   operationId, после которого продолжается выписка (не включается), null - с самой новой транзакции
+     */
+    Stream<AccountTransaction> findAccountTransactions(String account, String after);
 }
@@ -0,0 +1,107 @@
+package ru.netology.cardtocardservice.repository;
+
+import ru.netology.cardtocardservice.domain.AccountTransaction;
+import ru.netology.cardtocardservice.repository.id.OperationIdGenerator;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Таблица транзакций хранилища с ключом long (см. {@link OperationIdGenerator})
+ * <p>
+ * Наружу таблица видна картой operationId -> транзакция ({@link #asMap()}): operationId переводится в ключ
+ * разбором строки без вычисления ее хэша, а найденная транзакция возвращается, только если ее operationId
+ * совпадает с запрошенным
+ */
+public class TransactionTable {
+    private final Map<Long, AccountTransaction> transactions = new ConcurrentHashMap<>();
+    private final Map<String, AccountTransaction> view = new OperationIdView();
+
+    public AccountTransaction get(long key) {
+        return transactions.get(key);
+    }
+
+    /**
+     * @return транзакция, null - если ее нет в таблице или operationId не является идентификатором
+     */
+    public AccountTransaction get(String operationId) {
+        long key = OperationIdGenerator.parse(operationId);
+        if (key < 0L) {
+            return null;
+        }
+        AccountTransaction transaction = transactions.get(key);
+        return transaction != null && transaction.getOperationId().equals(operationId) ? transaction : null;
+    }
+
+    public void put(AccountTransaction transaction) {
+        transactions.put(transaction.getOperationKey(), transaction);
+    }
+
+    public void remove(long key) {
+        transactions.remove(key);
+    }
+
+    public int size() {
+        return transactions.size();
+    }
+
+    public Collection<AccountTransaction> values() {
+        return transactions.values();
+    }
+
+    /**
+     * @return таблица в режиме только для чтения с ключом operationId
+     */
+    public Map<String, AccountTransaction> asMap() {
+        return view;
+    }
+
+    private class OperationIdView extends AbstractMap<String, AccountTransaction> {
+        @Override
+        public AccountTransaction get(Object key) {
+            return key instanceof String operationId ? TransactionTable.this.get(operationId) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return transactions.size();
+        }
+
+        @Override
+        public Set<Entry<String, AccountTransaction>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, AccountTransaction>> iterator() {
+                    Iterator<AccountTransaction> values = transactions.values().iterator();
+                    return new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {
+                            return values.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, AccountTransaction> next() {
+                            AccountTransaction transaction = values.next();
+                            return new SimpleImmutableEntry<>(transaction.getOperationId(), transaction);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return transactions.size();
+                }
+            };
+        }
+    }
+}
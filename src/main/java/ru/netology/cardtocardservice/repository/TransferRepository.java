@@ -1,44 +1,362 @@
 package ru.netology.cardtocardservice.repository;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 import ru.netology.cardtocardservice.domain.AccountTransaction;
 import ru.netology.cardtocardservice.domain.ConfirmType;
 import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.exception.AccountNotExist;
+import ru.netology.cardtocardservice.exception.NegativeAccountState;
+import ru.netology.cardtocardservice.exception.OperationNotExist;
+import ru.netology.cardtocardservice.exception.TransferException;
+import ru.netology.cardtocardservice.repository.archive.TransactionArchive;
+import ru.netology.cardtocardservice.repository.balance.BalanceStore;
+import ru.netology.cardtocardservice.repository.id.OperationIdGenerator;
+import ru.netology.cardtocardservice.repository.id.SnowflakeOperationIdGenerator;
+import ru.netology.cardtocardservice.repository.journal.JournalListener;
+import ru.netology.cardtocardservice.repository.journal.LedgerJournal;
+import ru.netology.cardtocardservice.repository.journal.LedgerSnapshot;
 
 import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 
 /**
  * Хранилище обеспечивает хранение in-memory:
  * Остатки по счетам
  * История транзакций по счетам + состояния
+ * <p>
+ * Изменение остатков выполняется под блокировками счетов (см. {@link AccountLockStripes}),
+ * проверка состояния транзакции и перспективного остатка при подтверждении повторяется
+ * под теми же блокировками, поэтому параллельные подтверждения не приводят к двойному списанию
+ * <p>
+ * Остатки и удержания хранятся в {@link BalanceStore}, вид которого задается свойством transfer.storage.balance:
+ * MAP (по умолчанию) или PRIMITIVE - примитивная таблица long -> long для большого числа карт
+ * <p>
+ * Все изменения записываются в {@link LedgerJournal}; при старте состояние восстанавливается из журнала,
+ * тестовые счета открываются, только если их еще нет в восстановленном состоянии.
+ * Снимок состояния (см. {@link #snapshot()}) строится по закрытым сегментам журнала и не останавливает прием переводов
+ * <p>
+ * Неподтвержденные транзакции ставятся в {@link HoldExpiryWheel} и откатываются через {@link #rollbackTransaction(String)},
+ * если не подтверждены за время transfer.confirmation.ttl
+ * <p>
+ * Завершенные транзакции старше transfer.history.hot-window переносятся из таблицы транзакций
+ * в {@link TransactionArchive} (см. {@link #archiveFinalized()}), где хранится только их итоговое состояние
+ * <p>
+ * Транзакции таблицы индексируются по картам Дебета и Кредита в {@link AccountTransactionIndex}
+ * для выписки по карте (см. {@link #findAccountTransactions(String, String)}), в выписке - не больше
+ * {@link #STATEMENT_DEPTH} самых новых транзакций карты
  */
 @Slf4j
 @Repository
+@ConditionalOnProperty(name = "transfer.storage.engine", havingValue = "LOCKING", matchIfMissing = true)
 public class TransferRepository implements Storagable {
-    private final Map<String, Integer> accountRest = new HashMap<>();
-    private final Map<String, AccountTransaction> transactions = new HashMap<>();
+    public static final String COMMISSION_ACCOUNT = "7060100000000001";
+    /**
+     * Сколько самых новых транзакций карты доступно в выписке
+     */
+    public static final int STATEMENT_DEPTH = 100_000;
+    private static final int LOCK_STRIPES = 1024;
+
+    private final BalanceStore accountRest;
+    private final TransactionTable transactions = new TransactionTable();
+    private final AccountTransactionIndex accountIndex = new AccountTransactionIndex(STATEMENT_DEPTH);
+    private final BalanceStore accountHold;
+    private final AccountLockStripes accountLocks = new AccountLockStripes(LOCK_STRIPES);
+    private final Set<Long> pendingTransactions = ConcurrentHashMap.newKeySet();
+    private final LedgerJournal journal;
+    private final HoldExpiryWheel expiryWheel;
+    private final TransactionArchive archive = new TransactionArchive();
+    private final Queue<Finalized> finalizedTransactions = new ConcurrentLinkedQueue<>();
+    private final long hotWindowNanos;
+    private final OperationIdGenerator idGenerator;
+    private final CommissionAccumulator commission;
+    private final Map<String, Integer> accountRestView;
 
     public TransferRepository() {
+        this(BalanceStore.Type.MAP, LedgerJournal.NONE);
+    }
+
+    public TransferRepository(BalanceStore.Type balanceStoreType, LedgerJournal journal) {
+        this(balanceStoreType, journal, HoldExpiryWheel.DISABLED, Duration.ZERO);
+    }
+
+    public TransferRepository(BalanceStore.Type balanceStoreType, LedgerJournal journal,
+                              HoldExpiryWheel expiryWheel, Duration hotWindow) {
+        this(balanceStoreType, journal, expiryWheel, hotWindow, new SnowflakeOperationIdGenerator(0));
+    }
+
+    @Autowired
+    public TransferRepository(@Value("${transfer.storage.balance:MAP}") BalanceStore.Type balanceStoreType,
+                              LedgerJournal journal,
+                              HoldExpiryWheel expiryWheel,
+                              @Value("${transfer.history.hot-window:PT0S}") Duration hotWindow,
+                              OperationIdGenerator idGenerator) {
+        this(balanceStoreType, journal, expiryWheel, hotWindow, idGenerator, account -> true);
+    }
+
+    /**
+     * @param ownsAccount отбор тестовых карт, которые открываются в хранилище (хранилище - шард
+     *                    {@link ru.netology.cardtocardservice.repository.shard.ShardedLedger}); счет комиссий открывается всегда
+     */
+    public TransferRepository(BalanceStore.Type balanceStoreType,
+                              LedgerJournal journal,
+                              HoldExpiryWheel expiryWheel,
+                              Duration hotWindow,
+                              OperationIdGenerator idGenerator,
+                              Predicate<String> ownsAccount) {
+        this.idGenerator = idGenerator;
+        this.hotWindowNanos = hotWindow.isNegative() ? 0L : hotWindow.toNanos();
+        this.accountRest = balanceStoreType.create();
+        this.accountHold = balanceStoreType.create();
+        this.commission = new CommissionAccumulator(accountRest, COMMISSION_ACCOUNT);
+        this.accountRestView = commission.overlay(accountRest.asMap());
+        this.journal = journal;
+        this.expiryWheel = expiryWheel;
+
+        //восстановим состояние из журнала
+        journal.replay(new JournalReplay());
+
         //для теста
-        this.accountRest.put("4548987854653322", 10000000);
-        this.accountRest.put("4548987854653311", 50);
+        long position = 0L;
+        if (ownsAccount.test("4548987854653322")) {
+            position = openAccountIfAbsent("4548987854653322", 10000000);
+        }
+        if (ownsAccount.test("4548987854653311")) {
+            position = Math.max(position, openAccountIfAbsent("4548987854653311", 50));
+        }
 
         //добавим счет комиссии
-        this.accountRest.put("7060100000000001", 0);
+        position = Math.max(position, openAccountIfAbsent(COMMISSION_ACCOUNT, 0));
+        journal.awaitDurable(position);
+        foldCommission();
+
+        //восстановленные неподтвержденные транзакции получают полный срок подтверждения с момента старта
+        pendingTransactions.forEach(expiryWheel::schedule);
+        expiryWheel.start(this::rollbackExpired);
+    }
+
+    /**
+     * Метод открывает счет с начальным остатком, если его еще нет
+     *
+     * @return false - если счет уже существует
+     */
+    public boolean openAccount(String account, long amount) {
+        long position = openAccountIfAbsent(account, amount);
+        journal.awaitDurable(position);
+        return position >= 0L;
+    }
+
+    @Override
+    public int openAccounts(String[] accounts, long[] amounts, boolean[] opened) {
+        int count = 0;
+        long journalPosition = 0L;
+        int[] stripes = accountLocks.lock(accounts);
+        try {
+            for (int i = 0; i < accounts.length; i++) {
+                if (!accountRest.contains(accounts[i])) {
+                    accountRest.put(accounts[i], amounts[i]);
+                    opened[i] = true;
+                    count++;
+                    journalPosition = journal.appendOpen(accounts[i], amounts[i]);
+                }
+            }
+        } finally {
+            accountLocks.unlock(stripes);
+        }
+        journal.awaitDurable(journalPosition);
+        return count;
     }
 
+    @Override
+    public int closeAccounts(String[] accounts, long[] amounts) {
+        List<String> closed = new ArrayList<>(accounts.length);
+        long journalPosition = 0L;
+        int[] stripes = accountLocks.lock(accounts);
+        try {
+            for (int i = 0; i < accounts.length; i++) {
+                if (accountRest.contains(accounts[i]) && accountRest.get(accounts[i]) == amounts[i]
+                        && accountHold.get(accounts[i]) == 0L && !accountIndex.hasPending(accounts[i], transactions)) {
+                    accountRest.remove(accounts[i]);
+                    closed.add(accounts[i]);
+                }
+            }
+            //счета закрыты в памяти до записи в журнал: ошибка журнала не оставляет их открытыми до перезапуска
+            for (String account : closed) {
+                journalPosition = journal.appendClose(account);
+            }
+        } finally {
+            accountLocks.unlock(stripes);
+        }
+        journal.awaitDurable(journalPosition);
+        return closed.size();
+    }
+
+    /**
+     * @return количество транзакций, откаченных по истечении срока подтверждения
+     */
+    public long getExpiredCount() {
+        return expiryWheel.getExpiredCount();
+    }
+
+    /**
+     * @return остатки по счетам в режиме только для чтения, остаток счета комиссий - с учетом
+     * еще не перенесенных на него комиссий
+     */
     public Map<String, Integer> getAccountRest() {
-        return accountRest;
+        return accountRestView;
     }
 
+    /**
+     * Метод переносит накопленные комиссии на остаток счета комиссий
+     *
+     * @return перенесенная сумма
+     */
+    public long foldCommission() {
+        int[] stripes = accountLocks.lock(COMMISSION_ACCOUNT);
+        try {
+            return commission.fold();
+        } finally {
+            accountLocks.unlock(stripes);
+        }
+    }
+
+    /**
+     * @return транзакция таблицы по ключу, null - если ее нет в таблице
+     */
+    public AccountTransaction getTransaction(long key) {
+        return transactions.get(key);
+    }
+
+    /**
+     * @return таблица транзакций с ключом operationId в режиме только для чтения
+     */
     public Map<String, AccountTransaction> getTransactions() {
-        return transactions;
+        return transactions.asMap();
+    }
+
+    /**
+     * Метод возвращает итоговое состояние транзакции, перенесенной в архив
+     *
+     * @param operationId идентификатор транзакции
+     * @return COMMITED или ROLLBACK, null - если транзакции нет в архиве
+     */
+    public ConfirmType getArchivedState(String operationId) {
+        return getArchivedState(OperationIdGenerator.parse(operationId));
+    }
+
+    /**
+     * @param key ключ транзакции
+     * @return COMMITED или ROLLBACK, null - если транзакции нет в архиве
+     */
+    public ConfirmType getArchivedState(long key) {
+        return key < 0L ? null : archive.get(key);
+    }
+
+    /**
+     * @return количество транзакций в архиве
+     */
+    public long getArchivedCount() {
+        return archive.size();
+    }
+
+    /**
+     * @return объем памяти вне кучи, занятый архивом, в байтах
+     */
+    public long getArchiveOffHeapBytes() {
+        return archive.offHeapBytes();
+    }
+
+    /**
+     * Метод возвращает транзакции карты из таблицы транзакций от новых к старым по индексу карт:
+     * транзакции читаются по мере обхода, перенесенные в архив во время обхода пропускаются
+     */
+    @Override
+    public Stream<AccountTransaction> findAccountTransactions(String account, String after) {
+        return accountIndex.newestFirst(account, after, transactions);
+    }
+
+    @Override
+    public boolean hasAccount(String account) {
+        return accountRest.contains(account);
+    }
+
+    /**
+     * @return остаток счета, остаток счета комиссий - с учетом еще не перенесенных на него комиссий
+     */
+    @Override
+    public long getBalance(String account) {
+        return COMMISSION_ACCOUNT.equals(account) ? commission.balance() : accountRest.get(account);
+    }
+
+    /**
+     * Метод возвращает сумму удержаний (перевод + комиссия) по неподтвержденным транзакциям счета
+     *
+     * @param account PAN - номер карты
+     * @return сумма неподтвержденных транзакций, 0 - если удержаний нет
+     */
+    @Override
+    public long getHoldAmount(String account) {
+        return accountHold.get(account);
+    }
+
+    /**
+     * Метод списывает с остатка служебного счета сумму сверх резерва и удержаний по нему, но не больше limit
+     * На счете остается больше суммы удержаний, чтобы неподтвержденные транзакции счета прошли подтверждение.
+     * Изменение не записывается в журнал: метод выравнивает транзитные счета шардов
+     * {@link ru.netology.cardtocardservice.repository.shard.ShardedLedger}, которые работают без журнала
+     *
+     * @param reserve остаток, который счет сохраняет
+     * @param limit   наибольшая списываемая сумма
+     * @return списанная сумма, 0 - если остаток не превышает резерв и удержания
+     */
+    public long withdrawSurplus(String account, long reserve, long limit) {
+        checkNotJournaled(account);
+        int[] stripes = accountLocks.lock(account);
+        try {
+            long surplus = Math.min(limit, accountRest.get(account) - Math.max(reserve, accountHold.get(account) + 1));
+            if (surplus <= 0L) {
+                return 0L;
+            }
+            accountRest.add(account, -surplus);
+            return surplus;
+        } finally {
+            accountLocks.unlock(stripes);
+        }
+    }
+
+    /**
+     * Метод зачисляет на служебный счет сумму, списанную {@link #withdrawSurplus} с такого же счета другого хранилища
+     * Изменение не записывается в журнал
+     */
+    public void depositSurplus(String account, long amount) {
+        checkNotJournaled(account);
+        int[] stripes = accountLocks.lock(account);
+        try {
+            accountRest.add(account, amount);
+        } finally {
+            accountLocks.unlock(stripes);
+        }
+    }
+
+    private void checkNotJournaled(String account) {
+        if (journal.isDurable()) {
+            throw new IllegalStateException(String.format("Account {%s} of a journaled storage can not be changed without a transaction", account));
+        }
     }
 
     /**
@@ -48,100 +366,539 @@ public class TransferRepository implements Storagable {
      * @return возвращает operationId идентификатор, под которым была сохранена транзакция в таблицу проводок
      */
     public String createTransaction(TransferInfo transferInfo) {
+        return createTransaction(transferInfo, false);
+    }
+
+    /**
+     * Метод создает транзакцию, только если остаток счета Дебета покрывает ее сумму вместе с уже удержанными:
+     * проверка и удержание выполняются под одной блокировкой счета Дебета, поэтому параллельные транзакции
+     * не удерживают больше остатка
+     *
+     * @param transferInfo объект испольняемого перевода
+     * @return возвращает operationId идентификатор, под которым была сохранена транзакция в таблицу проводок
+     * @throws NegativeAccountState с ошибкой 101, если остатка счета Дебета недостаточно
+     */
+    public String createCoveredTransaction(TransferInfo transferInfo) {
+        return createTransaction(transferInfo, true);
+    }
+
+    private String createTransaction(TransferInfo transferInfo, boolean covered) {
 
         //Создаем объект транзакции
-        AccountTransaction transaction = new AccountTransaction(transferInfo);
-        transaction.setOperationId(UUID.randomUUID().toString());
-        transaction.setCommitCode(ConfirmType.UNKNOWN);
+        AccountTransaction transaction = newTransaction(transferInfo);
 
-        //Сохраняем в таблицу транзакций
-        transactions.put(transaction.getOperationId(), transaction);
+        //Сохраняем в таблицу транзакций и удерживаем сумму на счете по Дебету
+        long journalPosition;
+        int[] stripes = accountLocks.lock(transaction.getCardFromNumber());
+        try {
+            if (covered && accountRest.get(transaction.getCardFromNumber()) - accountHold.get(transaction.getCardFromNumber())
+                    - getTransactionTotal(transaction) <= 0) {
+                String msg = String.format("The account PAN {%s} has no rest to hold the transaction amount",
+                        transaction.getCardFromNumber());
+                log.error(msg);
+                throw new NegativeAccountState(msg, 101);
+            }
+            applyCreate(transaction);
+            journalPosition = journal.appendCreate(transaction);
+        } finally {
+            accountLocks.unlock(stripes);
+        }
+        journal.awaitDurable(journalPosition);
+        expiryWheel.schedule(transaction.getOperationKey());
 
-        log.debug("Transaction " + transaction.getOperationId() + " is created");
+        log.debug("Transaction {} is created", transaction.getOperationId());
 
         return transaction.getOperationId();
     }
 
+    /**
+     * Метод создает пакет свободных транзакций одной операцией: блокировки счетов Дебета всех переводов
+     * захватываются один раз, сохранение в журнал ожидается один раз для всего пакета
+     *
+     * @param transferInfos объекты исполняемых переводов
+     * @return идентификаторы operationId в порядке переводов
+     */
+    public List<String> createTransactions(List<TransferInfo> transferInfos) {
+        List<AccountTransaction> created = new ArrayList<>(transferInfos.size());
+        String[] accounts = new String[transferInfos.size()];
+        for (int i = 0; i < transferInfos.size(); i++) {
+            AccountTransaction transaction = newTransaction(transferInfos.get(i));
+            created.add(transaction);
+            accounts[i] = transaction.getCardFromNumber();
+        }
+
+        long journalPosition = 0L;
+        int[] stripes = accountLocks.lock(accounts);
+        try {
+            for (AccountTransaction transaction : created) {
+                applyCreate(transaction);
+                journalPosition = journal.appendCreate(transaction);
+            }
+        } finally {
+            accountLocks.unlock(stripes);
+        }
+        journal.awaitDurable(journalPosition);
+
+        List<String> operationIds = new ArrayList<>(created.size());
+        for (AccountTransaction transaction : created) {
+            operationIds.add(transaction.getOperationId());
+            expiryWheel.schedule(transaction.getOperationKey());
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Batch of {{}} transactions is created", operationIds.size());
+        }
+
+        return operationIds;
+    }
+
     /**
      * Метод выполняет подтверждение свободной транзакции
+     * Блокировки счетов Дебета и Кредита захватываются в едином порядке, комиссия зачисляется
+     * через {@link CommissionAccumulator} без блокировки счета комиссий,
+     * состояние транзакции и остаток счета Дебета перепроверяются под блокировкой
      *
      * @param transaction транзакция для подтверждения
      * @return возвращает идентификатор operationId подтвержденной транзакции
      */
     public String commitTransaction(AccountTransaction transaction) {
-        //Списываем комиссию, если она есть на счет комиссий
-        if (transaction.getCommissionAmount() > 0) {
-            log.debug(String.format("Transfer has a commission ={%s}", transaction.getCommissionAmount()));
-            doDebet(transaction.getCardFromNumber(), transaction.getCommissionAmount());
-            doCredit("7060100000000001", transaction.getCommissionAmount());
+        Applied applied;
+        int[] stripes = accountLocks.lock(transaction.getCardFromNumber(), transaction.getCardToNumber());
+        try {
+            applied = commitLocked(transaction);
+        } finally {
+            accountLocks.unlock(stripes);
+        }
+        journal.awaitDurable(applied.journalPosition());
 
-            log.debug(String.format("Account PAN {%s} is debiting commission amount = {%s} and crediting account {7060100000000001}",
-                    transaction.getCommissionAmount(),
-                    transaction.getCardFromNumber()));
+        if (applied.error() != null) {
+            throw applied.error();
         }
+        return transaction.getOperationId();
+    }
 
-        //Списываем сумму перевода со счета по Дебету, пополняем этой же суммой счет по Кредиту
-        doDebet(transaction.getCardFromNumber(), transaction.getAmount().getValue());
-        doCredit(transaction.getCardToNumber(), transaction.getAmount().getValue());
+    /**
+     * Метод выполняет откат свободной транзакции
+     *
+     * @param operationId идентификатор транзакции для отмены транзакции
+     * @return возвращает идентификатор operationId отмененной транзакции
+     */
+    public String rollbackTransaction(String operationId) {
+        AccountTransaction transaction = transactions.get(operationId);
+        if (transaction == null) {
+            throw notExists(operationId, getArchivedState(operationId));
+        }
+        rollback(transaction);
+        return operationId;
+    }
+
+    /**
+     * Метод откатывает транзакцию по истечении срока подтверждения
+     * Состояние проверяется под блокировкой счета Дебета, поэтому завершенная транзакция пропускается без исключения
+     *
+     * @param key ключ транзакции
+     * @return false - если транзакция уже завершена или перенесена в архив
+     */
+    private boolean rollbackExpired(long key) {
+        AccountTransaction transaction = transactions.get(key);
+        if (transaction == null || transaction.getCommitCode() != ConfirmType.UNKNOWN) {
+            return false;
+        }
+        Applied applied;
+        int[] stripes = accountLocks.lock(transaction.getCardFromNumber());
+        try {
+            if (transaction.getCommitCode() != ConfirmType.UNKNOWN) {
+                return false;
+            }
+            applied = rollbackLocked(transaction);
+        } finally {
+            accountLocks.unlock(stripes);
+        }
+        journal.awaitDurable(applied.journalPosition());
+        return true;
+    }
+
+    private void rollback(AccountTransaction transaction) {
+        Applied applied;
+        int[] stripes = accountLocks.lock(transaction.getCardFromNumber());
+        try {
+            applied = rollbackLocked(transaction);
+        } finally {
+            accountLocks.unlock(stripes);
+        }
+        journal.awaitDurable(applied.journalPosition());
+    }
+
+    /**
+     * Метод выполняет пакет подтверждений и откатов за один проход: блокировки всех затронутых счетов
+     * захватываются один раз в едином порядке, сохранение в журнал ожидается один раз для всего пакета
+     *
+     * @param transactions транзакции, желательно отсортированные по счетам
+     * @param actions      COMMITED - подтвердить, ROLLBACK - откатить соответствующую транзакцию
+     * @return ошибки в порядке транзакций, null - если операция выполнена
+     */
+    public List<TransferException> confirmTransactions(List<AccountTransaction> transactions, List<ConfirmType> actions) {
+        String[] accounts = new String[transactions.size() * 2];
+        for (int i = 0; i < transactions.size(); i++) {
+            accounts[i * 2] = transactions.get(i).getCardFromNumber();
+            accounts[i * 2 + 1] = transactions.get(i).getCardToNumber();
+        }
 
-        log.debug(String.format("Account PAN {%s} is debiting amount = {%s} and crediting amount {%s} to account {%s}",
-                transaction.getCardFromNumber(),
-                transaction.getAmount().getValue(),
-                transaction.getAmount().getValue(),
-                transaction.getCardToNumber()));
+        TransferException[] errors = new TransferException[transactions.size()];
+        long journalPosition = 0L;
+        int[] stripes = accountLocks.lock(accounts);
+        try {
+            for (int i = 0; i < transactions.size(); i++) {
+                try {
+                    Applied applied = actions.get(i) == ConfirmType.COMMITED
+                            ? commitLocked(transactions.get(i))
+                            : rollbackLocked(transactions.get(i));
+                    journalPosition = Math.max(journalPosition, applied.journalPosition());
+                    errors[i] = applied.error();
+                } catch (TransferException e) {
+                    errors[i] = e;
+                }
+            }
+        } finally {
+            accountLocks.unlock(stripes);
+        }
+        journal.awaitDurable(journalPosition);
+
+        return Arrays.asList(errors);
+    }
+
+    /**
+     * Метод подтверждает транзакцию. Вызывается под блокировками счетов Дебета и Кредита
+     * Если перспективный остаток счета Дебета отрицательный, транзакция откатывается и возвращается ошибка 102,
+     * если счет Кредита закрыт после создания транзакции (см. {@link #closeAccounts}) - ошибка 100
+     */
+    private Applied commitLocked(AccountTransaction transaction) {
+        checkUnknownState(transaction);
+        if (!accountRest.contains(transaction.getCardToNumber())) {
+            String processedTime = updateTransaction(transaction, ConfirmType.ROLLBACK, currentTime());
+            long journalPosition = journal.appendRollback(transaction.getOperationKey(), processedTime);
+
+            String msg = String.format("Account {%s} is closed. The transaction was rejected (ROLLBACK)", transaction.getCardToNumber());
+            log.error(msg);
+            return new Applied(journalPosition, new AccountNotExist(msg, 100));
+        }
+        if (COMMISSION_ACCOUNT.equals(transaction.getCardFromNumber())) {
+            //списание со счета комиссий проверяется по остатку со всеми накопленными комиссиями
+            commission.fold();
+        }
+
+        if (accountRest.get(transaction.getCardFromNumber()) - getTransactionTotal(transaction) <= 0) {
+            String processedTime = updateTransaction(transaction, ConfirmType.ROLLBACK, currentTime());
+            long journalPosition = journal.appendRollback(transaction.getOperationKey(), processedTime);
+
+            String msg = String.format("The account PAN {%s} status may receive a negative balance, " +
+                    "operation does not possible. The transaction was rejected (ROLLBACK)", transaction.getCardFromNumber());
+            log.error(msg);
+            return new Applied(journalPosition, new NegativeAccountState(msg, 102));
+        }
+
+        applyCommit(transaction);
 
         //Подтверждаем транзакцию
-        updateTransaction(transaction.getOperationId(), ConfirmType.COMMITED);
+        String processedTime = updateTransaction(transaction, ConfirmType.COMMITED, currentTime());
+        long journalPosition = journal.appendCommit(transaction.getOperationKey(), processedTime);
 
-        log.debug(String.format("Transaction {%s} is committed", transaction.getOperationId()));
+        log.debug("Transaction {{}} is committed", transaction.getOperationId());
 
-        log.debug(String.format("Card (debet) {%s} amount is {%s} and Card (credit) {%s} amount is {%s}",
-                transaction.getCardFromNumber(),
-                accountRest.get(transaction.getCardFromNumber()),
-                transaction.getCardToNumber(),
-                accountRest.get(transaction.getCardToNumber())));
+        if (log.isDebugEnabled()) {
+            log.debug("Card (debet) {{}} amount is {{}} and Card (credit) {{}} amount is {{}}",
+                    transaction.getCardFromNumber(),
+                    accountRest.get(transaction.getCardFromNumber()),
+                    transaction.getCardToNumber(),
+                    accountRest.get(transaction.getCardToNumber()));
+        }
 
-        return transaction.getOperationId();
+        return new Applied(journalPosition, null);
     }
 
     /**
-     * Метод выполняет откат свободной транзакции
+     * Метод откатывает транзакцию. Вызывается под блокировкой счета Дебета
+     */
+    private Applied rollbackLocked(AccountTransaction transaction) {
+        checkUnknownState(transaction);
+        String processedTime = updateTransaction(transaction, ConfirmType.ROLLBACK, currentTime());
+        long journalPosition = journal.appendRollback(transaction.getOperationKey(), processedTime);
+        log.debug("Transaction {{}} was rejected", transaction.getOperationId());
+
+        return new Applied(journalPosition, null);
+    }
+
+    /**
+     * Метод переносит в архив транзакции, завершенные раньше окна transfer.history.hot-window
+     * Транзакции обходятся в порядке завершения, поэтому обход останавливается на первой более новой транзакции
+     * и не просматривает всю таблицу
      *
-     * @param operationId идентификатор транзакции для отмены транзакции
-     * @return возвращает идентификатор operationId отмененной транзакции
+     * @return количество перенесенных транзакций
      */
-    public String rollbackTransaction(String operationId) {
-        updateTransaction(operationId, ConfirmType.ROLLBACK);
-        log.debug(String.format("Transaction {%s} was rejected", operationId));
+    public int archiveFinalized() {
+        if (hotWindowNanos == 0L) {
+            return 0;
+        }
 
-        return operationId;
+        long now = System.nanoTime();
+        int moved = 0;
+        Finalized finalized;
+        while ((finalized = finalizedTransactions.peek()) != null && now - finalized.finalizedNanos() >= hotWindowNanos) {
+            finalizedTransactions.poll();
+            AccountTransaction transaction = transactions.get(finalized.key());
+            //сначала архив, затем удаление: поиск, не нашедший транзакцию в таблице, найдет ее в архиве
+            if (transaction != null && archive.put(finalized.key(), transaction.getCommitCode())) {
+                transactions.remove(finalized.key());
+                accountIndex.remove(transaction);
+                moved++;
+            }
+        }
+
+        if (moved > 0) {
+            log.info("{} finalized transactions are moved to archive: archived {}, off-heap {} bytes",
+                    moved, archive.size(), archive.offHeapBytes());
+        }
+        return moved;
+    }
+
+    /**
+     * Метод снимает снимок состояния на начало нового сегмента журнала: остатки счетов и неподтвержденные транзакции
+     * Живое состояние не копируется: прием переводов приостанавливается только на смену сегмента под блокировкой журнала,
+     * а срез строит теневое хранилище, воспроизводящее предыдущий снимок и закрытые сегменты (см. {@link LedgerJournal#replaySealed})
+     */
+    public void snapshot() {
+        if (!journal.isDurable()) {
+            return;
+        }
+
+        long segment = journal.rotate();
+        LedgerJournal sealed = new LedgerJournal() {
+            @Override
+            public void replay(JournalListener listener) {
+                journal.replaySealed(segment, listener);
+            }
+        };
+        TransferRepository shadow = new TransferRepository(BalanceStore.Type.MAP, sealed, HoldExpiryWheel.DISABLED,
+                Duration.ZERO, new SnowflakeOperationIdGenerator(0), account -> false);
+        journal.writeSnapshot(shadow.captureSnapshot(segment));
+    }
+
+    /**
+     * Метод копирует остатки и неподтвержденные транзакции, вызывается для теневого хранилища без параллельных изменений
+     */
+    private LedgerSnapshot captureSnapshot(long segment) {
+        foldCommission();
+
+        String[] accounts = new String[accountRest.size()];
+        long[] balances = new long[accounts.length];
+        int[] index = new int[1];
+        accountRest.forEach((account, amount) -> {
+            accounts[index[0]] = account;
+            balances[index[0]++] = amount;
+        });
+
+        List<AccountTransaction> pending = new ArrayList<>(pendingTransactions.size());
+        for (long key : pendingTransactions) {
+            pending.add(transactions.get(key));
+        }
+        return new LedgerSnapshot(segment, accounts, balances, pending);
+    }
+
+    /**
+     * Метод открывает счет с начальным остатком, если его еще нет
+     *
+     * @return позиция записи в журнале, -1 - если счет уже существует
+     */
+    private long openAccountIfAbsent(String account, long amount) {
+        int[] stripes = accountLocks.lock(account);
+        try {
+            if (accountRest.contains(account)) {
+                return -1L;
+            }
+            accountRest.put(account, amount);
+            return journal.appendOpen(account, amount);
+        } finally {
+            accountLocks.unlock(stripes);
+        }
+    }
+
+    /**
+     * Метод создает объект транзакции с новым ключом и operationId
+     */
+    private AccountTransaction newTransaction(TransferInfo transferInfo) {
+        AccountTransaction transaction = new AccountTransaction(transferInfo);
+        long key = idGenerator.nextKey();
+        transaction.setOperationKey(key);
+        transaction.setOperationId(idGenerator.format(key));
+        return transaction;
+    }
+
+    /**
+     * Метод регистрирует транзакцию и удерживает ее сумму на счете Дебета
+     */
+    private void applyCreate(AccountTransaction transaction) {
+        transaction.setCommitCode(ConfirmType.UNKNOWN);
+        transactions.put(transaction);
+        accountIndex.add(transaction);
+        pendingTransactions.add(transaction.getOperationKey());
+        doHold(transaction.getCardFromNumber(), getTransactionTotal(transaction));
+    }
+
+    /**
+     * Метод выполняет проводки подтверждаемой транзакции: списание комиссии и суммы перевода
+     */
+    private void applyCommit(AccountTransaction transaction) {
+        //Списываем комиссию, если она есть на счет комиссий
+        if (transaction.getCommissionAmount() > 0) {
+            doDebet(transaction.getCardFromNumber(), transaction.getCommissionAmount());
+            commission.credit(transaction.getCommissionAmount());
+
+            if (log.isDebugEnabled()) {
+                log.debug("Account PAN {{}} is debiting commission amount = {{}} and crediting account {{}}",
+                        transaction.getCardFromNumber(),
+                        transaction.getCommissionAmount(),
+                        COMMISSION_ACCOUNT);
+            }
+        }
+
+        //Списываем сумму перевода со счета по Дебету, пополняем этой же суммой счет по Кредиту
+        doDebet(transaction.getCardFromNumber(), transaction.getAmount().getValue());
+        doCredit(transaction.getCardToNumber(), transaction.getAmount().getValue());
+
+        if (log.isDebugEnabled()) {
+            log.debug("Account PAN {{}} is debiting amount = {{}} and crediting account {{}}",
+                    transaction.getCardFromNumber(),
+                    transaction.getAmount().getValue(),
+                    transaction.getCardToNumber());
+        }
+    }
+
+    /**
+     * Метод проверяет, что транзакция еще не была подтверждена или отменена параллельным запросом
+     * Вызывается под блокировкой счета Дебета транзакции
+     */
+    private void checkUnknownState(AccountTransaction transaction) {
+        if (transaction.getCommitCode() != ConfirmType.UNKNOWN) {
+            throw notExists(transaction.getOperationId(), transaction.getCommitCode());
+        }
+    }
+
+    private OperationNotExist notExists(String operationId, ConfirmType commitCode) {
+        if (commitCode == ConfirmType.COMMITED) {
+            return new OperationNotExist(String.format("Transaction {%s} is already commited", operationId), 104);
+        }
+        if (commitCode == ConfirmType.ROLLBACK) {
+            return new OperationNotExist(String.format("Transaction {%s} was already rollback", operationId), 105);
+        }
+        return new OperationNotExist(String.format("Transaction {%s} is not exists in transaction table", operationId), 103);
     }
 
     /**
      * Метод выполняет списание с остатка (дебетование счета)
      */
-    private void doDebet(String accountDebet, Integer amount) {
-        accountRest.put(accountDebet, accountRest.get(accountDebet) - amount);
+    private void doDebet(String accountDebet, long amount) {
+        accountRest.add(accountDebet, -amount);
     }
 
     /**
      * Метод выполняет пополнение остатка счета (кредитование счета)
      */
-    private void doCredit(String accountCredit, Integer amount) {
-        accountRest.put(accountCredit, accountRest.get(accountCredit) + amount);
+    private void doCredit(String accountCredit, long amount) {
+        accountRest.add(accountCredit, amount);
     }
 
     /**
-     * Метод выполняет изменение состояние operationID транзакции в таблице транзакций
+     * Метод увеличивает сумму удержания по счету на сумму неподтвержденной транзакции
+     */
+    private void doHold(String account, long amount) {
+        accountHold.add(account, amount);
+    }
+
+    /**
+     * Метод снимает удержание по счету после подтверждения или отката транзакции
+     */
+    private void doReleaseHold(String account, long amount) {
+        accountHold.add(account, -amount);
+    }
+
+    private long getTransactionTotal(AccountTransaction transaction) {
+        return (long) transaction.getAmount().getValue() + transaction.getCommissionAmount();
+    }
+
+    /**
+     * Метод выполняет изменение состояние транзакции в таблице транзакций
+     * При выходе транзакции из состояния UNKNOWN снимается удержание по счету Дебета
      *
-     * @param operationID идентифакатор транзакции
-     * @param confirmType тип действия с транзакцией
+     * @param transaction   транзакция из таблицы транзакций
+     * @param confirmType   тип действия с транзакцией
+     * @param processedTime время обработки транзакции
+     * @return время обработки транзакции
      */
-    private void updateTransaction(String operationID, ConfirmType confirmType) {
-        AccountTransaction transaction = transactions.get(operationID);
-        transaction.setTransactionProcessedTime(new SimpleDateFormat("dd.MM.yyyy HH:mm:ss").format(new Date()));
+    private String updateTransaction(AccountTransaction transaction, ConfirmType confirmType, String processedTime) {
+        if (transaction.getCommitCode() == ConfirmType.UNKNOWN) {
+            doReleaseHold(transaction.getCardFromNumber(), getTransactionTotal(transaction));
+            pendingTransactions.remove(transaction.getOperationKey());
+            if (hotWindowNanos > 0L) {
+                finalizedTransactions.add(new Finalized(transaction.getOperationKey(), System.nanoTime()));
+            }
+        }
+        transaction.setTransactionProcessedTime(processedTime);
         transaction.setCommitCode(confirmType);
+        return processedTime;
+    }
+
+    private String currentTime() {
+        return new SimpleDateFormat("dd.MM.yyyy HH:mm:ss").format(new Date());
+    }
+
+    /**
+     * Результат применения операции под блокировкой: позиция записи в журнале и ошибка, если операция отклонена
+     */
+    private record Applied(long journalPosition, TransferException error) {
     }
 
+    /**
+     * Транзакция в очереди на перенос в архив и момент ее завершения
+     */
+    private record Finalized(long key, long finalizedNanos) {
+    }
+
+    /**
+     * Применение событий журнала при восстановлении. Выполняется в конструкторе до публикации хранилища,
+     * поэтому блокировки счетов не требуются
+     */
+    private class JournalReplay implements JournalListener {
+        @Override
+        public void onOpen(String account, long amount) {
+            accountRest.put(account, amount);
+        }
+
+        @Override
+        public void onClose(String account) {
+            accountRest.remove(account);
+        }
+
+        @Override
+        public void onCreate(AccountTransaction transaction) {
+            idGenerator.observe(transaction.getOperationKey());
+            applyCreate(transaction);
+        }
+
+        @Override
+        public void onCommit(long key, String processedTime) {
+            AccountTransaction transaction = transactions.get(key);
+            if (transaction != null && transaction.getCommitCode() == ConfirmType.UNKNOWN) {
+                applyCommit(transaction);
+                updateTransaction(transaction, ConfirmType.COMMITED, processedTime);
+            }
+        }
+
+        @Override
+        public void onRollback(long key, String processedTime) {
+            AccountTransaction transaction = transactions.get(key);
+            if (transaction != null && transaction.getCommitCode() == ConfirmType.UNKNOWN) {
+                updateTransaction(transaction, ConfirmType.ROLLBACK, processedTime);
+            }
+        }
+    }
 
 }
@@ -0,0 +1,184 @@
+package ru.netology.cardtocardservice.repository.archive;
+
+import ru.netology.cardtocardservice.domain.ConfirmType;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Холодный архив завершенных транзакций вне кучи
+ * <p>
+ * Для завершенной транзакции нужно помнить только ее итоговое состояние, чтобы повторное подтверждение
+ * получило ошибку 104/105. Архив хранит ключ транзакции (long, см.
+ * {@link ru.netology.cardtocardservice.repository.id.OperationIdGenerator}) и состояние
+ * в хэш-таблицах с открытой адресацией в direct-буферах: 9 байт на ячейку вместо объекта
+ * {@link ru.netology.cardtocardservice.domain.AccountTransaction} со строками в куче.
+ * Таблица разбита на сегменты по старшим битам хэша, каждый сегмент растет независимо под своей блокировкой
+ */
+public class TransactionArchive {
+    private static final int SEGMENT_BITS = 4;
+    private static final int SLOT_SIZE = 9;
+    private static final int STATE_OFFSET = 8;
+    private static final int MAX_SEGMENT_CAPACITY = Integer.highestOneBit(Integer.MAX_VALUE / SLOT_SIZE);
+    private static final byte EMPTY = 0;
+
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    public TransactionArchive() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(1024);
+        }
+    }
+
+    /**
+     * Метод помещает завершенную транзакцию в архив
+     *
+     * @return false - если состояние транзакции не итоговое
+     */
+    public boolean put(long key, ConfirmType state) {
+        if (state == ConfirmType.UNKNOWN) {
+            return false;
+        }
+        long hash = hash(key);
+        segments[(int) (hash >>> (64 - SEGMENT_BITS))].put(key, (int) hash, (byte) (state.ordinal() + 1));
+        return true;
+    }
+
+    /**
+     * @return итоговое состояние транзакции, null - если транзакции нет в архиве
+     */
+    public ConfirmType get(long key) {
+        long hash = hash(key);
+        byte state = segments[(int) (hash >>> (64 - SEGMENT_BITS))].get(key, (int) hash);
+        return state == EMPTY ? null : ConfirmType.values()[state - 1];
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return объем памяти вне кучи, занятый таблицами архива, в байтах
+     */
+    public long offHeapBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.capacityBytes();
+        }
+        return bytes;
+    }
+
+    private static long hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Segment {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private ByteBuffer table;
+        private int mask;
+        private int size;
+
+        private Segment(int capacity) {
+            this.table = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+            this.mask = capacity - 1;
+        }
+
+        private void put(long key, int hash, byte state) {
+            lock.writeLock().lock();
+            try {
+                if ((size + 1) * 2 > mask + 1) {
+                    grow();
+                }
+                if (insert(table, mask, key, hash, state)) {
+                    size++;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private byte get(long key, int hash) {
+            lock.readLock().lock();
+            try {
+                for (int index = hash & mask; ; index = (index + 1) & mask) {
+                    int offset = index * SLOT_SIZE;
+                    byte state = table.get(offset + STATE_OFFSET);
+                    if (state == EMPTY) {
+                        return EMPTY;
+                    }
+                    if (table.getLong(offset) == key) {
+                        return state;
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private int size() {
+            lock.readLock().lock();
+            try {
+                return size;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private long capacityBytes() {
+            lock.readLock().lock();
+            try {
+                return (long) table.capacity();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Метод удваивает таблицу сегмента и переносит в нее все ячейки. Вызывается под блокировкой записи
+         */
+        private void grow() {
+            int capacity = (mask + 1) * 2;
+            if (capacity > MAX_SEGMENT_CAPACITY) {
+                throw new IllegalStateException("Transaction archive segment is full");
+            }
+            ByteBuffer grown = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+            int grownMask = capacity - 1;
+            for (int index = 0; index <= mask; index++) {
+                int offset = index * SLOT_SIZE;
+                byte state = table.get(offset + STATE_OFFSET);
+                if (state != EMPTY) {
+                    long key = table.getLong(offset);
+                    insert(grown, grownMask, key, (int) hash(key), state);
+                }
+            }
+            table = grown;
+            mask = grownMask;
+        }
+
+        /**
+         * @return true - если добавлена новая ячейка, false - если обновлено состояние существующей
+         */
+        private static boolean insert(ByteBuffer table, int mask, long key, int hash, byte state) {
+            for (int index = hash & mask; ; index = (index + 1) & mask) {
+                int offset = index * SLOT_SIZE;
+                if (table.get(offset + STATE_OFFSET) == EMPTY) {
+                    table.putLong(offset, key);
+                    table.put(offset + STATE_OFFSET, state);
+                    return true;
+                }
+                if (table.getLong(offset) == key) {
+                    table.put(offset + STATE_OFFSET, state);
+                    return false;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ru.netology.cardtocardservice.repository.balance;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Представление остатков {@link BalanceStore} только для чтения в прежнем формате {@code Map<String, Integer>}
+ * Остаток, не помещающийся в Integer, приводит к {@link ArithmeticException}, а не к молчаливому усечению
+ */
+class BalanceMapView extends AbstractMap<String, Integer> {
+    private final BalanceStore store;
+
+    BalanceMapView(BalanceStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public Integer get(Object key) {
+        if (key instanceof String account && store.contains(account)) {
+            return Math.toIntExact(store.get(account));
+        }
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String account && store.contains(account);
+    }
+
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    @Override
+    public Set<Entry<String, Integer>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Integer>> iterator() {
+                List<Entry<String, Integer>> entries = new ArrayList<>(store.size());
+                store.forEach((account, amount) -> entries.add(Map.entry(account, Math.toIntExact(amount))));
+                return entries.iterator();
+            }
+
+            @Override
+            public int size() {
+                return store.size();
+            }
+        };
+    }
+}
@@ -0,0 +1,67 @@
+package ru.netology.cardtocardservice.repository.balance;
+
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Хранилище остатков по счетам (картам). Суммы хранятся в минимальных единицах валюты (копейках) типом long
+ * <p>
+ * Изменение суммы одного счета выполняется вызывающей стороной под блокировкой этого счета,
+ * само хранилище отвечает только за безопасное добавление новых счетов и чтение без блокировок
+ */
+public interface BalanceStore {
+
+    /**
+     * Метод открывает счет с начальным остатком или заменяет остаток существующего счета
+     */
+    void put(String account, long amount);
+
+    /**
+     * Метод открывает счет с начальным остатком, если его еще нет: проверка и добавление выполняются атомарно
+     *
+     * @return false - если счет уже открыт
+     */
+    boolean putIfAbsent(String account, long amount);
+
+    boolean contains(String account);
+
+    /**
+     * @return остаток счета, 0 - если счет не открыт
+     */
+    long get(String account);
+
+    /**
+     * Метод изменяет остаток существующего счета на величину delta
+     *
+     * @return остаток после изменения
+     */
+    long add(String account, long delta);
+
+    /**
+     * Метод закрывает счет, если он есть
+     */
+    void remove(String account);
+
+    int size();
+
+    void forEach(ObjLongConsumer<String> action);
+
+    /**
+     * @return представление остатков только для чтения в формате {@code Map<String, Integer>}
+     */
+    default Map<String, Integer> asMap() {
+        return new BalanceMapView(this);
+    }
+
+    /**
+     * Вид хранилища остатков, выбирается свойством transfer.storage.balance
+     */
+    enum Type {
+        MAP,
+        PRIMITIVE;
+
+        public BalanceStore create() {
+            return this == PRIMITIVE ? new LongBalanceStore() : new MapBalanceStore();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package ru.netology.cardtocardservice.repository.balance;
+
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Хранилище остатков на примитивной хэш-таблице long -> long
+ * Номер карты из 16 цифр кодируется числом long, поэтому операции дебета и кредита
+ * не создают объектов и не вычисляют хэш строки. Номера, не являющиеся 16-значными,
+ * считаются отсутствующими в хранилище
+ * <p>
+ * Чтение и изменение остатка существующего счета не захватывают блокировок (см. {@link LongLongHashMap}),
+ * блокировку писателя таблицы берут только открытие, закрытие счета и рост таблицы
+ */
+public class LongBalanceStore implements BalanceStore {
+    private static final int PAN_LENGTH = 16;
+    private static final long ABSENT = 0L;
+
+    private final LongLongHashMap table;
+
+    public LongBalanceStore() {
+        this(1024);
+    }
+
+    public LongBalanceStore(int expectedAccounts) {
+        this.table = new LongLongHashMap(expectedAccounts);
+    }
+
+    @Override
+    public void put(String account, long amount) {
+        table.put(encodeExisting(account), amount);
+    }
+
+    @Override
+    public boolean putIfAbsent(String account, long amount) {
+        return table.putIfAbsent(encodeExisting(account), amount);
+    }
+
+    @Override
+    public boolean contains(String account) {
+        long key = encode(account);
+        return key != ABSENT && table.get(key) != LongLongHashMap.ABSENT;
+    }
+
+    @Override
+    public long get(String account) {
+        long key = encode(account);
+        if (key == ABSENT) {
+            return 0L;
+        }
+        long amount = table.get(key);
+        return amount == LongLongHashMap.ABSENT ? 0L : amount;
+    }
+
+    @Override
+    public long add(String account, long delta) {
+        return table.add(encodeExisting(account), delta);
+    }
+
+    @Override
+    public void remove(String account) {
+        long key = encode(account);
+        if (key != ABSENT) {
+            table.remove(key);
+        }
+    }
+
+    @Override
+    public int size() {
+        return table.size();
+    }
+
+    @Override
+    public void forEach(ObjLongConsumer<String> action) {
+        table.forEach((key, amount) -> action.accept(decode(key), amount));
+    }
+
+    private static long encodeExisting(String account) {
+        long key = encode(account);
+        if (key == ABSENT) {
+            throw new IllegalArgumentException("Account number must consist of 16 digits");
+        }
+        return key;
+    }
+
+    /**
+     * Метод кодирует 16-значный номер карты в long. К числу прибавляется 1, чтобы номер
+     * из одних нулей не совпал с пустой ячейкой таблицы
+     *
+     * @return код номера карты или 0, если номер не является 16-значным числом
+     */
+    static long encode(String account) {
+        if (account == null || account.length() != PAN_LENGTH) {
+            return ABSENT;
+        }
+        long result = 0;
+        for (int i = 0; i < PAN_LENGTH; i++) {
+            int digit = account.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return ABSENT;
+            }
+            result = result * 10 + digit;
+        }
+        return result + 1;
+    }
+
+    static String decode(long key) {
+        String digits = Long.toString(key - 1);
+        return "0".repeat(PAN_LENGTH - digits.length()) + digits;
+    }
+}
@@ -0,0 +1,288 @@
+package ru.netology.cardtocardservice.repository.balance;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Хэш-таблица с открытой адресацией (линейное пробирование) long -> long без упаковки значений
+ * <p>
+ * Чтение и изменение значения существующего ключа выполняются без блокировок: ячейка значения меняется CAS,
+ * ключи внутри таблицы никогда не перемещаются. Добавление ключа, удаление и рост таблицы выполняются
+ * под блокировкой писателя: удаленный ключ остается в ячейке с отметкой {@link #REMOVED}, рост строит новую
+ * таблицу и помечает перенесенные ячейки старой отметкой {@link #MOVED}. Читатель, встретивший MOVED,
+ * дожидается публикации новой таблицы и повторяет операцию, поэтому изменение не теряется при переносе
+ * <p>
+ * Ключ 0 зарезервирован под пустую ячейку, значения {@link Long#MIN_VALUE} и {@link Long#MIN_VALUE} + 1 -
+ * под служебные отметки
+ */
+final class LongLongHashMap {
+    /**
+     * Результат чтения отсутствующего ключа
+     */
+    static final long ABSENT = Long.MIN_VALUE + 1;
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final long EMPTY = 0L;
+    private static final long MOVED = Long.MIN_VALUE;
+    private static final long REMOVED = ABSENT;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile Table table;
+    private volatile int size;
+    private int removed;
+
+    LongLongHashMap(int expectedSize) {
+        this.table = new Table(tableSizeFor(expectedSize));
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return значение ключа или {@link #ABSENT}
+     */
+    long get(long key) {
+        while (true) {
+            Table current = table;
+            int index = current.indexOf(key);
+            if (index < 0) {
+                return ABSENT;
+            }
+            long value = (long) SLOTS.getVolatile(current.values, index);
+            if (value != MOVED) {
+                return value;
+            }
+            awaitRehash();
+        }
+    }
+
+    /**
+     * Метод изменяет значение существующего ключа на delta
+     *
+     * @return значение после изменения или {@link #ABSENT}, если ключа нет
+     */
+    long addIfPresent(long key, long delta) {
+        while (true) {
+            Table current = table;
+            int index = current.indexOf(key);
+            if (index < 0) {
+                return ABSENT;
+            }
+            long value = (long) SLOTS.getVolatile(current.values, index);
+            if (value == REMOVED) {
+                return ABSENT;
+            }
+            if (value == MOVED) {
+                awaitRehash();
+            } else if (SLOTS.compareAndSet(current.values, index, value, value + delta)) {
+                return value + delta;
+            }
+        }
+    }
+
+    /**
+     * Метод изменяет значение ключа на delta, отсутствующий (в том числе удаленный) ключ добавляется со значением delta
+     *
+     * @return значение после изменения
+     */
+    long add(long key, long delta) {
+        long result = addIfPresent(key, delta);
+        if (result != ABSENT) {
+            return result;
+        }
+        writeLock.lock();
+        try {
+            result = addIfPresent(key, delta);
+            if (result == ABSENT) {
+                //удаленный ключ остается в своей ячейке: новая ячейка дальше по цепочке была бы не видна поиску
+                if (!replace(key, delta)) {
+                    insert(key, delta);
+                }
+                result = delta;
+            }
+            return result;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void put(long key, long value) {
+        writeLock.lock();
+        try {
+            if (!replace(key, value)) {
+                insert(key, value);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Метод добавляет ключ со значением, если ключа нет (в том числе удаленный ключ)
+     *
+     * @return false - если ключ уже есть
+     */
+    boolean putIfAbsent(long key, long value) {
+        writeLock.lock();
+        try {
+            Table current = table;
+            int index = current.indexOf(key);
+            if (index < 0) {
+                insert(key, value);
+                return true;
+            }
+            return (long) SLOTS.getVolatile(current.values, index) == REMOVED && replace(key, value);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void remove(long key) {
+        writeLock.lock();
+        try {
+            Table current = table;
+            int index = current.indexOf(key);
+            if (index >= 0 && (long) SLOTS.getAndSet(current.values, index, REMOVED) != REMOVED) {
+                size--;
+                removed++;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Перебор выполняется под блокировкой писателя: ключи не добавляются, таблица не перестраивается,
+     * значения читаются вместе с параллельными изменениями
+     */
+    void forEach(LongLongConsumer action) {
+        writeLock.lock();
+        try {
+            Table current = table;
+            for (int i = 0; i < current.keys.length; i++) {
+                long key = current.keys[i];
+                long value = (long) SLOTS.getVolatile(current.values, i);
+                if (key != EMPTY && value != REMOVED) {
+                    action.accept(key, value);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Метод заменяет значение ключа, если ключ есть в таблице (в том числе удаленный), выполняется под блокировкой писателя
+     *
+     * @return false - если ключа в таблице нет
+     */
+    private boolean replace(long key, long value) {
+        Table current = table;
+        int index = current.indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        if ((long) SLOTS.getAndSet(current.values, index, value) == REMOVED) {
+            removed--;
+            size++;
+        }
+        return true;
+    }
+
+    /**
+     * Метод добавляет отсутствующий в таблице ключ, выполняется под блокировкой писателя
+     */
+    private void insert(long key, long value) {
+        Table current = table;
+        current.insert(key, value);
+        size++;
+        if (size + removed > current.resizeThreshold) {
+            rehash(current);
+        }
+    }
+
+    /**
+     * Метод переносит живые ключи в новую таблицу, удаленные ключи не переносятся
+     */
+    private void rehash(Table current) {
+        Table next = new Table(tableSizeFor(size));
+        for (int i = 0; i < current.keys.length; i++) {
+            long key = current.keys[i];
+            if (key != EMPTY) {
+                long value = (long) SLOTS.getAndSet(current.values, i, MOVED);
+                if (value != REMOVED) {
+                    next.insert(key, value);
+                }
+            }
+        }
+        removed = 0;
+        table = next;
+    }
+
+    /**
+     * Перестройка таблицы выполняется под блокировкой писателя: захват блокировки дожидается ее окончания
+     */
+    private void awaitRehash() {
+        writeLock.lock();
+        writeLock.unlock();
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        return Math.max(16, Integer.highestOneBit(Math.max(1, expectedSize) * 2 - 1) << 1);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static final class Table {
+        private final long[] keys;
+        private final long[] values;
+        private final int mask;
+        private final int resizeThreshold;
+
+        private Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new long[capacity];
+            this.mask = capacity - 1;
+            this.resizeThreshold = capacity >> 1;
+        }
+
+        /**
+         * @return номер ячейки ключа или -1, если ключ отсутствует
+         */
+        private int indexOf(long key) {
+            int index = hash(key) & mask;
+            while (true) {
+                long current = (long) SLOTS.getVolatile(keys, index);
+                if (current == key) {
+                    return index;
+                }
+                if (current == EMPTY) {
+                    return -1;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        /**
+         * Значение записывается раньше ключа: читатель, увидевший ключ, видит и его значение
+         */
+        private void insert(long key, long value) {
+            int index = hash(key) & mask;
+            while (keys[index] != EMPTY) {
+                index = (index + 1) & mask;
+            }
+            SLOTS.setVolatile(values, index, value);
+            SLOTS.setVolatile(keys, index, key);
+        }
+    }
+
+    @FunctionalInterface
+    interface LongLongConsumer {
+        void accept(long key, long value);
+    }
+}
@@ -0,0 +1,52 @@
+package ru.netology.cardtocardservice.repository.balance;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Хранилище остатков на основе {@link ConcurrentHashMap} с ключом - строковым номером карты
+ */
+public class MapBalanceStore implements BalanceStore {
+    private final Map<String, Long> balances = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(String account, long amount) {
+        balances.put(account, amount);
+    }
+
+    @Override
+    public boolean putIfAbsent(String account, long amount) {
+        return balances.putIfAbsent(account, amount) == null;
+    }
+
+    @Override
+    public boolean contains(String account) {
+        return balances.containsKey(account);
+    }
+
+    @Override
+    public long get(String account) {
+        return balances.getOrDefault(account, 0L);
+    }
+
+    @Override
+    public long add(String account, long delta) {
+        return balances.merge(account, delta, Long::sum);
+    }
+
+    @Override
+    public void remove(String account) {
+        balances.remove(account);
+    }
+
+    @Override
+    public int size() {
+        return balances.size();
+    }
+
+    @Override
+    public void forEach(ObjLongConsumer<String> action) {
+        balances.forEach(action::accept);
+    }
+}
@@ -0,0 +1,18 @@
+package ru.netology.cardtocardservice.repository.id;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Выбор генератора operationId по свойствам transfer.operation-id.*
+ */
+@Configuration
+public class OperationIdConfig {
+
+    @Bean
+    public OperationIdGenerator operationIdGenerator(@Value("${transfer.operation-id.type:SNOWFLAKE}") OperationIdGenerator.Type type,
+                                                     @Value("${transfer.operation-id.node:0}") int node) {
+        return type.create(node);
+    }
+}
@@ -0,0 +1,55 @@
+package ru.netology.cardtocardservice.repository.id;
+
+/**
+ * Генератор идентификаторов operationId транзакций
+ * <p>
+ * Внутри хранилища транзакция адресуется ключом long (таблица транзакций, индекс по картам, журнал, архив),
+ * строка operationId - только внешнее представление ключа. Ключи обоих генераторов выдает
+ * {@link SnowflakeOperationIdGenerator}, поэтому они уникальны по узлам и упорядочены по времени создания
+ */
+public interface OperationIdGenerator {
+
+    /**
+     * @return ключ новой транзакции
+     */
+    long nextKey();
+
+    /**
+     * @return operationId - внешнее представление ключа
+     */
+    String format(long key);
+
+    default String nextId() {
+        return format(nextKey());
+    }
+
+    /**
+     * Метод сообщает генератору ключ, выданный до перезапуска (при восстановлении из журнала),
+     * чтобы новые ключи его не повторяли
+     */
+    default void observe(long key) {
+    }
+
+    /**
+     * Метод восстанавливает ключ по operationId любого из генераторов
+     *
+     * @return ключ, -1 - если строка не является operationId
+     */
+    static long parse(String operationId) {
+        if (operationId == null) {
+            return -1L;
+        }
+        return operationId.length() == SnowflakeOperationIdGenerator.ID_LENGTH
+                ? SnowflakeOperationIdGenerator.decode(operationId)
+                : UuidOperationIdGenerator.decode(operationId);
+    }
+
+    enum Type {
+        UUID,
+        SNOWFLAKE;
+
+        public OperationIdGenerator create(int node) {
+            return this == UUID ? new UuidOperationIdGenerator(node) : new SnowflakeOperationIdGenerator(node);
+        }
+    }
+}
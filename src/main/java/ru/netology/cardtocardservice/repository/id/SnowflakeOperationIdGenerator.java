@@ -0,0 +1,116 @@
+package ru.netology.cardtocardservice.repository.id;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Монотонный упорядоченный по времени идентификатор long (схема Snowflake):
+ * 41 бит - миллисекунды от {@link #EPOCH_MILLIS}, 10 бит - номер узла, 12 бит - счетчик в пределах миллисекунды
+ * <p>
+ * Очередной идентификатор - максимум из (предыдущий + 1) и значения по текущему времени, он вычисляется
+ * одной операцией CAS без обращения к SecureRandom. При исчерпании счетчика или отставании часов
+ * идентификаторы продолжают расти за счет следующей миллисекунды. Номер узла входит в каждый идентификатор,
+ * поэтому узлы с разными transfer.operation-id.node не пересекаются
+ * <p>
+ * Идентификатор - ключ транзакции в хранилище, наружу он отдается строкой из 13 символов Crockford base32
+ * фиксированной длины: строки сортируются так же, как числа
+ */
+public class SnowflakeOperationIdGenerator implements OperationIdGenerator {
+    public static final long EPOCH_MILLIS = 1704067200000L; //2024-01-01T00:00:00Z
+    public static final int MAX_NODE = 1023;
+    public static final int ID_LENGTH = 13;
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final int NODE_BITS = 10;
+    private static final int TIMESTAMP_SHIFT = SEQUENCE_BITS + NODE_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        java.util.Arrays.fill(DECODE, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DECODE[ALPHABET[i]] = (byte) i;
+            DECODE[Character.toLowerCase(ALPHABET[i])] = (byte) i;
+        }
+    }
+
+    private final long nodeBits;
+    private final AtomicLong last = new AtomicLong();
+
+    public SnowflakeOperationIdGenerator(int node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE);
+        }
+        this.nodeBits = (long) node << SEQUENCE_BITS;
+    }
+
+    @Override
+    public long nextKey() {
+        long byTime = ((System.currentTimeMillis() - EPOCH_MILLIS) << TIMESTAMP_SHIFT) | nodeBits;
+        while (true) {
+            long previous = last.get();
+            long next = Math.max(increment(previous), byTime);
+            if (last.compareAndSet(previous, next)) {
+                return next;
+            }
+        }
+    }
+
+    @Override
+    public String format(long key) {
+        return encode(key);
+    }
+
+    @Override
+    public void observe(long key) {
+        if (key >= 0L) {
+            last.accumulateAndGet(key, Math::max);
+        }
+    }
+
+    /**
+     * @return номер узла, выдавшего идентификатор
+     */
+    public static int nodeOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE);
+    }
+
+    /**
+     * Метод увеличивает счетчик, при его переполнении переходит к следующей миллисекунде
+     * Номер узла при этом не меняется
+     */
+    private long increment(long previous) {
+        if ((previous & SEQUENCE_MASK) < SEQUENCE_MASK) {
+            return previous + 1;
+        }
+        return (((previous >>> TIMESTAMP_SHIFT) + 1) << TIMESTAMP_SHIFT) | nodeBits;
+    }
+
+    public static String encode(long id) {
+        char[] chars = new char[ID_LENGTH];
+        for (int i = ID_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return идентификатор, -1 - если строка не является идентификатором этого формата
+     */
+    public static long decode(String operationId) {
+        if (operationId == null || operationId.length() != ID_LENGTH) {
+            return -1L;
+        }
+        long id = 0L;
+        for (int i = 0; i < ID_LENGTH; i++) {
+            char c = operationId.charAt(i);
+            int value = c < 128 ? DECODE[c] : -1;
+            if (value < 0 || (i == 0 && value > 15)) {
+                return -1L;
+            }
+            id = (id << 5) | value;
+        }
+        return id;
+    }
+}
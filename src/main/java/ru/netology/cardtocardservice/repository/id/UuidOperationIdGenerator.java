@@ -0,0 +1,59 @@
+package ru.netology.cardtocardservice.repository.id;
+
+import java.util.UUID;
+
+/**
+ * operationId в виде строки UUID из 36 символов
+ * <p>
+ * Старшая половина UUID - ключ {@link SnowflakeOperationIdGenerator}, младшая - перемешанный ключ,
+ * по которому при разборе проверяется, что строка выдана этим генератором. Поэтому строки, как и ключи,
+ * упорядочены по времени создания, а разбор не требует таблицы соответствия строк и ключей
+ */
+public class UuidOperationIdGenerator implements OperationIdGenerator {
+    public static final int ID_LENGTH = 36;
+
+    private final SnowflakeOperationIdGenerator keys;
+
+    public UuidOperationIdGenerator(int node) {
+        this.keys = new SnowflakeOperationIdGenerator(node);
+    }
+
+    @Override
+    public long nextKey() {
+        return keys.nextKey();
+    }
+
+    @Override
+    public String format(long key) {
+        return new UUID(key, check(key)).toString();
+    }
+
+    @Override
+    public void observe(long key) {
+        keys.observe(key);
+    }
+
+    /**
+     * @return ключ, -1 - если строка не является operationId этого формата
+     */
+    public static long decode(String operationId) {
+        if (operationId == null || operationId.length() != ID_LENGTH) {
+            return -1L;
+        }
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(operationId);
+        } catch (IllegalArgumentException e) {
+            return -1L;
+        }
+        long key = uuid.getMostSignificantBits();
+        return key >= 0L && uuid.getLeastSignificantBits() == check(key) ? key : -1L;
+    }
+
+    private static long check(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return h ^ (h >>> 32);
+    }
+}
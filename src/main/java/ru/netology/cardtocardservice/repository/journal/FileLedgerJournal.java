@@ -0,0 +1,433 @@
+package ru.netology.cardtocardservice.repository.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.netology.cardtocardservice.domain.AccountTransaction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Журнал событий в каталоге из сегментов, открытых только на дозапись
+ * <p>
+ * В режиме group commit записи накапливаются в буфере, а отдельный поток сбрасывает их на диск
+ * одним write + fsync: все переводы, пришедшие пока идет предыдущий fsync, разделяют следующий.
+ * Без group commit каждая запись пишется и синхронизируется с диском сразу под блокировкой журнала
+ * <p>
+ * Снимок состояния (snapshot-N.snap) содержит остатки и неподтвержденные транзакции на момент
+ * начала сегмента N. После записи снимка более старые сегменты и снимки удаляются, а при старте
+ * отображается в память последний целый снимок и воспроизводится только хвост журнала с сегмента N.
+ * Новый снимок строится по журналу (см. {@link #replaySealed(long, JournalListener)}), а не по живому состоянию.
+ * Хвост сегмента с неполной записью или неверной контрольной суммой (последствие аварийной остановки)
+ * отбрасывается
+ */
+@Slf4j
+public class FileLedgerJournal implements LedgerJournal {
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("ledger-(\\d+)\\.journal");
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.snap");
+
+    private final Path directory;
+    private final boolean groupCommit;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasPending = lock.newCondition();
+    private final Condition hasFlushed = lock.newCondition();
+
+    private FileChannel channel;
+    private long segment;
+    private ByteBuffer active = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private ByteBuffer flushing = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private boolean flushInProgress;
+    private long appendedPosition;
+    private long durablePosition;
+    private boolean closed;
+    private IOException failure;
+    private final Thread flusher;
+
+    public FileLedgerJournal(Path directory, boolean groupCommit) {
+        this.directory = directory;
+        this.groupCommit = groupCommit;
+        try {
+            Files.createDirectories(directory);
+            List<Long> segments = listNumbers(SEGMENT_NAME);
+            this.segment = segments.isEmpty() ? 1L : segments.get(segments.size() - 1);
+            this.channel = openSegment(segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal " + directory + " can not be opened", e);
+        }
+
+        if (groupCommit) {
+            this.flusher = new Thread(this::flushLoop, "ledger-journal-flusher");
+            this.flusher.setDaemon(true);
+            this.flusher.start();
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    @Override
+    public long appendOpen(String account, long amount) {
+        lock.lock();
+        try {
+            ensureCapacity(JournalRecords.maxOpenSize(account));
+            JournalRecords.writeOpen(active, account, amount);
+            return appended();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long appendClose(String account) {
+        lock.lock();
+        try {
+            ensureCapacity(JournalRecords.maxCloseSize(account));
+            JournalRecords.writeClose(active, account);
+            return appended();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long appendCreate(AccountTransaction transaction) {
+        lock.lock();
+        try {
+            ensureCapacity(JournalRecords.maxCreateSize(transaction));
+            JournalRecords.writeCreate(active, transaction);
+            return appended();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long appendCommit(long key, String processedTime) {
+        return appendState(JournalRecords.COMMIT, key, processedTime);
+    }
+
+    @Override
+    public long appendRollback(long key, String processedTime) {
+        return appendState(JournalRecords.ROLLBACK, key, processedTime);
+    }
+
+    @Override
+    public void awaitDurable(long position) {
+        lock.lock();
+        try {
+            while (durablePosition < position && failure == null) {
+                hasFlushed.awaitUninterruptibly();
+            }
+            if (durablePosition < position) {
+                throw new UncheckedIOException("Journal " + directory + " write failed", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Метод загружает последний целый снимок и передает слушателю события сегментов, начиная с сегмента снимка
+     * Вызывается до начала приема записей
+     */
+    @Override
+    public void replay(JournalListener listener) {
+        long started = System.nanoTime();
+        lock.lock();
+        try {
+            long firstSegment = loadSnapshot(Long.MAX_VALUE, listener);
+
+            int replayedSegments = 0;
+            for (long number : listNumbers(SEGMENT_NAME)) {
+                if (number < firstSegment) {
+                    continue;
+                }
+                try (FileChannel segmentChannel = FileChannel.open(segmentPath(number), StandardOpenOption.READ)) {
+                    long validSize = JournalReader.replay(segmentChannel, 0L, listener);
+                    if (validSize < segmentChannel.size()) {
+                        log.warn("Journal segment {} has a broken tail after position {}. The tail is truncated", number, validSize);
+                        try (FileChannel truncated = FileChannel.open(segmentPath(number), StandardOpenOption.WRITE)) {
+                            truncated.truncate(validSize);
+                        }
+                    }
+                }
+                replayedSegments++;
+            }
+            channel.position(channel.size());
+
+            log.info("Journal {} is recovered in {} ms: snapshot segment {}, replayed segments {}",
+                    directory, (System.nanoTime() - started) / 1_000_000, firstSegment, replayedSegments);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal " + directory + " can not be read", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Метод передает слушателю последний снимок до переданного сегмента и закрытые сегменты после него
+     * Закрытые сегменты больше не меняются, поэтому метод выполняется без блокировки журнала,
+     * параллельно с приемом новых записей
+     */
+    @Override
+    public void replaySealed(long segment, JournalListener listener) {
+        try {
+            long firstSegment = loadSnapshot(segment, listener);
+            for (long number : listNumbers(SEGMENT_NAME)) {
+                if (number < firstSegment || number >= segment) {
+                    continue;
+                }
+                try (FileChannel segmentChannel = FileChannel.open(segmentPath(number), StandardOpenOption.READ)) {
+                    JournalReader.replay(segmentChannel, 0L, listener);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal " + directory + " can not be read", e);
+        }
+    }
+
+    /**
+     * Метод сбрасывает накопленные записи в текущий сегмент и начинает новый
+     * Все записи, добавленные после возврата из метода, попадают в новый сегмент
+     *
+     * @return номер нового сегмента
+     */
+    @Override
+    public long rotate() {
+        lock.lock();
+        try {
+            while (flushInProgress) {
+                hasFlushed.awaitUninterruptibly();
+            }
+            if (active.position() > 0) {
+                write(active);
+                durablePosition = appendedPosition;
+                hasFlushed.signalAll();
+            }
+            FileChannel next = openSegment(segment + 1);
+            channel.close();
+            channel = next;
+            segment++;
+            return segment;
+        } catch (IOException e) {
+            failure = e;
+            hasFlushed.signalAll();
+            throw new UncheckedIOException("Journal " + directory + " can not be rotated", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Метод записывает снимок и удаляет сегменты и снимки, которые им перекрыты
+     * Выполняется без блокировки журнала, параллельно с приемом новых записей
+     */
+    @Override
+    public void writeSnapshot(LedgerSnapshot snapshot) {
+        long started = System.nanoTime();
+        try {
+            SnapshotFiles.write(snapshotPath(snapshot.segment()), snapshot);
+            for (long number : listNumbers(SEGMENT_NAME)) {
+                if (number < snapshot.segment()) {
+                    Files.deleteIfExists(segmentPath(number));
+                }
+            }
+            for (long number : listNumbers(SNAPSHOT_NAME)) {
+                if (number < snapshot.segment()) {
+                    Files.deleteIfExists(snapshotPath(number));
+                }
+            }
+            log.info("Snapshot of segment {} is written in {} ms: {} accounts, {} pending transactions",
+                    snapshot.segment(), (System.nanoTime() - started) / 1_000_000,
+                    snapshot.accounts().length, snapshot.transactions().size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Snapshot of segment " + snapshot.segment() + " can not be written", e);
+        }
+    }
+
+    @Override
+    public boolean isDurable() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            hasPending.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (flusher != null) {
+                flusher.join();
+            }
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Journal {} can not be closed", directory, e);
+        }
+    }
+
+    private long appendState(byte type, long key, String processedTime) {
+        lock.lock();
+        try {
+            ensureCapacity(JournalRecords.maxStateSize(processedTime));
+            JournalRecords.writeState(active, type, key, processedTime);
+            return appended();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Метод фиксирует добавленную в буфер запись. Без group commit запись сразу пишется на диск
+     * Вызывается под блокировкой журнала
+     */
+    private long appended() {
+        if (failure != null) {
+            throw new UncheckedIOException("Journal " + directory + " write failed", failure);
+        }
+        appendedPosition++;
+        if (groupCommit) {
+            hasPending.signal();
+        } else {
+            try {
+                write(active);
+                durablePosition = appendedPosition;
+            } catch (IOException e) {
+                failure = e;
+                throw new UncheckedIOException("Journal " + directory + " write failed", e);
+            }
+        }
+        return appendedPosition;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            ByteBuffer batch;
+            FileChannel target;
+            long batchPosition;
+            lock.lock();
+            try {
+                while (active.position() == 0 && !closed) {
+                    hasPending.awaitUninterruptibly();
+                }
+                if (active.position() == 0) {
+                    return;
+                }
+                batch = active;
+                active = flushing;
+                flushing = batch;
+                target = channel;
+                batchPosition = appendedPosition;
+                flushInProgress = true;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                write(target, batch);
+            } catch (IOException e) {
+                error = e;
+                log.error("Journal {} write failed", directory, e);
+            }
+
+            lock.lock();
+            try {
+                flushInProgress = false;
+                if (error == null) {
+                    durablePosition = Math.max(durablePosition, batchPosition);
+                } else {
+                    failure = error;
+                }
+                hasFlushed.signalAll();
+                if (failure != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        write(channel, buffer);
+    }
+
+    private static void write(FileChannel target, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        target.force(false);
+        buffer.clear();
+    }
+
+    private void ensureCapacity(int size) {
+        if (active.remaining() < size) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(active.capacity() * 2, active.position() + size));
+            active.flip();
+            grown.put(active);
+            active = grown;
+        }
+    }
+
+    /**
+     * Метод загружает последний целый снимок с номером меньше limit
+     *
+     * @return номер сегмента снимка, 0 - если целого снимка нет
+     */
+    private long loadSnapshot(long limit, JournalListener listener) throws IOException {
+        List<Long> snapshots = listNumbers(SNAPSHOT_NAME);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            if (snapshots.get(i) >= limit) {
+                continue;
+            }
+            Path snapshot = snapshotPath(snapshots.get(i));
+            long segment = SnapshotFiles.read(snapshot, listener);
+            if (segment >= 0) {
+                return segment;
+            }
+            log.warn("Snapshot {} is broken and skipped", snapshot);
+        }
+        return 0L;
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentPath(number), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("ledger-%020d.journal", number));
+    }
+
+    private Path snapshotPath(long number) {
+        return directory.resolve(String.format("snapshot-%020d.snap", number));
+    }
+
+    private List<Long> listNumbers(Pattern pattern) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .map(file -> pattern.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ru.netology.cardtocardservice.repository.journal;
+
+import ru.netology.cardtocardservice.domain.AccountTransaction;
+
+/**
+ * Получатель событий журнала при восстановлении состояния хранилища
+ * Подтверждение и откат адресуют транзакцию ее ключом (см. {@link AccountTransaction#getOperationKey()})
+ */
+public interface JournalListener {
+    void onOpen(String account, long amount);
+
+    void onClose(String account);
+
+    void onCreate(AccountTransaction transaction);
+
+    void onCommit(long key, String processedTime);
+
+    void onRollback(long key, String processedTime);
+}
@@ -0,0 +1,67 @@
+package ru.netology.cardtocardservice.repository.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Последовательное чтение записей журнала с проверкой длины и контрольной суммы
+ */
+final class JournalReader {
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    private JournalReader() {
+    }
+
+    /**
+     * Метод передает слушателю все целые записи файла, начиная с позиции start
+     *
+     * @return позиция конца последней целой записи
+     */
+    static long replay(FileChannel channel, long start, JournalListener listener) throws IOException {
+        long size = channel.size();
+        long position = start;
+        ByteBuffer header = ByteBuffer.allocate(JournalRecords.HEADER_SIZE);
+        ByteBuffer record = ByteBuffer.allocate(1024);
+
+        while (position + JournalRecords.HEADER_SIZE <= size) {
+            header.clear();
+            if (!readFully(channel, header, position)) {
+                break;
+            }
+            int bodyLength = header.getInt(0);
+            if (bodyLength <= 0 || bodyLength > MAX_RECORD_SIZE
+                    || position + JournalRecords.HEADER_SIZE + bodyLength + JournalRecords.TRAILER_SIZE > size) {
+                break;
+            }
+
+            int recordLength = bodyLength + JournalRecords.TRAILER_SIZE;
+            if (record.capacity() < recordLength) {
+                record = ByteBuffer.allocate(recordLength);
+            }
+            record.clear().limit(recordLength);
+            if (!readFully(channel, record, position + JournalRecords.HEADER_SIZE)) {
+                break;
+            }
+            if (JournalRecords.checksum(record, 0, bodyLength) != record.getInt(bodyLength)) {
+                break;
+            }
+
+            JournalRecords.dispatch(record.slice(0, bodyLength), listener);
+            position += JournalRecords.HEADER_SIZE + recordLength;
+        }
+        return position;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                return false;
+            }
+            offset += read;
+        }
+        return true;
+    }
+}
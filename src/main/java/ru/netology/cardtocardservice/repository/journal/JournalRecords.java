@@ -0,0 +1,175 @@
+package ru.netology.cardtocardservice.repository.journal;
+
+import ru.netology.cardtocardservice.domain.AccountTransaction;
+import ru.netology.cardtocardservice.domain.TransferAmount;
+import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.repository.id.OperationIdGenerator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * Двоичный формат записей журнала
+ * <pre>
+ * int    длина тела записи
+ * byte   тип события (OPEN, CREATE, COMMIT, ROLLBACK, CLOSE)
+ * ...    поля события; строки - short длина + UTF-8, null - длина -1
+ * int    CRC32C тела записи
+ * </pre>
+ * Подтверждение и откат адресуют транзакцию ключом long (см. {@link OperationIdGenerator}).
+ * CVV карты в журнал не пишется
+ */
+final class JournalRecords {
+    static final byte OPEN = 1;
+    static final byte CREATE = 2;
+    static final byte COMMIT = 3;
+    static final byte ROLLBACK = 4;
+    static final byte CLOSE = 5;
+
+    static final int HEADER_SIZE = Integer.BYTES;
+    static final int TRAILER_SIZE = Integer.BYTES;
+
+    private JournalRecords() {
+    }
+
+    static int maxOpenSize(String account) {
+        return HEADER_SIZE + 1 + maxStringSize(account) + Long.BYTES + TRAILER_SIZE;
+    }
+
+    static int maxCloseSize(String account) {
+        return HEADER_SIZE + 1 + maxStringSize(account) + TRAILER_SIZE;
+    }
+
+    static int maxCreateSize(AccountTransaction transaction) {
+        return HEADER_SIZE + 1
+                + maxStringSize(transaction.getOperationId())
+                + maxStringSize(transaction.getCardFromNumber())
+                + maxStringSize(transaction.getCardFromValidTill())
+                + maxStringSize(transaction.getCardToNumber())
+                + maxStringSize(transaction.getTransactionRegistrationTime())
+                + maxStringSize(transaction.getAmount().getCurrency())
+                + Integer.BYTES * 2
+                + TRAILER_SIZE;
+    }
+
+    static int maxStateSize(String processedTime) {
+        return HEADER_SIZE + 1 + Long.BYTES + maxStringSize(processedTime) + TRAILER_SIZE;
+    }
+
+    static void writeOpen(ByteBuffer buffer, String account, long amount) {
+        int start = begin(buffer, OPEN);
+        writeString(buffer, account);
+        buffer.putLong(amount);
+        end(buffer, start);
+    }
+
+    static void writeClose(ByteBuffer buffer, String account) {
+        int start = begin(buffer, CLOSE);
+        writeString(buffer, account);
+        end(buffer, start);
+    }
+
+    static void writeCreate(ByteBuffer buffer, AccountTransaction transaction) {
+        int start = begin(buffer, CREATE);
+        writeString(buffer, transaction.getOperationId());
+        writeString(buffer, transaction.getCardFromNumber());
+        writeString(buffer, transaction.getCardFromValidTill());
+        writeString(buffer, transaction.getCardToNumber());
+        writeString(buffer, transaction.getTransactionRegistrationTime());
+        writeString(buffer, transaction.getAmount().getCurrency());
+        buffer.putInt(transaction.getAmount().getValue());
+        buffer.putInt(transaction.getCommissionAmount());
+        end(buffer, start);
+    }
+
+    static void writeState(ByteBuffer buffer, byte type, long key, String processedTime) {
+        int start = begin(buffer, type);
+        buffer.putLong(key);
+        writeString(buffer, processedTime);
+        end(buffer, start);
+    }
+
+    /**
+     * Метод читает тело записи (без длины и CRC) и передает событие слушателю
+     */
+    static void dispatch(ByteBuffer body, JournalListener listener) {
+        byte type = body.get();
+        switch (type) {
+            case OPEN -> listener.onOpen(readString(body), body.getLong());
+            case CREATE -> listener.onCreate(readCreate(body));
+            case COMMIT -> listener.onCommit(body.getLong(), readString(body));
+            case ROLLBACK -> listener.onRollback(body.getLong(), readString(body));
+            case CLOSE -> listener.onClose(readString(body));
+            default -> throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    private static AccountTransaction readCreate(ByteBuffer body) {
+        String operationId = readString(body);
+
+        TransferInfo transferInfo = new TransferInfo();
+        transferInfo.setCardFromNumber(readString(body));
+        transferInfo.setCardFromValidTill(readString(body));
+        transferInfo.setCardToNumber(readString(body));
+        transferInfo.setTransactionRegistrationTime(readString(body));
+
+        TransferAmount amount = new TransferAmount();
+        amount.setCurrency(readString(body));
+        amount.setValue(body.getInt());
+        transferInfo.setAmount(amount);
+        transferInfo.setCommissionAmount(body.getInt());
+
+        long key = OperationIdGenerator.parse(operationId);
+        if (key < 0L) {
+            throw new IllegalStateException("Journal record has operationId {" + operationId + "} of an unknown format");
+        }
+        AccountTransaction transaction = new AccountTransaction(transferInfo);
+        transaction.setOperationId(operationId);
+        transaction.setOperationKey(key);
+        return transaction;
+    }
+
+    private static int begin(ByteBuffer buffer, byte type) {
+        int start = buffer.position();
+        buffer.putInt(0);
+        buffer.put(type);
+        return start;
+    }
+
+    private static void end(ByteBuffer buffer, int start) {
+        int bodyLength = buffer.position() - start - HEADER_SIZE;
+        buffer.putInt(start, bodyLength);
+        buffer.putInt(checksum(buffer, start + HEADER_SIZE, bodyLength));
+    }
+
+    private static int maxStringSize(String value) {
+        return Short.BYTES + (value == null ? 0 : value.length() * 3);
+    }
+
+    private static void writeString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
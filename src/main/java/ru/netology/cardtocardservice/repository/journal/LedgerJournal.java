@@ -0,0 +1,85 @@
+package ru.netology.cardtocardservice.repository.journal;
+
+import ru.netology.cardtocardservice.domain.AccountTransaction;
+
+import java.io.Closeable;
+
+/**
+ * Журнал событий хранилища переводов (write-ahead journal)
+ * Каждое изменение остатков и состояний транзакций записывается в журнал под блокировкой счетов,
+ * поэтому порядок событий в журнале совпадает с порядком их применения. Методы append* возвращают
+ * позицию записи, после освобождения блокировок вызывающая сторона дожидается ее сохранения
+ * на диск через {@link #awaitDurable(long)}
+ */
+public interface LedgerJournal extends Closeable {
+
+    /**
+     * Журнал-заглушка: события никуда не пишутся, восстанавливать нечего
+     */
+    LedgerJournal NONE = new LedgerJournal() {
+    };
+
+    default long appendOpen(String account, long amount) {
+        return 0L;
+    }
+
+    default long appendClose(String account) {
+        return 0L;
+    }
+
+    default long appendCreate(AccountTransaction transaction) {
+        return 0L;
+    }
+
+    default long appendCommit(long key, String processedTime) {
+        return 0L;
+    }
+
+    default long appendRollback(long key, String processedTime) {
+        return 0L;
+    }
+
+    /**
+     * Метод блокирует поток до сохранения на диск записи с переданной позицией
+     */
+    default void awaitDurable(long position) {
+    }
+
+    /**
+     * Метод последовательно передает слушателю все сохраненные события журнала
+     */
+    default void replay(JournalListener listener) {
+    }
+
+    /**
+     * Метод передает слушателю состояние на начало сегмента: последний снимок до него и закрытые сегменты до него
+     */
+    default void replaySealed(long segment, JournalListener listener) {
+    }
+
+    /**
+     * Метод начинает новый сегмент журнала для последующего снимка состояния
+     *
+     * @return номер нового сегмента
+     */
+    default long rotate() {
+        return 0L;
+    }
+
+    /**
+     * Метод сохраняет снимок состояния и удаляет перекрытые им сегменты журнала
+     */
+    default void writeSnapshot(LedgerSnapshot snapshot) {
+    }
+
+    /**
+     * @return true - если события сохраняются на диск и хранилищу нужны снимки состояния
+     */
+    default boolean isDurable() {
+        return false;
+    }
+
+    @Override
+    default void close() {
+    }
+}
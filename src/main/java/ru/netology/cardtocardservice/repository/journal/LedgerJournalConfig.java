@@ -0,0 +1,21 @@
+package ru.netology.cardtocardservice.repository.journal;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * Выбор журнала хранилища по свойствам transfer.journal.*
+ */
+@Configuration
+public class LedgerJournalConfig {
+
+    @Bean
+    public LedgerJournal ledgerJournal(@Value("${transfer.journal.enabled:false}") boolean enabled,
+                                       @Value("${transfer.journal.dir:./data/journal}") Path directory,
+                                       @Value("${transfer.journal.group-commit:true}") boolean groupCommit) {
+        return enabled ? new FileLedgerJournal(directory, groupCommit) : LedgerJournal.NONE;
+    }
+}
@@ -0,0 +1,16 @@
+package ru.netology.cardtocardservice.repository.journal;
+
+import ru.netology.cardtocardservice.domain.AccountTransaction;
+
+import java.util.List;
+
+/**
+ * Согласованный срез состояния хранилища для записи снимка
+ *
+ * @param segment      номер сегмента журнала, с которого начинается воспроизведение после снимка
+ * @param accounts     номера счетов
+ * @param balances     остатки счетов в том же порядке
+ * @param transactions транзакции в состоянии UNKNOWN
+ */
+public record LedgerSnapshot(long segment, String[] accounts, long[] balances, List<AccountTransaction> transactions) {
+}
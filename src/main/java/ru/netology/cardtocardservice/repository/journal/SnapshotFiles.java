@@ -0,0 +1,107 @@
+package ru.netology.cardtocardservice.repository.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Файл снимка состояния, записываемый и читаемый через отображение в память
+ * <pre>
+ * int    MAGIC
+ * long   номер сегмента журнала, с которого продолжается воспроизведение
+ * int    количество счетов
+ * int    количество транзакций
+ * ...    счета: short длина + номер UTF-8, long остаток
+ * ...    транзакции: записи CREATE в формате журнала
+ * int    CRC32C всего, что выше
+ * </pre>
+ */
+final class SnapshotFiles {
+    private static final int MAGIC = 0x4C534E50;
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES * 2;
+
+    private SnapshotFiles() {
+    }
+
+    /**
+     * Метод записывает снимок во временный файл и атомарно переименовывает его в target
+     */
+    static void write(Path target, LedgerSnapshot snapshot) throws IOException {
+        long size = HEADER_SIZE + Integer.BYTES;
+        for (String account : snapshot.accounts()) {
+            size += Short.BYTES + account.length() + Long.BYTES;
+        }
+        for (var transaction : snapshot.transactions()) {
+            size += JournalRecords.maxCreateSize(transaction);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot is too large: " + size + " bytes");
+        }
+
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC);
+            buffer.putLong(snapshot.segment());
+            buffer.putInt(snapshot.accounts().length);
+            buffer.putInt(snapshot.transactions().size());
+            for (int i = 0; i < snapshot.accounts().length; i++) {
+                byte[] account = snapshot.accounts()[i].getBytes(StandardCharsets.UTF_8);
+                buffer.putShort((short) account.length);
+                buffer.put(account);
+                buffer.putLong(snapshot.balances()[i]);
+            }
+            for (var transaction : snapshot.transactions()) {
+                JournalRecords.writeCreate(buffer, transaction);
+            }
+            int length = buffer.position();
+            buffer.putInt(JournalRecords.checksum(buffer, 0, length));
+            buffer.force();
+            channel.truncate(buffer.position());
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Метод отображает файл снимка в память, проверяет контрольную сумму и передает состояние слушателю
+     *
+     * @return номер сегмента журнала, с которого продолжается воспроизведение, -1 - если снимок поврежден
+     */
+    static long read(Path source, JournalListener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + Integer.BYTES || size > Integer.MAX_VALUE) {
+                return -1;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int length = (int) size - Integer.BYTES;
+            if (buffer.getInt(0) != MAGIC || JournalRecords.checksum(buffer, 0, length) != buffer.getInt(length)) {
+                return -1;
+            }
+
+            long segment = buffer.getLong(Integer.BYTES);
+            int accounts = buffer.getInt(Integer.BYTES + Long.BYTES);
+            int transactions = buffer.getInt(Integer.BYTES + Long.BYTES + Integer.BYTES);
+            buffer.position(HEADER_SIZE);
+            for (int i = 0; i < accounts; i++) {
+                byte[] account = new byte[buffer.getShort()];
+                buffer.get(account);
+                listener.onOpen(new String(account, StandardCharsets.UTF_8), buffer.getLong());
+            }
+            for (int i = 0; i < transactions; i++) {
+                int bodyLength = buffer.getInt();
+                ByteBuffer body = buffer.slice(buffer.position(), bodyLength);
+                JournalRecords.dispatch(body, listener);
+                buffer.position(buffer.position() + bodyLength + JournalRecords.TRAILER_SIZE);
+            }
+            return segment;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package ru.netology.cardtocardservice.repository.ring;
+
+import ru.netology.cardtocardservice.domain.AccountTransaction;
+import ru.netology.cardtocardservice.domain.ConfirmType;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Переиспользуемая ячейка кольца команд. Заполняется публикующим потоком, очищается обработчиком
+ */
+class Command {
+    enum Type {
+        CREATE,
+        CONFIRM,
+        ROLLBACK,
+        OPEN_ACCOUNTS,
+        CLOSE_ACCOUNTS
+    }
+
+    Type type;
+    List<AccountTransaction> transactions;
+    List<ConfirmType> actions;
+    String operationId;
+    String[] accounts;
+    long[] amounts;
+    boolean[] opened;
+    CompletableFuture<Object> result;
+
+    void clear() {
+        type = null;
+        transactions = null;
+        actions = null;
+        operationId = null;
+        accounts = null;
+        amounts = null;
+        opened = null;
+        result = null;
+    }
+}
@@ -0,0 +1,140 @@
+package ru.netology.cardtocardservice.repository.ring;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Кольцевой буфер команд: много публикующих потоков, один обрабатывающий поток
+ * <p>
+ * Ячейки создаются один раз при старте и переиспользуются. Публикующий поток захватывает номер ячейки
+ * атомарным счетчиком, заполняет ее и отмечает готовность номером оборота кольца. Поток-обработчик
+ * забирает подряд все готовые ячейки одной пачкой и только после ее обработки освобождает их для
+ * публикации, поэтому при заполненном кольце публикующие потоки ждут, а не перезаписывают команды
+ * <p>
+ * Простаивающий обработчик паркуется без ограничения по времени, его будит публикующий поток.
+ * Закрытие отмечается в счетчике захвата: команды, захваченные до закрытия, обрабатываются,
+ * а захват после закрытия отклоняется
+ */
+class CommandRing {
+    private static final long PARK_NANOS = 50_000L;
+    private static final long CLOSED = 1L << 62;
+
+    private final Command[] slots;
+    private final int mask;
+    private final int indexShift;
+    private final AtomicIntegerArray published;
+    private final AtomicLong claimed = new AtomicLong(-1L);
+
+    private volatile long consumed = -1L;
+    private volatile long lastAccepted = Long.MAX_VALUE;
+    private volatile boolean consumerParked;
+    private volatile Thread consumer;
+
+    CommandRing(int size) {
+        if (Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Ring size must be a power of two");
+        }
+        this.slots = new Command[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Command();
+        }
+        this.mask = size - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(size);
+        this.published = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Метод захватывает следующую ячейку, ожидая ее освобождения обработчиком при заполненном кольце
+     *
+     * @return номер захваченной ячейки, после заполнения передается в {@link #publish(long)}
+     * @throws IllegalStateException если кольцо закрыто
+     */
+    long claim() {
+        long sequence = claimed.incrementAndGet();
+        if (sequence >= CLOSED) {
+            throw new IllegalStateException("Ledger is closed");
+        }
+        while (sequence - slots.length > consumed) {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return sequence;
+    }
+
+    Command slot(long sequence) {
+        return slots[(int) (sequence & mask)];
+    }
+
+    /**
+     * Запись готовности и чтение признака парковки обработчика упорядочены (volatile), поэтому
+     * обработчик, уснувший после проверки ячейки, всегда будет разбужен
+     */
+    void publish(long sequence) {
+        published.set((int) (sequence & mask), (int) (sequence >>> indexShift));
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Метод закрывает кольцо для захвата, повторный вызов ничего не делает
+     */
+    void close() {
+        long last;
+        do {
+            last = claimed.get();
+            if (last >= CLOSED) {
+                return;
+            }
+        } while (!claimed.compareAndSet(last, last + CLOSED));
+        lastAccepted = last;
+        LockSupport.unpark(consumer);
+    }
+
+    /**
+     * Метод ожидает хотя бы одну опубликованную команду
+     * Вызывается только потоком-обработчиком
+     *
+     * @return номер последней подряд опубликованной команды пачки, next - 1 - если кольцо закрыто
+     * и все захваченные до закрытия команды обработаны
+     */
+    long awaitBatch(long next, Thread current) {
+        consumer = current;
+        int spins = 0;
+        while (!isPublished(next)) {
+            if (next > lastAccepted) {
+                return next - 1;
+            }
+            if (++spins < 100) {
+                Thread.onSpinWait();
+                continue;
+            }
+            consumerParked = true;
+            if (!isPublished(next) && next <= lastAccepted) {
+                LockSupport.park(this);
+            }
+            consumerParked = false;
+        }
+
+        long last = next;
+        long limit = Math.min(claimed.get(), lastAccepted);
+        while (last < limit && isPublished(last + 1)) {
+            last++;
+        }
+        return last;
+    }
+
+    /**
+     * Метод освобождает обработанные ячейки для повторной публикации
+     */
+    void release(long last) {
+        consumed = last;
+    }
+
+    private boolean isPublished(long sequence) {
+        return published.get((int) (sequence & mask)) == (int) (sequence >>> indexShift);
+    }
+}
@@ -0,0 +1,549 @@
+package ru.netology.cardtocardservice.repository.ring;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import ru.netology.cardtocardservice.domain.AccountTransaction;
+import ru.netology.cardtocardservice.domain.ConfirmType;
+import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.exception.AccountNotExist;
+import ru.netology.cardtocardservice.exception.NegativeAccountState;
+import ru.netology.cardtocardservice.exception.OperationNotExist;
+import ru.netology.cardtocardservice.exception.TransferException;
+import ru.netology.cardtocardservice.repository.AccountTransactionIndex;
+import ru.netology.cardtocardservice.repository.HoldExpiryWheel;
+import ru.netology.cardtocardservice.repository.Storagable;
+import ru.netology.cardtocardservice.repository.TransactionTable;
+import ru.netology.cardtocardservice.repository.TransferRepository;
+import ru.netology.cardtocardservice.repository.balance.BalanceStore;
+import ru.netology.cardtocardservice.repository.id.OperationIdGenerator;
+import ru.netology.cardtocardservice.repository.id.SnowflakeOperationIdGenerator;
+import ru.netology.cardtocardservice.repository.journal.JournalListener;
+import ru.netology.cardtocardservice.repository.journal.LedgerJournal;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+import static ru.netology.cardtocardservice.repository.TransferRepository.COMMISSION_ACCOUNT;
+
+/**
+ * Хранилище с единственным потоком-владельцем состояния (transfer.storage.engine=SINGLE_WRITER)
+ * <p>
+ * Создание, подтверждение и откат транзакций, открытие и закрытие пакетов счетов публикуются командами в {@link CommandRing}, а применяет их
+ * по порядку один поток ledger-writer, поэтому остатки и состояния транзакций изменяются без блокировок.
+ * Вызывающая сторона получает {@link CompletableFuture} с результатом команды; методы {@link Storagable}
+ * дожидаются его синхронно. Команды, забранные из кольца одной пачкой, ждут сохранения журнала один раз
+ * <p>
+ * Остатки, удержания и таблица транзакций хранятся в потокобезопасных структурах, поэтому предварительные
+ * проверки сервиса читают их из потоков запросов. Выписка по карте читается по {@link AccountTransactionIndex}.
+ * Перенос завершенных транзакций в архив и снимки состояния этим хранилищем не выполняются
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "transfer.storage.engine", havingValue = "SINGLE_WRITER")
+public class SingleWriterLedger implements Storagable {
+    private final BalanceStore accountRest;
+    private final BalanceStore accountHold;
+    private final TransactionTable transactions = new TransactionTable();
+    private final AccountTransactionIndex accountIndex = new AccountTransactionIndex(TransferRepository.STATEMENT_DEPTH);
+    private final LedgerJournal journal;
+    private final HoldExpiryWheel expiryWheel;
+    private final CommandRing ring;
+    private final Thread writer;
+    private final Object[] batchResults;
+    private final CompletableFuture<?>[] batchFutures;
+    private final OperationIdGenerator idGenerator;
+
+    public SingleWriterLedger() {
+        this(BalanceStore.Type.MAP, LedgerJournal.NONE, HoldExpiryWheel.DISABLED, 1024);
+    }
+
+    public SingleWriterLedger(BalanceStore.Type balanceStoreType, LedgerJournal journal,
+                              HoldExpiryWheel expiryWheel, int ringSize) {
+        this(balanceStoreType, journal, expiryWheel, ringSize, new SnowflakeOperationIdGenerator(0));
+    }
+
+    @Autowired
+    public SingleWriterLedger(@Value("${transfer.storage.balance:MAP}") BalanceStore.Type balanceStoreType,
+                              LedgerJournal journal,
+                              HoldExpiryWheel expiryWheel,
+                              @Value("${transfer.storage.ring-size:1024}") int ringSize,
+                              OperationIdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+        this.accountRest = balanceStoreType.create();
+        this.accountHold = balanceStoreType.create();
+        this.journal = journal;
+        this.expiryWheel = expiryWheel;
+        this.ring = new CommandRing(ringSize);
+        this.batchResults = new Object[ringSize];
+        this.batchFutures = new CompletableFuture<?>[ringSize];
+
+        //восстановим состояние из журнала, поток обработки команд еще не запущен
+        journal.replay(new JournalReplay());
+
+        //для теста
+        long position = openAccountIfAbsent("4548987854653322", 10000000);
+        position = Math.max(position, openAccountIfAbsent("4548987854653311", 50));
+
+        //добавим счет комиссии
+        position = Math.max(position, openAccountIfAbsent(COMMISSION_ACCOUNT, 0));
+        journal.awaitDurable(position);
+
+        transactions.values().stream()
+                .filter(transaction -> transaction.getCommitCode() == ConfirmType.UNKNOWN)
+                .forEach(transaction -> expiryWheel.schedule(transaction.getOperationKey()));
+
+        this.writer = new Thread(this::processCommands, "ledger-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        expiryWheel.start(this::rollbackExpired);
+    }
+
+    @Override
+    public String createTransaction(TransferInfo transferInfo) {
+        return await(createTransactionsAsync(List.of(transferInfo))).get(0);
+    }
+
+    @Override
+    public List<String> createTransactions(List<TransferInfo> transferInfos) {
+        return await(createTransactionsAsync(transferInfos));
+    }
+
+    @Override
+    public String commitTransaction(AccountTransaction transaction) {
+        return await(commitTransactionAsync(transaction));
+    }
+
+    @Override
+    public String rollbackTransaction(String operationId) {
+        return await(rollbackTransactionAsync(operationId));
+    }
+
+    @Override
+    public List<TransferException> confirmTransactions(List<AccountTransaction> transactions, List<ConfirmType> actions) {
+        return await(confirmTransactionsAsync(transactions, actions));
+    }
+
+    /**
+     * Метод публикует создание транзакций. Объекты транзакций и идентификаторы создаются в потоке вызова
+     *
+     * @return идентификаторы operationId в порядке переводов после применения команды
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<List<String>> createTransactionsAsync(List<TransferInfo> transferInfos) {
+        List<AccountTransaction> created = new ArrayList<>(transferInfos.size());
+        for (TransferInfo transferInfo : transferInfos) {
+            AccountTransaction transaction = new AccountTransaction(transferInfo);
+            long key = idGenerator.nextKey();
+            transaction.setOperationKey(key);
+            transaction.setOperationId(idGenerator.format(key));
+            created.add(transaction);
+        }
+        return (CompletableFuture<List<String>>) (CompletableFuture<?>) submit(Command.Type.CREATE, created, null, null);
+    }
+
+    public CompletableFuture<String> commitTransactionAsync(AccountTransaction transaction) {
+        return confirmTransactionsAsync(List.of(transaction), List.of(ConfirmType.COMMITED))
+                .thenApply(errors -> {
+                    if (errors.get(0) != null) {
+                        throw errors.get(0);
+                    }
+                    return transaction.getOperationId();
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<String> rollbackTransactionAsync(String operationId) {
+        return (CompletableFuture<String>) (CompletableFuture<?>) submit(Command.Type.ROLLBACK, null, null, operationId);
+    }
+
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<List<TransferException>> confirmTransactionsAsync(List<AccountTransaction> transactions,
+                                                                               List<ConfirmType> actions) {
+        return (CompletableFuture<List<TransferException>>) (CompletableFuture<?>) submit(Command.Type.CONFIRM, transactions, actions, null);
+    }
+
+    @Override
+    public int openAccounts(String[] accounts, long[] amounts, boolean[] opened) {
+        return (Integer) await(submit(Command.Type.OPEN_ACCOUNTS, accounts, amounts, opened));
+    }
+
+    @Override
+    public int closeAccounts(String[] accounts, long[] amounts) {
+        return (Integer) await(submit(Command.Type.CLOSE_ACCOUNTS, accounts, amounts, null));
+    }
+
+    @Override
+    public Map<String, Integer> getAccountRest() {
+        return accountRest.asMap();
+    }
+
+    @Override
+    public Map<String, AccountTransaction> getTransactions() {
+        return transactions.asMap();
+    }
+
+    @Override
+    public ConfirmType getArchivedState(String operationId) {
+        return null;
+    }
+
+    @Override
+    public Stream<AccountTransaction> findAccountTransactions(String account, String after) {
+        return accountIndex.newestFirst(account, after, transactions);
+    }
+
+    @Override
+    public boolean hasAccount(String account) {
+        return accountRest.contains(account);
+    }
+
+    @Override
+    public long getBalance(String account) {
+        return accountRest.get(account);
+    }
+
+    @Override
+    public long getHoldAmount(String account) {
+        return accountHold.get(account);
+    }
+
+    /**
+     * Метод откатывает транзакцию по истечении срока подтверждения
+     *
+     * @param key ключ транзакции
+     * @return false - если транзакция уже завершена
+     */
+    private boolean rollbackExpired(long key) {
+        AccountTransaction transaction = transactions.get(key);
+        if (transaction == null || transaction.getCommitCode() != ConfirmType.UNKNOWN) {
+            return false;
+        }
+        //транзакция, завершенная потоком-владельцем после проверки, возвращается ошибкой в списке, а не исключением
+        return await(confirmTransactionsAsync(List.of(transaction), List.of(ConfirmType.ROLLBACK))).get(0) == null;
+    }
+
+    /**
+     * Метод закрывает кольцо для новых команд и дожидается, пока поток-владелец применит и завершит
+     * все команды, опубликованные до закрытия
+     */
+    @PreDestroy
+    public void close() {
+        ring.close();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<Object> submit(Command.Type type, List<AccountTransaction> transactions,
+                                             List<ConfirmType> actions, String operationId) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        long sequence = ring.claim();
+        Command command = ring.slot(sequence);
+        command.type = type;
+        command.transactions = transactions;
+        command.actions = actions;
+        command.operationId = operationId;
+        command.result = result;
+        ring.publish(sequence);
+        return result;
+    }
+
+    private CompletableFuture<Object> submit(Command.Type type, String[] accounts, long[] amounts, boolean[] opened) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        long sequence = ring.claim();
+        Command command = ring.slot(sequence);
+        command.type = type;
+        command.accounts = accounts;
+        command.amounts = amounts;
+        command.opened = opened;
+        command.result = result;
+        ring.publish(sequence);
+        return result;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Цикл потока-владельца: применяет пачку команд, один раз ждет сохранения журнала
+     * и только затем сообщает результаты вызывающим потокам. Завершается после закрытия кольца,
+     * когда обработаны все захваченные до закрытия команды
+     */
+    private void processCommands() {
+        Thread current = Thread.currentThread();
+        long next = 0L;
+        while (true) {
+            long last = ring.awaitBatch(next, current);
+            if (last < next) {
+                break;
+            }
+
+            int size = (int) (last - next + 1);
+            long journalPosition = 0L;
+            for (int i = 0; i < size; i++) {
+                Command command = ring.slot(next + i);
+                batchFutures[i] = command.result;
+                try {
+                    journalPosition = Math.max(journalPosition, execute(command, i));
+                } catch (RuntimeException e) {
+                    batchResults[i] = e;
+                }
+                command.clear();
+            }
+            ring.release(last);
+
+            RuntimeException journalFailure = null;
+            try {
+                journal.awaitDurable(journalPosition);
+            } catch (RuntimeException e) {
+                journalFailure = e;
+            }
+            complete(size, journalFailure);
+            next = last + 1;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void complete(int size, RuntimeException journalFailure) {
+        for (int i = 0; i < size; i++) {
+            CompletableFuture<Object> future = (CompletableFuture<Object>) batchFutures[i];
+            Object result = batchResults[i];
+            if (journalFailure != null) {
+                future.completeExceptionally(journalFailure);
+            } else if (result instanceof RuntimeException e) {
+                future.completeExceptionally(e);
+            } else {
+                future.complete(result);
+            }
+            batchFutures[i] = null;
+            batchResults[i] = null;
+        }
+    }
+
+    /**
+     * Метод применяет команду и сохраняет ее результат в batchResults
+     *
+     * @return позиция последней записи команды в журнале
+     */
+    private long execute(Command command, int index) {
+        return switch (command.type) {
+            case CREATE -> {
+                long journalPosition = 0L;
+                List<String> operationIds = new ArrayList<>(command.transactions.size());
+                for (AccountTransaction transaction : command.transactions) {
+                    applyCreate(transaction);
+                    journalPosition = journal.appendCreate(transaction);
+                    operationIds.add(transaction.getOperationId());
+                    expiryWheel.schedule(transaction.getOperationKey());
+                }
+                batchResults[index] = operationIds;
+                yield journalPosition;
+            }
+            case CONFIRM -> {
+                long journalPosition = 0L;
+                TransferException[] errors = new TransferException[command.transactions.size()];
+                for (int i = 0; i < errors.length; i++) {
+                    try {
+                        AccountTransaction transaction = command.transactions.get(i);
+                        journalPosition = Math.max(journalPosition, command.actions.get(i) == ConfirmType.COMMITED
+                                ? commit(transaction, errors, i)
+                                : rollback(transaction));
+                    } catch (TransferException e) {
+                        errors[i] = e;
+                    }
+                }
+                batchResults[index] = Arrays.asList(errors);
+                yield journalPosition;
+            }
+            case ROLLBACK -> {
+                AccountTransaction transaction = transactions.get(command.operationId);
+                if (transaction == null) {
+                    throw new OperationNotExist(String.format("Transaction {%s} is not exists in transaction table", command.operationId), 103);
+                }
+                long journalPosition = rollback(transaction);
+                batchResults[index] = command.operationId;
+                yield journalPosition;
+            }
+            case OPEN_ACCOUNTS -> {
+                long journalPosition = 0L;
+                int opened = 0;
+                for (int i = 0; i < command.accounts.length; i++) {
+                    if (!accountRest.contains(command.accounts[i])) {
+                        accountRest.put(command.accounts[i], command.amounts[i]);
+                        command.opened[i] = true;
+                        opened++;
+                        journalPosition = journal.appendOpen(command.accounts[i], command.amounts[i]);
+                    }
+                }
+                batchResults[index] = opened;
+                yield journalPosition;
+            }
+            case CLOSE_ACCOUNTS -> {
+                List<String> closed = new ArrayList<>(command.accounts.length);
+                for (int i = 0; i < command.accounts.length; i++) {
+                    String account = command.accounts[i];
+                    if (accountRest.contains(account) && accountRest.get(account) == command.amounts[i]
+                            && accountHold.get(account) == 0L && !accountIndex.hasPending(account, transactions)) {
+                        accountRest.remove(account);
+                        closed.add(account);
+                    }
+                }
+                long journalPosition = 0L;
+                for (String account : closed) {
+                    journalPosition = journal.appendClose(account);
+                }
+                batchResults[index] = closed.size();
+                yield journalPosition;
+            }
+        };
+    }
+
+    /**
+     * Метод подтверждает транзакцию. Если перспективный остаток счета Дебета отрицательный,
+     * транзакция откатывается, а в errors записывается ошибка 102; если счет Кредита закрыт - ошибка 100
+     */
+    private long commit(AccountTransaction transaction, TransferException[] errors, int index) {
+        checkUnknownState(transaction);
+
+        if (!accountRest.contains(transaction.getCardToNumber())) {
+            long journalPosition = rollback(transaction);
+            String msg = String.format("Account {%s} is closed. The transaction was rejected (ROLLBACK)", transaction.getCardToNumber());
+            log.error(msg);
+            errors[index] = new AccountNotExist(msg, 100);
+            return journalPosition;
+        }
+
+        if (accountRest.get(transaction.getCardFromNumber()) - getTransactionTotal(transaction) <= 0) {
+            long journalPosition = rollback(transaction);
+            String msg = String.format("The account PAN {%s} status may receive a negative balance, " +
+                    "operation does not possible. The transaction was rejected (ROLLBACK)", transaction.getCardFromNumber());
+            log.error(msg);
+            errors[index] = new NegativeAccountState(msg, 102);
+            return journalPosition;
+        }
+
+        applyCommit(transaction);
+        String processedTime = updateTransaction(transaction, ConfirmType.COMMITED, currentTime());
+        log.debug("Transaction {{}} is committed", transaction.getOperationId());
+        return journal.appendCommit(transaction.getOperationKey(), processedTime);
+    }
+
+    private long rollback(AccountTransaction transaction) {
+        checkUnknownState(transaction);
+        String processedTime = updateTransaction(transaction, ConfirmType.ROLLBACK, currentTime());
+        log.debug("Transaction {{}} was rejected", transaction.getOperationId());
+        return journal.appendRollback(transaction.getOperationKey(), processedTime);
+    }
+
+    private long openAccountIfAbsent(String account, long amount) {
+        if (accountRest.contains(account)) {
+            return 0L;
+        }
+        accountRest.put(account, amount);
+        return journal.appendOpen(account, amount);
+    }
+
+    private void applyCreate(AccountTransaction transaction) {
+        transaction.setCommitCode(ConfirmType.UNKNOWN);
+        transactions.put(transaction);
+        accountIndex.add(transaction);
+        accountHold.add(transaction.getCardFromNumber(), getTransactionTotal(transaction));
+    }
+
+    private void applyCommit(AccountTransaction transaction) {
+        if (transaction.getCommissionAmount() > 0) {
+            accountRest.add(transaction.getCardFromNumber(), -transaction.getCommissionAmount());
+            accountRest.add(COMMISSION_ACCOUNT, transaction.getCommissionAmount());
+        }
+        accountRest.add(transaction.getCardFromNumber(), -transaction.getAmount().getValue());
+        accountRest.add(transaction.getCardToNumber(), transaction.getAmount().getValue());
+    }
+
+    private void checkUnknownState(AccountTransaction transaction) {
+        if (transaction.getCommitCode() == ConfirmType.COMMITED) {
+            throw new OperationNotExist(String.format("Transaction {%s} is already commited", transaction.getOperationId()), 104);
+        }
+        if (transaction.getCommitCode() == ConfirmType.ROLLBACK) {
+            throw new OperationNotExist(String.format("Transaction {%s} was already rollback", transaction.getOperationId()), 105);
+        }
+    }
+
+    /**
+     * Метод меняет состояние транзакции и при выходе из UNKNOWN снимает удержание по счету Дебета
+     */
+    private String updateTransaction(AccountTransaction transaction, ConfirmType confirmType, String processedTime) {
+        if (transaction.getCommitCode() == ConfirmType.UNKNOWN) {
+            accountHold.add(transaction.getCardFromNumber(), -getTransactionTotal(transaction));
+        }
+        transaction.setTransactionProcessedTime(processedTime);
+        transaction.setCommitCode(confirmType);
+        return processedTime;
+    }
+
+    private long getTransactionTotal(AccountTransaction transaction) {
+        return (long) transaction.getAmount().getValue() + transaction.getCommissionAmount();
+    }
+
+    private String currentTime() {
+        return new SimpleDateFormat("dd.MM.yyyy HH:mm:ss").format(new Date());
+    }
+
+    /**
+     * Применение событий журнала при восстановлении, до запуска потока-владельца
+     */
+    private class JournalReplay implements JournalListener {
+        @Override
+        public void onOpen(String account, long amount) {
+            accountRest.put(account, amount);
+        }
+
+        @Override
+        public void onClose(String account) {
+            accountRest.remove(account);
+        }
+
+        @Override
+        public void onCreate(AccountTransaction transaction) {
+            idGenerator.observe(transaction.getOperationKey());
+            applyCreate(transaction);
+        }
+
+        @Override
+        public void onCommit(long key, String processedTime) {
+            AccountTransaction transaction = transactions.get(key);
+            if (transaction != null && transaction.getCommitCode() == ConfirmType.UNKNOWN) {
+                applyCommit(transaction);
+                updateTransaction(transaction, ConfirmType.COMMITED, processedTime);
+            }
+        }
+
+        @Override
+        public void onRollback(long key, String processedTime) {
+            AccountTransaction transaction = transactions.get(key);
+            if (transaction != null && transaction.getCommitCode() == ConfirmType.UNKNOWN) {
+                updateTransaction(transaction, ConfirmType.ROLLBACK, processedTime);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ru.netology.cardtocardservice.repository.shard;
+
+import java.util.Arrays;
+
+/**
+ * Кольцо консистентного хэширования номеров карт по шардам
+ * <p>
+ * Каждый шард занимает на кольце несколько виртуальных точек. Карта принадлежит шарду первой точки
+ * по часовой стрелке от хэша PAN, поэтому при добавлении шарда переезжает только доля карт,
+ * попавшая на его точки, а не все карты, как при остатке от деления
+ */
+public class ShardRing {
+    private final long[] points;
+    private final int[] owners;
+    private final int shards;
+
+    public ShardRing(int shards, int virtualNodes) {
+        if (shards < 1 || virtualNodes < 1) {
+            throw new IllegalArgumentException("Shard ring needs at least one shard and one virtual node");
+        }
+        this.shards = shards;
+
+        long[][] ring = new long[shards * virtualNodes][];
+        for (int shard = 0; shard < shards; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                ring[shard * virtualNodes + node] = new long[]{mix((long) shard << 32 | node), shard};
+            }
+        }
+        Arrays.sort(ring, (left, right) -> Long.compareUnsigned(left[0], right[0]));
+
+        this.points = new long[ring.length];
+        this.owners = new int[ring.length];
+        for (int i = 0; i < ring.length; i++) {
+            points[i] = ring[i][0];
+            owners[i] = (int) ring[i][1];
+        }
+    }
+
+    public int size() {
+        return shards;
+    }
+
+    /**
+     * @param pan номер карты
+     * @return номер шарда, которому принадлежит карта
+     */
+    public int shardOf(String pan) {
+        long hash = mix(pan.hashCode() * 0x9E3779B97F4A7C15L ^ pan.length());
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(points[middle], hash) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        //за последней точкой кольцо замыкается на первую
+        return owners[low == points.length ? 0 : low];
+    }
+
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
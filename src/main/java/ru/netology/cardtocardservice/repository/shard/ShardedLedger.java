@@ -0,0 +1,624 @@
+package ru.netology.cardtocardservice.repository.shard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import ru.netology.cardtocardservice.domain.AccountTransaction;
+import ru.netology.cardtocardservice.domain.ConfirmType;
+import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.exception.AccountNotExist;
+import ru.netology.cardtocardservice.exception.NegativeAccountState;
+import ru.netology.cardtocardservice.exception.OperationNotExist;
+import ru.netology.cardtocardservice.exception.TransferException;
+import ru.netology.cardtocardservice.repository.HoldExpiryWheel;
+import ru.netology.cardtocardservice.repository.Storagable;
+import ru.netology.cardtocardservice.repository.TransferRepository;
+import ru.netology.cardtocardservice.repository.balance.BalanceStore;
+import ru.netology.cardtocardservice.repository.id.OperationIdGenerator;
+import ru.netology.cardtocardservice.repository.id.SnowflakeOperationIdGenerator;
+import ru.netology.cardtocardservice.repository.journal.LedgerJournal;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static ru.netology.cardtocardservice.repository.TransferRepository.COMMISSION_ACCOUNT;
+
+/**
+ * Хранилище, разделенное на шарды по картам (transfer.storage.engine=SHARDED)
+ * <p>
+ * Каждый шард - отдельный {@link TransferRepository}, владеющий картами, которые ему назначает {@link ShardRing}.
+ * Перевод между картами одного шарда выполняется этим шардом без изменений. Перевод между шардами выполняется
+ * двухфазно на существующих состояниях транзакций:
+ * <ul>
+ * <li>подготовка - две транзакции UNKNOWN: списание с карты отправителя на транзитный счет ее шарда
+ * (удерживает сумму и комиссию) и зачисление с транзитного счета шарда получателя на его карту;</li>
+ * <li>решение принимает шард отправителя: подтверждение или откат транзакции списания (в том числе
+ * автоматический откат с ошибкой 102), после чего транзакция зачисления переводится в то же состояние.
+ * Незавершенное зачисление не меняет ответ клиенту и повторяется по расписанию ({@link ShardedLedgerMaintenance}).</li>
+ * </ul>
+ * Клиент получает operationId транзакции списания, транзакции зачисления наружу не видны.
+ * Транзитный счет каждого шарда открывается с лимитом {@link #TRANSIT_LIQUIDITY}: сумма транзитных остатков
+ * всех шардов не меняется, отклонение остатка шарда от лимита - его нетто-позиция перед другими шардами.
+ * Нетто-позиции закрываются по расписанию (см. {@link #settleTransit()}): излишек транзитных счетов переносится
+ * на счета шардов с остатком ниже лимита. Поэтому перевод на шард отклоняется с ошибкой 101, только если
+ * за период transfer.storage.transit-settlement-interval на шард поступило больше {@link #TRANSIT_LIQUIDITY},
+ * чем с него ушло; после расчета переводы на шард снова проходят
+ * <p>
+ * Шарды работают в одном процессе без журнала и собственных таймеров подтверждения:
+ * срок подтверждения отслеживается для перевода целиком, чтобы обе его транзакции откатывались вместе.
+ * Завершенные транзакции шардов старше transfer.history.hot-window переносятся в архивы шардов
+ * (см. {@link #archiveFinalized()}); при нулевом окне таблицы транзакций шардов растут без ограничения
+ * <p>
+ * Номер узла генератора operationId шарда - transfer.operation-id.node * число шардов + номер шарда:
+ * идентификаторы не пересекаются ни между шардами, ни между экземплярами сервиса, а шард транзакции
+ * определяется по номеру узла в ее ключе без просмотра таблиц всех шардов
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "transfer.storage.engine", havingValue = "SHARDED")
+public class ShardedLedger implements Storagable {
+    public static final String TRANSIT_ACCOUNT = "3030100000000001";
+    public static final long TRANSIT_LIQUIDITY = 1_000_000_000L;
+
+    private final ShardRing ring;
+    private final TransferRepository[] shards;
+    private final HoldExpiryWheel expiryWheel;
+    private final int firstNode;
+    private final Map<Long, CreditLeg> creditLegs = new ConcurrentHashMap<>();
+    private final Map<String, Integer> accountRest = new AccountRestView();
+    private final Map<String, AccountTransaction> transactions = new TransactionView();
+
+    public ShardedLedger(int shardCount) {
+        this(BalanceStore.Type.MAP, HoldExpiryWheel.DISABLED, shardCount, 64, OperationIdGenerator.Type.SNOWFLAKE, 0);
+    }
+
+    public ShardedLedger(BalanceStore.Type balanceStoreType, HoldExpiryWheel expiryWheel, int shardCount,
+                         int virtualNodes, OperationIdGenerator.Type idType, int node) {
+        this(balanceStoreType, expiryWheel, shardCount, virtualNodes, idType, node, Duration.ZERO);
+    }
+
+    @Autowired
+    public ShardedLedger(@Value("${transfer.storage.balance:MAP}") BalanceStore.Type balanceStoreType,
+                         HoldExpiryWheel expiryWheel,
+                         @Value("${transfer.storage.shards:4}") int shardCount,
+                         @Value("${transfer.storage.shard-virtual-nodes:64}") int virtualNodes,
+                         @Value("${transfer.operation-id.type:SNOWFLAKE}") OperationIdGenerator.Type idType,
+                         @Value("${transfer.operation-id.node:0}") int node,
+                         @Value("${transfer.history.hot-window:PT0S}") Duration hotWindow) {
+        this.firstNode = node * shardCount;
+        if (node < 0 || firstNode + shardCount - 1 > SnowflakeOperationIdGenerator.MAX_NODE) {
+            throw new IllegalArgumentException(String.format("Node id %d with %d shards exceeds the node range 0..%d",
+                    node, shardCount, SnowflakeOperationIdGenerator.MAX_NODE));
+        }
+        this.ring = new ShardRing(shardCount, virtualNodes);
+        this.shards = new TransferRepository[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            int shard = i;
+            shards[i] = new TransferRepository(balanceStoreType, LedgerJournal.NONE, HoldExpiryWheel.DISABLED, hotWindow,
+                    idType.create(firstNode + shard), account -> ring.shardOf(account) == shard);
+            shards[i].openAccount(TRANSIT_ACCOUNT, TRANSIT_LIQUIDITY);
+        }
+        this.expiryWheel = expiryWheel;
+        expiryWheel.start(this::rollbackExpired);
+    }
+
+    /**
+     * @return номер шарда, которому принадлежит карта
+     */
+    public int shardOf(String pan) {
+        return ring.shardOf(pan);
+    }
+
+    public TransferRepository getShard(int shard) {
+        return shards[shard];
+    }
+
+    /**
+     * Метод открывает счет на шарде, которому принадлежит карта
+     *
+     * @return false - если счет уже существует
+     */
+    public boolean openAccount(String account, long amount) {
+        return shards[ring.shardOf(account)].openAccount(account, amount);
+    }
+
+    /**
+     * Метод раскладывает пакет счетов по шардам и открывает каждую часть одним пакетом на своем шарде
+     */
+    @Override
+    public int openAccounts(String[] accounts, long[] amounts, boolean[] opened) {
+        return forEachShard(accounts, amounts, opened, TransferRepository::openAccounts);
+    }
+
+    @Override
+    public int closeAccounts(String[] accounts, long[] amounts) {
+        return forEachShard(accounts, amounts, null,
+                (shard, shardAccounts, shardAmounts, ignored) -> shard.closeAccounts(shardAccounts, shardAmounts));
+    }
+
+    @Override
+    public String createTransaction(TransferInfo transferInfo) {
+        int debitShard = ring.shardOf(transferInfo.getCardFromNumber());
+        int creditShard = ring.shardOf(transferInfo.getCardToNumber());
+
+        String operationId = debitShard == creditShard
+                ? shards[debitShard].createTransaction(transferInfo)
+                : prepare(transferInfo, debitShard, creditShard);
+        expiryWheel.schedule(OperationIdGenerator.parse(operationId));
+        return operationId;
+    }
+
+    @Override
+    public List<String> createTransactions(List<TransferInfo> transferInfos) {
+        List<String> operationIds = new ArrayList<>(transferInfos.size());
+        try {
+            for (TransferInfo transferInfo : transferInfos) {
+                operationIds.add(createTransaction(transferInfo));
+            }
+        } catch (RuntimeException e) {
+            //пакет создается целиком: уже созданные транзакции пакета откатываются
+            operationIds.forEach(this::rollbackTransaction);
+            throw e;
+        }
+        return operationIds;
+    }
+
+    @Override
+    public String commitTransaction(AccountTransaction transaction) {
+        String operationId = transaction.getOperationId();
+        TransferRepository debitShard = shards[ring.shardOf(transaction.getCardFromNumber())];
+        CreditLeg creditLeg = creditLegs.get(transaction.getOperationKey());
+        if (creditLeg == null) {
+            return debitShard.commitTransaction(transaction);
+        }
+
+        try {
+            return debitShard.commitTransaction(transaction);
+        } finally {
+            //решение по переводу - итоговое состояние транзакции списания
+            completeCreditLeg(transaction.getOperationKey(), creditLeg, transaction.getCommitCode());
+        }
+    }
+
+    @Override
+    public String rollbackTransaction(String operationId) {
+        AccountTransaction transaction = transactions.get(operationId);
+        if (transaction == null) {
+            String msg = String.format("Transaction {%s} is not exists in transaction table", operationId);
+            log.error(msg);
+            throw new OperationNotExist(msg, 103);
+        }
+        TransferRepository debitShard = shardOfKey(transaction.getOperationKey());
+        CreditLeg creditLeg = creditLegs.get(transaction.getOperationKey());
+        try {
+            return debitShard.rollbackTransaction(operationId);
+        } finally {
+            if (creditLeg != null) {
+                completeCreditLeg(transaction.getOperationKey(), creditLeg, transaction.getCommitCode());
+            }
+        }
+    }
+
+    @Override
+    public List<TransferException> confirmTransactions(List<AccountTransaction> transactions, List<ConfirmType> actions) {
+        List<TransferException> errors = new ArrayList<>(transactions.size());
+        for (int i = 0; i < transactions.size(); i++) {
+            try {
+                if (actions.get(i) == ConfirmType.COMMITED) {
+                    commitTransaction(transactions.get(i));
+                } else {
+                    rollbackTransaction(transactions.get(i).getOperationId());
+                }
+                errors.add(null);
+            } catch (TransferException e) {
+                errors.add(e);
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * @return остатки карт всех шардов; счет комиссий - сумма счетов комиссий шардов
+     */
+    @Override
+    public Map<String, Integer> getAccountRest() {
+        return accountRest;
+    }
+
+    /**
+     * @return транзакции всех шардов, кроме транзакций зачисления межшардовых переводов
+     */
+    @Override
+    public Map<String, AccountTransaction> getTransactions() {
+        return transactions;
+    }
+
+    @Override
+    public ConfirmType getArchivedState(String operationId) {
+        for (TransferRepository shard : shards) {
+            ConfirmType state = shard.getArchivedState(operationId);
+            if (state != null) {
+                return state;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Выписка читается по индексу шарда-владельца карты: на нем хранятся ее переводы внутри шарда
+     * и транзакции списания ее межшардовых переводов. Транзакции зачисления в выписку не попадают
+     */
+    @Override
+    public Stream<AccountTransaction> findAccountTransactions(String account, String after) {
+        return shards[ring.shardOf(account)].findAccountTransactions(account, after)
+                .filter(transaction -> !isCreditLeg(transaction));
+    }
+
+    /**
+     * Транзитные счета шардов служебные и наружу не видны
+     */
+    @Override
+    public boolean hasAccount(String account) {
+        return !TRANSIT_ACCOUNT.equals(account) && shards[ring.shardOf(account)].hasAccount(account);
+    }
+
+    /**
+     * @return остаток карты на шарде-владельце; счет комиссий - сумма счетов комиссий шардов
+     */
+    @Override
+    public long getBalance(String account) {
+        if (TRANSIT_ACCOUNT.equals(account)) {
+            return 0L;
+        }
+        if (COMMISSION_ACCOUNT.equals(account)) {
+            long total = 0L;
+            for (TransferRepository shard : shards) {
+                total += shard.getBalance(COMMISSION_ACCOUNT);
+            }
+            return total;
+        }
+        return shards[ring.shardOf(account)].getBalance(account);
+    }
+
+    @Override
+    public long getHoldAmount(String account) {
+        return shards[ring.shardOf(account)].getHoldAmount(account);
+    }
+
+    /**
+     * Фаза подготовки межшардового перевода
+     *
+     * @return operationId транзакции списания
+     */
+    private String prepare(TransferInfo transferInfo, int debitShard, int creditShard) {
+        String operationId = shards[debitShard].createTransaction(
+                leg(transferInfo, transferInfo.getCardFromNumber(), TRANSIT_ACCOUNT, transferInfo.getCommissionAmount()));
+        try {
+            //ликвидность транзитного счета проверяется и удерживается под его блокировкой на шарде получателя
+            String creditOperationId = shards[creditShard].createCoveredTransaction(
+                    leg(transferInfo, TRANSIT_ACCOUNT, transferInfo.getCardToNumber(), 0));
+            creditLegs.put(OperationIdGenerator.parse(operationId), new CreditLeg(creditShard, creditOperationId));
+        } catch (NegativeAccountState e) {
+            shards[debitShard].rollbackTransaction(operationId);
+            String msg = String.format("Transit account of shard {%d} has no liquidity for transfer. Try it later", creditShard);
+            log.error(msg);
+            throw new NegativeAccountState(msg, 101);
+        } catch (RuntimeException e) {
+            shards[debitShard].rollbackTransaction(operationId);
+            throw e;
+        }
+
+        log.debug("Transaction {} is prepared on shards {} and {}", operationId, debitShard, creditShard);
+        return operationId;
+    }
+
+    /**
+     * Метод завершает транзакции зачисления переводов, по которым шард отправителя уже принял решение,
+     * но зачисление не было завершено в запросе подтверждения. Вызывается по расписанию
+     * (см. {@link ShardedLedgerMaintenance})
+     *
+     * @return количество завершенных транзакций зачисления
+     */
+    public int completeCreditLegs() {
+        int completed = 0;
+        for (Map.Entry<Long, CreditLeg> entry : creditLegs.entrySet()) {
+            TransferRepository shard = shardOfKey(entry.getKey());
+            if (shard == null) {
+                continue;
+            }
+            //транзакция списания могла уйти в архив раньше, чем завершилось зачисление
+            AccountTransaction transaction = shard.getTransaction(entry.getKey());
+            ConfirmType decision = transaction != null ? transaction.getCommitCode() : shard.getArchivedState(entry.getKey());
+            if (decision != null && completeCreditLeg(entry.getKey(), entry.getValue(), decision)) {
+                completed++;
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Метод закрывает нетто-позиции шардов: излишек транзитных счетов сверх {@link #TRANSIT_LIQUIDITY} и их удержаний
+     * переносится на транзитные счета шардов с остатком ниже лимита. Сумма транзитных остатков всех шардов не меняется.
+     * Вызывается по расписанию (см. {@link ShardedLedgerMaintenance})
+     *
+     * @return перенесенная сумма
+     */
+    public long settleTransit() {
+        long[] shortages = new long[shards.length];
+        long shortage = 0L;
+        for (int i = 0; i < shards.length; i++) {
+            shortages[i] = Math.max(0L, TRANSIT_LIQUIDITY - shards[i].getBalance(TRANSIT_ACCOUNT));
+            shortage += shortages[i];
+        }
+        if (shortage == 0L) {
+            return 0L;
+        }
+
+        long surplus = 0L;
+        for (int i = 0; i < shards.length && surplus < shortage; i++) {
+            if (shortages[i] == 0L) {
+                surplus += shards[i].withdrawSurplus(TRANSIT_ACCOUNT, TRANSIT_LIQUIDITY, shortage - surplus);
+            }
+        }
+
+        //излишек не больше суммарной нехватки, поэтому распределяется полностью
+        long moved = surplus;
+        for (int i = 0; i < shards.length && surplus > 0L; i++) {
+            long amount = Math.min(shortages[i], surplus);
+            if (amount > 0L) {
+                shards[i].depositSurplus(TRANSIT_ACCOUNT, amount);
+                surplus -= amount;
+            }
+        }
+
+        if (moved > 0L) {
+            log.debug("{} is moved between transit accounts of shards", moved);
+        }
+        return moved;
+    }
+
+    /**
+     * Метод переносит в архивы шардов их завершенные транзакции старше transfer.history.hot-window
+     *
+     * @return количество перенесенных транзакций
+     */
+    public int archiveFinalized() {
+        int moved = 0;
+        for (TransferRepository shard : shards) {
+            moved += shard.archiveFinalized();
+        }
+        return moved;
+    }
+
+    public int getPendingCreditLegCount() {
+        return creditLegs.size();
+    }
+
+    /**
+     * Метод переводит транзакцию зачисления в состояние транзакции списания
+     * Транзакция зачисления остается в таблице ожидающих, пока ее завершение не пройдет: ошибка записывается в лог
+     * и не возвращается клиенту, так как решение по переводу уже принято, а зачисление повторяет
+     * {@link #completeCreditLegs()}. Одновременное завершение несколькими потоками безопасно: шард получателя
+     * переводит транзакцию из UNKNOWN только один раз, остальные получают ошибку 104 или 105
+     *
+     * @return true - если транзакция зачисления завершена
+     */
+    private boolean completeCreditLeg(long key, CreditLeg creditLeg, ConfirmType decision) {
+        if (decision == ConfirmType.UNKNOWN) {
+            return false;
+        }
+        TransferRepository shard = shards[creditLeg.shard()];
+        try {
+            if (decision == ConfirmType.COMMITED) {
+                AccountTransaction transaction = shard.getTransactions().get(creditLeg.operationId());
+                if (transaction == null) {
+                    throw new OperationNotExist(String.format("Transaction {%s} is not exists in transaction table",
+                            creditLeg.operationId()), 103);
+                }
+                shard.commitTransaction(transaction);
+            } else {
+                shard.rollbackTransaction(creditLeg.operationId());
+            }
+        } catch (OperationNotExist e) {
+            if (e.getId() != (decision == ConfirmType.COMMITED ? 104 : 105)) {
+                log.error("Credit transaction {} of transfer {} is not completed as {}, it will be retried: {}",
+                        creditLeg.operationId(), key, decision, e.getMessage());
+                return false;
+            }
+            //транзакция зачисления уже завершена параллельным запросом
+        } catch (AccountNotExist e) {
+            //счет получателя закрыт откатом загрузки параллельно с переводом: зачисление откатано шардом, повтор не поможет
+            log.error("Credit transaction {} of transfer {} is rejected, the amount stays on transit account of shard {}: {}",
+                    creditLeg.operationId(), key, creditLeg.shard(), e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Credit transaction {} of transfer {} is not completed as {}, it will be retried: {}",
+                    creditLeg.operationId(), key, decision, e.getMessage());
+            return false;
+        }
+        return creditLegs.remove(key, creditLeg);
+    }
+
+    /**
+     * Метод откатывает перевод по истечении срока подтверждения
+     *
+     * @param key ключ транзакции списания
+     * @return false - если перевод уже завершен
+     */
+    private boolean rollbackExpired(long key) {
+        TransferRepository shard = shardOfKey(key);
+        AccountTransaction transaction = shard == null ? null : shard.getTransaction(key);
+        if (transaction == null || transaction.getCommitCode() != ConfirmType.UNKNOWN) {
+            return false;
+        }
+        try {
+            rollbackTransaction(transaction.getOperationId());
+            return true;
+        } catch (OperationNotExist e) {
+            //перевод завершен параллельным запросом после проверки
+            return false;
+        }
+    }
+
+    /**
+     * @return шард, выдавший ключ транзакции, null - если ключ выдан не шардом этого хранилища
+     */
+    private TransferRepository shardOfKey(long key) {
+        int shard = key < 0L ? -1 : SnowflakeOperationIdGenerator.nodeOf(key) - firstNode;
+        return shard >= 0 && shard < shards.length ? shards[shard] : null;
+    }
+
+    /**
+     * Метод раскладывает пакет счетов по шардам-владельцам и передает каждую часть ее шарду
+     *
+     * @param opened отметки по счетам пакета, заполняемые шардами (см. {@link Storagable#openAccounts}), может быть null
+     * @return сумма результатов шардов
+     */
+    private int forEachShard(String[] accounts, long[] amounts, boolean[] opened, AccountBatch action) {
+        int[] counts = new int[shards.length];
+        int[] owners = new int[accounts.length];
+        for (int i = 0; i < accounts.length; i++) {
+            owners[i] = ring.shardOf(accounts[i]);
+            counts[owners[i]]++;
+        }
+
+        int total = 0;
+        for (int shard = 0; shard < shards.length; shard++) {
+            if (counts[shard] == 0) {
+                continue;
+            }
+            String[] shardAccounts = new String[counts[shard]];
+            long[] shardAmounts = new long[counts[shard]];
+            boolean[] shardOpened = opened == null ? null : new boolean[counts[shard]];
+            int position = 0;
+            for (int i = 0; i < accounts.length; i++) {
+                if (owners[i] == shard) {
+                    shardAccounts[position] = accounts[i];
+                    shardAmounts[position++] = amounts[i];
+                }
+            }
+            try {
+                total += action.apply(shards[shard], shardAccounts, shardAmounts, shardOpened);
+            } finally {
+                //отметки переносятся и при ошибке шарда: вызывающая сторона откатывает открытые счета
+                if (opened != null) {
+                    position = 0;
+                    for (int i = 0; i < accounts.length; i++) {
+                        if (owners[i] == shard) {
+                            opened[i] = shardOpened[position++];
+                        }
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    private static boolean isCreditLeg(AccountTransaction transaction) {
+        return TRANSIT_ACCOUNT.equals(transaction.getCardFromNumber());
+    }
+
+    private static TransferInfo leg(TransferInfo transferInfo, String cardFrom, String cardTo, Integer commission) {
+        TransferInfo leg = new TransferInfo();
+        leg.setCardFromNumber(cardFrom);
+        leg.setCardFromValidTill(transferInfo.getCardFromValidTill());
+        leg.setCardFromCVV(transferInfo.getCardFromCVV());
+        leg.setCardToNumber(cardTo);
+        leg.setAmount(transferInfo.getAmount());
+        leg.setTransactionRegistrationTime(transferInfo.getTransactionRegistrationTime());
+        leg.setCommissionAmount(commission);
+        return leg;
+    }
+
+    @FunctionalInterface
+    private interface AccountBatch {
+        int apply(TransferRepository shard, String[] accounts, long[] amounts, boolean[] opened);
+    }
+
+    /**
+     * Транзакция зачисления межшардового перевода
+     */
+    private record CreditLeg(int shard, String operationId) {
+    }
+
+    /**
+     * Остатки карт, читаемые с шарда-владельца карты. Перебор строит снимок остатков всех шардов
+     */
+    private class AccountRestView extends AbstractMap<String, Integer> {
+        @Override
+        public Integer get(Object key) {
+            if (!(key instanceof String account) || TRANSIT_ACCOUNT.equals(account)) {
+                return null;
+            }
+            if (COMMISSION_ACCOUNT.equals(account)) {
+                long total = 0L;
+                for (TransferRepository shard : shards) {
+                    total += shard.getAccountRest().get(COMMISSION_ACCOUNT);
+                }
+                return Math.toIntExact(total);
+            }
+            return shards[ring.shardOf(account)].getAccountRest().get(account);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<String, Integer>> entrySet() {
+            Map<String, Integer> snapshot = new HashMap<>();
+            for (int i = 0; i < shards.length; i++) {
+                for (Entry<String, Integer> entry : shards[i].getAccountRest().entrySet()) {
+                    if (ring.shardOf(entry.getKey()) == i && !TRANSIT_ACCOUNT.equals(entry.getKey())) {
+                        snapshot.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            snapshot.put(COMMISSION_ACCOUNT, get(COMMISSION_ACCOUNT));
+            return snapshot.entrySet();
+        }
+    }
+
+    /**
+     * Транзакции шардов без транзакций зачисления: транзакция читается с шарда, выдавшего ее ключ.
+     * Перебор строит снимок таблиц всех шардов
+     */
+    private class TransactionView extends AbstractMap<String, AccountTransaction> {
+        @Override
+        public AccountTransaction get(Object key) {
+            if (!(key instanceof String operationId)) {
+                return null;
+            }
+            TransferRepository shard = shardOfKey(OperationIdGenerator.parse(operationId));
+            AccountTransaction transaction = shard == null ? null : shard.getTransactions().get(operationId);
+            return transaction != null && !isCreditLeg(transaction) ? transaction : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<String, AccountTransaction>> entrySet() {
+            Map<String, AccountTransaction> snapshot = new HashMap<>();
+            for (TransferRepository shard : shards) {
+                shard.getTransactions().forEach((operationId, transaction) -> {
+                    if (!isCreditLeg(transaction)) {
+                        snapshot.put(operationId, transaction);
+                    }
+                });
+            }
+            return snapshot.entrySet();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package ru.netology.cardtocardservice.repository.shard;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Фоновое обслуживание хранилища SHARDED по расписанию Spring:
+ * повтор завершения транзакций зачисления межшардовых переводов с периодом transfer.storage.credit-leg-retry-interval,
+ * расчет нетто-позиций транзитных счетов с периодом transfer.storage.transit-settlement-interval
+ * и перенос завершенных транзакций шардов в архив с периодом transfer.history.archive-interval
+ */
+@Component
+@ConditionalOnProperty(name = "transfer.storage.engine", havingValue = "SHARDED")
+public class ShardedLedgerMaintenance {
+    private final ShardedLedger ledger;
+
+    public ShardedLedgerMaintenance(ShardedLedger ledger) {
+        this.ledger = ledger;
+    }
+
+    @Scheduled(initialDelayString = "${transfer.storage.credit-leg-retry-interval:PT1S}",
+            fixedDelayString = "${transfer.storage.credit-leg-retry-interval:PT1S}")
+    public void completeCreditLegs() {
+        ledger.completeCreditLegs();
+    }
+
+    @Scheduled(initialDelayString = "${transfer.storage.transit-settlement-interval:PT1S}",
+            fixedDelayString = "${transfer.storage.transit-settlement-interval:PT1S}")
+    public void settleTransit() {
+        ledger.settleTransit();
+    }
+
+    @Scheduled(initialDelayString = "${transfer.history.archive-interval:PT10S}",
+            fixedDelayString = "${transfer.history.archive-interval:PT10S}")
+    public void archiveFinalized() {
+        ledger.archiveFinalized();
+    }
+}
@@ -0,0 +1,440 @@
+package ru.netology.cardtocardservice.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Service;
+import ru.netology.cardtocardservice.domain.ImportReport;
+import ru.netology.cardtocardservice.exception.AccountImportFailed;
+import ru.netology.cardtocardservice.repository.Storagable;
+import ru.netology.cardtocardservice.repository.balance.LongBalanceStore;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Загрузка счетов и начальных остатков из NDJSON: одна строка - один счет
+ * {"account":"4111111111111111","balance":10000}, balance не обязателен (0)
+ * <p>
+ * Загрузка выполняется в две фазы, поэтому ошибка не оставляет хранилище загруженным наполовину:
+ * <ol>
+ * <li>проверка: строки читаются потоком и пакетами по transfer.import.batch-size разбираются и проверяются
+ * в transfer.import.threads потоках (16 цифр и контрольная сумма Луна номера, остаток 0..Integer.MAX_VALUE,
+ * счета нет в хранилище и он не повторяется в файле). Проверенные счета копятся в компактной таблице
+ * {@link LongBalanceStore} вне хранилища; при первой ошибке чтение останавливается, таблица отбрасывается</li>
+ * <li>открытие: счета из таблицы пакетами открываются в хранилище через {@link Storagable#openAccounts(String[], long[], boolean[])}.
+ * Если открытие пакета не удалось (например, ошибка журнала), счета, открытые этой загрузкой, закрываются
+ * через {@link Storagable#closeAccounts(String[], long[])} с записью закрытия в журнал</li>
+ * </ol>
+ * В обработке одновременно не больше двух пакетов на поток, поэтому память под строки не зависит от размера файла.
+ * Загрузки выполняются по одной в общем пуле из transfer.import.threads потоков;
+ * ход загрузки и скорость пишутся в лог не чаще раза в секунду
+ */
+@Slf4j
+@Service
+public class AccountImportService implements ApplicationRunner {
+    private static final int ERROR_ID = 109;
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Storagable transferRepository;
+    private final int batchSize;
+    private final int threads;
+    private final boolean luhnCheck;
+    private final String startupFile;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final ReentrantLock importLock = new ReentrantLock();
+    private final ExecutorService executor;
+
+    public AccountImportService(Storagable transferRepository) {
+        this(transferRepository, 500, 0, true, "");
+    }
+
+    @Autowired
+    public AccountImportService(Storagable transferRepository,
+                                @Value("${transfer.import.batch-size:500}") int batchSize,
+                                @Value("${transfer.import.threads:0}") int threads,
+                                @Value("${transfer.import.luhn-check:true}") boolean luhnCheck,
+                                @Value("${transfer.import.file:}") String startupFile) {
+        this.transferRepository = transferRepository;
+        this.batchSize = Math.max(1, batchSize);
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.luhnCheck = luhnCheck;
+        this.startupFile = startupFile;
+        this.executor = Executors.newFixedThreadPool(this.threads, new ImportThreadFactory());
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Загрузка файла transfer.import.file при старте сервиса. Ошибка загрузки останавливает запуск
+     */
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (startupFile == null || startupFile.isBlank()) {
+            return;
+        }
+        try (InputStream input = Files.newInputStream(Path.of(startupFile))) {
+            ImportReport report = importAccounts(input);
+            log.info("Accounts from {} are imported: {}", startupFile, report);
+        }
+    }
+
+    /**
+     * @param input NDJSON со счетами, поток не закрывается
+     * @return итог загрузки
+     * @throws AccountImportFailed ошибка в строке файла или уже идет другая загрузка; счета не открываются
+     */
+    public ImportReport importAccounts(InputStream input) {
+        if (!importLock.tryLock()) {
+            throw new AccountImportFailed("Another account import is running", ERROR_ID);
+        }
+        try {
+            long started = System.nanoTime();
+            LongBalanceStore staged = new LongBalanceStore();
+            long lines = validate(input, staged);
+            long validated = System.nanoTime();
+            long accounts = publish(staged);
+            long published = System.nanoTime();
+
+            return new ImportReport(lines, accounts,
+                    TimeUnit.NANOSECONDS.toMillis(validated - started),
+                    TimeUnit.NANOSECONDS.toMillis(published - validated));
+        } finally {
+            importLock.unlock();
+        }
+    }
+
+    /**
+     * Фаза проверки: строки читаются потоком, пакеты разбираются параллельно и складываются в staged
+     *
+     * @return количество прочитанных строк
+     */
+    private long validate(InputStream input, LongBalanceStore staged) {
+        Semaphore inFlight = new Semaphore(threads * 2);
+        AtomicReference<LineError> failure = new AtomicReference<>();
+
+        long lineNumber = 0;
+        Progress progress = new Progress("validated", "lines");
+        //поток закрывает вызывающая сторона
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        try {
+            String[] batch = new String[batchSize];
+            int size = 0;
+            String line;
+            while (failure.get() == null && (line = reader.readLine()) != null) {
+                batch[size++] = line;
+                lineNumber++;
+                if (size == batchSize) {
+                    submit(inFlight, batch, size, lineNumber - size + 1, staged, failure);
+                    batch = new String[batchSize];
+                    size = 0;
+                    progress.report(lineNumber);
+                }
+            }
+            if (size > 0 && failure.get() == null) {
+                submit(inFlight, batch, size, lineNumber - size + 1, staged, failure);
+            }
+            inFlight.acquire(threads * 2);
+        } catch (IOException e) {
+            throw new AccountImportFailed(String.format("Account import failed at line %d: %s. No accounts were opened",
+                    lineNumber, e.getMessage()), ERROR_ID);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AccountImportFailed("Account import is interrupted. No accounts were opened", ERROR_ID);
+        }
+
+        LineError error = failure.get();
+        if (error != null) {
+            String msg = String.format("Account import failed at line %d: %s. No accounts were opened", error.line(), error.message());
+            log.error(msg);
+            throw new AccountImportFailed(msg, ERROR_ID);
+        }
+        log.info("Account import: {} lines validated, {} accounts staged in {} ms", lineNumber, staged.size(), progress.elapsedMillis());
+        return lineNumber;
+    }
+
+    private void submit(Semaphore inFlight, String[] batch, int size, long firstLine,
+                        LongBalanceStore staged, AtomicReference<LineError> failure) throws InterruptedException {
+        inFlight.acquire();
+        executor.execute(() -> {
+            try {
+                for (int i = 0; i < size && failure.get() == null; i++) {
+                    String error = stage(batch[i], staged);
+                    if (error != null) {
+                        //в ответе - ошибка с наименьшим номером строки среди найденных
+                        LineError lineError = new LineError(firstLine + i, error);
+                        failure.accumulateAndGet(lineError, (current, found) -> current == null || found.line() < current.line() ? found : current);
+                        return;
+                    }
+                }
+            } catch (RuntimeException e) {
+                //ошибка хранилища при проверке не должна теряться в потоке пула
+                log.error("Account import batch from line {} failed", firstLine, e);
+                failure.compareAndSet(null, new LineError(firstLine, e.toString()));
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Метод разбирает и проверяет строку и добавляет счет в staged
+     *
+     * @return описание ошибки, null - строка принята
+     */
+    private String stage(String line, LongBalanceStore staged) {
+        if (line.isBlank()) {
+            return null;
+        }
+        String account = null;
+        long balance = 0;
+        try (JsonParser parser = jsonFactory.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return "JSON object expected";
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "account" -> account = token.isScalarValue() && token != JsonToken.VALUE_NULL ? parser.getText() : null;
+                    case "balance" -> {
+                        if (token != JsonToken.VALUE_NUMBER_INT) {
+                            return "balance must be an integer";
+                        }
+                        balance = parser.getLongValue();
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            return "invalid JSON: " + (e instanceof JsonProcessingException jsonError ? jsonError.getOriginalMessage() : e.getMessage());
+        }
+
+        if (!isValidPan(account)) {
+            return String.format("account {%s} is not a valid 16-digit card number", account);
+        }
+        if (balance < 0 || balance > Integer.MAX_VALUE) {
+            return String.format("balance %d of account {%s} is out of range 0..%d", balance, account, Integer.MAX_VALUE);
+        }
+        if (transferRepository.hasAccount(account)) {
+            return String.format("account {%s} already exists", account);
+        }
+        if (!staged.putIfAbsent(account, balance)) {
+            return String.format("account {%s} is repeated", account);
+        }
+        return null;
+    }
+
+    /**
+     * Фаза открытия счетов: проверенные счета открываются в хранилище параллельными пакетами
+     * При ошибке закрываются счета, открытые этой загрузкой: счета, открытые параллельно другим запросом, остаются
+     *
+     * @return количество открытых счетов
+     */
+    private long publish(LongBalanceStore staged) {
+        Set<String> notOpened = ConcurrentHashMap.newKeySet();
+        BatchPublisher publisher = new BatchPublisher(Storagable::openAccounts, Set.of(), notOpened);
+        staged.forEach(publisher::add);
+        RuntimeException failure = publisher.finish();
+        if (failure == null) {
+            if (!notOpened.isEmpty()) {
+                log.warn("{} imported accounts were opened concurrently by another request and kept their balance", notOpened.size());
+            }
+            log.info("Account import: {} accounts opened in {} ms", publisher.done(), publisher.elapsedMillis());
+            return publisher.done();
+        }
+
+        log.error("Account import failed while opening accounts, {} opened accounts are closed", publisher.done(), failure);
+        BatchPublisher rollback = new BatchPublisher(
+                (storage, accounts, amounts, opened) -> storage.closeAccounts(accounts, amounts), notOpened, null);
+        staged.forEach(rollback::add);
+        RuntimeException rollbackFailure = rollback.finish();
+        if (rollbackFailure != null) {
+            log.error("Account import rollback failed: {} accounts are closed, the rest stay open until restart",
+                    rollback.done(), rollbackFailure);
+        }
+        String msg = String.format("Account import failed while opening accounts: %s. No accounts were opened", failure.getMessage());
+        throw new AccountImportFailed(msg, ERROR_ID);
+    }
+
+    /**
+     * Проверка номера карты: 16 цифр и, если включено, контрольная сумма по алгоритму Луна
+     */
+    private boolean isValidPan(String account) {
+        if (account == null || account.length() != 16) {
+            return false;
+        }
+        int sum = 0;
+        for (int i = 0; i < 16; i++) {
+            int digit = account.charAt(15 - i) - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            if (i % 2 == 1) {
+                digit = digit * 2 > 9 ? digit * 2 - 9 : digit * 2;
+            }
+            sum += digit;
+        }
+        return !luhnCheck || sum % 10 == 0;
+    }
+
+    private record LineError(long line, String message) {
+    }
+
+    /**
+     * Открытие (закрытие при откате) счетов пакетами в пуле потоков загрузки, в обработке не больше двух пакетов на поток
+     * Пакеты выполняются и после ошибки одного из них, поэтому каждый счет таблицы либо открыт загрузкой, либо попал в notOpened
+     */
+    private class BatchPublisher {
+        private final AccountBatch action;
+        private final Set<String> excluded;
+        private final Set<String> notOpened;
+        private final Semaphore inFlight = new Semaphore(threads * 2);
+        private final AtomicLong done = new AtomicLong();
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        private final Progress progress;
+        private String[] accounts = new String[batchSize];
+        private long[] amounts = new long[batchSize];
+        private int size;
+
+        /**
+         * @param excluded  счета, которые пропускаются
+         * @param notOpened сюда добавляются счета пакетов, не открытые действием; null - отметки не собираются
+         */
+        BatchPublisher(AccountBatch action, Set<String> excluded, Set<String> notOpened) {
+            this.action = action;
+            this.excluded = excluded;
+            this.notOpened = notOpened;
+            this.progress = new Progress("processed", "accounts");
+        }
+
+        void add(String account, long amount) {
+            if (excluded.contains(account)) {
+                return;
+            }
+            accounts[size] = account;
+            amounts[size++] = amount;
+            if (size == batchSize) {
+                flush();
+            }
+        }
+
+        /**
+         * @return первая ошибка пакета, null - все пакеты обработаны
+         */
+        RuntimeException finish() {
+            if (size > 0) {
+                flush();
+            }
+            inFlight.acquireUninterruptibly(threads * 2);
+            return failure.get();
+        }
+
+        long done() {
+            return done.get();
+        }
+
+        long elapsedMillis() {
+            return progress.elapsedMillis();
+        }
+
+        private void flush() {
+            String[] batchAccounts = size == batchSize ? accounts : Arrays.copyOf(accounts, size);
+            long[] batchAmounts = size == batchSize ? amounts : Arrays.copyOf(amounts, size);
+            boolean[] batchOpened = notOpened == null ? null : new boolean[size];
+            accounts = new String[batchSize];
+            amounts = new long[batchSize];
+            size = 0;
+
+            inFlight.acquireUninterruptibly();
+            executor.execute(() -> {
+                try {
+                    done.addAndGet(action.apply(transferRepository, batchAccounts, batchAmounts, batchOpened));
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    if (notOpened != null) {
+                        for (int i = 0; i < batchOpened.length; i++) {
+                            if (!batchOpened[i]) {
+                                notOpened.add(batchAccounts[i]);
+                            }
+                        }
+                    }
+                    inFlight.release();
+                }
+            });
+            progress.report(done.get());
+        }
+    }
+
+    @FunctionalInterface
+    private interface AccountBatch {
+        int apply(Storagable storage, String[] accounts, long[] amounts, boolean[] opened);
+    }
+
+    /**
+     * Запись хода фазы загрузки в лог не чаще раза в секунду
+     */
+    private static class Progress {
+        private final String action;
+        private final String unit;
+        private final long started = System.nanoTime();
+        private long lastReport = started;
+
+        Progress(String action, String unit) {
+            this.action = action;
+            this.unit = unit;
+        }
+
+        void report(long done) {
+            long now = System.nanoTime();
+            if (now - lastReport >= PROGRESS_INTERVAL_NANOS) {
+                lastReport = now;
+                log.info("Account import: {} {} {}, {} {}/s", done, unit, action,
+                        done * TimeUnit.SECONDS.toNanos(1) / (now - started), unit);
+            }
+        }
+
+        long elapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        }
+    }
+
+    private static class ImportThreadFactory implements ThreadFactory {
+        private final AtomicInteger number = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "account-import-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
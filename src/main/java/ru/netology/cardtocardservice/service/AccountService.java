@@ -0,0 +1,81 @@
+package ru.netology.cardtocardservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.netology.cardtocardservice.domain.AccountBalance;
+import ru.netology.cardtocardservice.domain.ConfirmType;
+import ru.netology.cardtocardservice.domain.StatementItem;
+import ru.netology.cardtocardservice.exception.AccountNotExist;
+import ru.netology.cardtocardservice.exception.RequestFieldInvalid;
+import ru.netology.cardtocardservice.repository.Storagable;
+
+import java.util.stream.Stream;
+
+/**
+ * Запросы остатка и выписки по карте для службы поддержки
+ * Выписка содержит транзакции из таблицы транзакций (окно transfer.history.hot-window),
+ * от архивных транзакций хранится только итоговое состояние
+ */
+@Slf4j
+@Service
+public class AccountService {
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 10000;
+
+    private final Storagable transferRepository;
+
+    public AccountService(Storagable transferRepository) {
+        this.transferRepository = transferRepository;
+    }
+
+    public AccountBalance getBalance(String account) {
+        long balance = transferRepository.getBalance(checkAccount(account));
+        return new AccountBalance(account, balance, transferRepository.getHoldAmount(account));
+    }
+
+    /**
+     * Метод возвращает страницу выписки по карте от новых транзакций к старым
+     * Строки читаются по мере потребления потока, поток нужно закрыть после чтения
+     *
+     * @param account PAN - номер карты
+     * @param status  состояние транзакций (COMMITED, ROLLBACK, UNKNOWN), null - все транзакции
+     * @param after   operationId последней строки предыдущей страницы, null - первая страница
+     * @param limit   размер страницы, не больше {@link #MAX_LIMIT}
+     */
+    public Stream<StatementItem> getStatement(String account, String status, String after, int limit) {
+        checkAccount(account);
+        ConfirmType confirmType = parseStatus(status);
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new RequestFieldInvalid(String.format("Размер страницы выписки должен быть от 1 до %d", MAX_LIMIT), 107);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Statement of account {{}} is requested: status = {{}}, after = {{}}, limit = {{}}", account, status, after, limit);
+        }
+
+        return transferRepository.findAccountTransactions(account, after == null || after.isBlank() ? null : after)
+                .filter(transaction -> confirmType == null || transaction.getCommitCode() == confirmType)
+                .limit(limit)
+                .map(transaction -> StatementItem.of(account, transaction));
+    }
+
+    private String checkAccount(String account) {
+        if (account == null || !account.matches("[0-9]{16}")) {
+            throw new RequestFieldInvalid("Номер карты клиента может быть только числовым и должен состоять из 16 символов", 107);
+        }
+        if (!transferRepository.hasAccount(account)) {
+            throw new AccountNotExist(String.format("Account {%s} not exists in rest table", account), 99);
+        }
+        return account;
+    }
+
+    private static ConfirmType parseStatus(String status) {
+        if (status == null || status.isBlank()) {
+            return null;
+        }
+        try {
+            return ConfirmType.valueOf(status.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new RequestFieldInvalid(String.format("Неизвестное состояние транзакции {%s}, допустимо COMMITED, ROLLBACK, UNKNOWN", status), 107);
+        }
+    }
+}
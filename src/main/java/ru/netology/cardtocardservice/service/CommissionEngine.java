@@ -0,0 +1,114 @@
+package ru.netology.cardtocardservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.netology.cardtocardservice.dictionary.TariffDefinition;
+import ru.netology.cardtocardservice.dictionary.TariffTable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Расчет комиссии за перевод по таблице тарифов
+ * <p>
+ * Тарифы читаются из файла transfer.tariff.file, без файла действует тариф C2C по умолчанию.
+ * Фоновый поток проверяет дату изменения файла с периодом transfer.tariff.reload-interval и подменяет
+ * скомпилированную таблицу атомарно: переводы в обработке дорассчитываются по старой таблице,
+ * некорректный файл не применяется
+ */
+@Slf4j
+@Component
+public class CommissionEngine {
+    private final AtomicReference<TariffTable> table;
+    private final Path file;
+    private final Duration reloadInterval;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ScheduledExecutorService executor;
+    private volatile long lastModified;
+
+    public CommissionEngine() {
+        this(TariffTable.DEFAULT);
+    }
+
+    public CommissionEngine(TariffTable table) {
+        this.table = new AtomicReference<>(table);
+        this.file = null;
+        this.reloadInterval = Duration.ZERO;
+    }
+
+    @Autowired
+    public CommissionEngine(@Value("${transfer.tariff.file:}") String file,
+                            @Value("${transfer.tariff.reload-interval:PT30S}") Duration reloadInterval) {
+        this.file = file.isBlank() ? null : Path.of(file);
+        this.reloadInterval = reloadInterval;
+        this.table = new AtomicReference<>(TariffTable.DEFAULT);
+        if (this.file != null && !reload()) {
+            throw new IllegalStateException(String.format("Tariffs can not be loaded from {%s}", file));
+        }
+    }
+
+    /**
+     * @param cardFromNumber номер карты отправителя
+     * @param amount         сумма перевода
+     * @return комиссия за перевод
+     */
+    public int calculate(String cardFromNumber, int amount) {
+        return table.get().commission(cardFromNumber, amount);
+    }
+
+    /**
+     * Метод перечитывает файл тарифов, если он изменился с последней загрузки
+     *
+     * @return false - если файл не удалось прочитать или тарифы в нем некорректны
+     */
+    public boolean reload() {
+        if (file == null) {
+            return true;
+        }
+        try {
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            if (modified == lastModified) {
+                return true;
+            }
+            TariffTable compiled = TariffTable.compile(objectMapper.readValue(file.toFile(), TariffDefinition.class));
+            table.set(compiled);
+            lastModified = modified;
+            log.info("Tariffs are loaded from {}", file);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Tariffs are not loaded from {}: {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (file == null || reloadInterval.isZero() || reloadInterval.isNegative()) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tariff-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::reload, reloadInterval.toMillis(), reloadInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
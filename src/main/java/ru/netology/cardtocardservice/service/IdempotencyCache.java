@@ -0,0 +1,161 @@
+package ru.netology.cardtocardservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.netology.cardtocardservice.exception.IdempotencyKeyConflict;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Кэш результатов по ключу идемпотентности (заголовок Idempotency-Key)
+ * <p>
+ * Повтор запроса с тем же ключом получает результат первого запроса, а не создает новую транзакцию.
+ * Для ключа хранится future результата, поэтому одновременные повторы ждут единственное выполнение.
+ * Неуспешное выполнение из кэша удаляется: повтор после ошибки выполняется заново
+ * <p>
+ * Ключи вытесняются в порядке добавления по истечении transfer.idempotency.ttl, а при превышении
+ * transfer.idempotency.max-keys - самые старые раньше срока. Ключи неуспешных выполнений в ограничении не учитываются
+ * и не вытесняют действующие ключи: из очереди они удаляются, дойдя до ее начала, а после max-keys ошибок
+ * очередь очищается от них целиком. Длина ключа ограничена {@link #MAX_KEY_LENGTH}, поэтому объем кэша ограничен сверху
+ */
+@Slf4j
+@Component
+public class IdempotencyCache {
+    public static final int MAX_KEY_LENGTH = 64;
+
+    private final long ttlNanos;
+    private final int maxKeys;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Key> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger failedKeys = new AtomicInteger();
+    private final ReentrantLock purgeLock = new ReentrantLock();
+
+    public IdempotencyCache() {
+        this(Duration.ofHours(24), 100000);
+    }
+
+    @Autowired
+    public IdempotencyCache(@Value("${transfer.idempotency.ttl:PT24H}") Duration ttl,
+                            @Value("${transfer.idempotency.max-keys:100000}") int maxKeys) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Метод выполняет действие один раз для ключа
+     *
+     * @param key         ключ идемпотентности
+     * @param request     неизменяемая копия запроса, сравнивается через equals: повтор ключа с другим запросом
+     *                    отклоняется с ошибкой 108
+     * @param action      действие, выполняется в потоке вызова, если ключа нет в кэше
+     * @return результат первого выполнения действия для ключа
+     */
+    public <T> CompletableFuture<T> execute(String key, Object request, Supplier<T> action) {
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            return CompletableFuture.failedFuture(idempotencyKeyConflict(
+                    String.format("Idempotency-Key length must be from 1 to %d characters", MAX_KEY_LENGTH)));
+        }
+
+        long now = System.nanoTime();
+        evict(now);
+
+        Entry entry = new Entry(request, now + ttlNanos, new CompletableFuture<>());
+        while (true) {
+            Entry existing = entries.putIfAbsent(key, entry);
+            if (existing == null) {
+                break;
+            }
+            if (existing.expiresAt() - now > 0) {
+                if (!existing.request().equals(request)) {
+                    return CompletableFuture.failedFuture(idempotencyKeyConflict(
+                            String.format("Idempotency-Key {%s} is already used for another request", key)));
+                }
+                log.debug("Idempotency-Key {{}} is repeated", key);
+                return cast(existing.result());
+            }
+            //срок ключа истек, но он еще не вытеснен
+            if (entries.replace(key, existing, entry)) {
+                break;
+            }
+        }
+        Key queuedKey = new Key(key, entry, new AtomicBoolean());
+        insertionOrder.add(queuedKey);
+        queued.incrementAndGet();
+
+        try {
+            entry.result().complete(action.get());
+        } catch (RuntimeException e) {
+            entries.remove(key, entry);
+            entry.result().completeExceptionally(e);
+            retire(queuedKey);
+        }
+        return cast(entry.result());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Метод вытесняет ключи с истекшим сроком и самые старые ключи сверх ограничения
+     * Очередь содержит все ключи кэша, поэтому ограничение числа действующих ключей в ней ограничивает и кэш
+     */
+    private void evict(long now) {
+        Key head;
+        while ((head = insertionOrder.peek()) != null
+                && (head.retired().get() || queued.get() >= maxKeys || now - head.entry().expiresAt() >= 0)) {
+            if (insertionOrder.remove(head)) {
+                retire(head);
+                entries.remove(head.key(), head.entry());
+            }
+        }
+    }
+
+    /**
+     * Метод исключает ключ из числа действующих. Ключ неуспешного выполнения остается в очереди до ее начала
+     * или до очистки очереди, которая выполняется один раз на maxKeys таких ключей
+     */
+    private void retire(Key key) {
+        if (!key.retired().compareAndSet(false, true)) {
+            return;
+        }
+        queued.decrementAndGet();
+        if (key.entry().result().isCompletedExceptionally() && failedKeys.incrementAndGet() >= maxKeys
+                && purgeLock.tryLock()) {
+            try {
+                failedKeys.set(0);
+                insertionOrder.removeIf(queuedKey -> queuedKey.retired().get());
+            } finally {
+                purgeLock.unlock();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> CompletableFuture<T> cast(CompletableFuture<Object> future) {
+        return (CompletableFuture<T>) (CompletableFuture<?>) future;
+    }
+
+    private IdempotencyKeyConflict idempotencyKeyConflict(String msg) {
+        log.error(msg);
+        return new IdempotencyKeyConflict(msg, 108);
+    }
+
+    private record Entry(Object request, long expiresAt, CompletableFuture<Object> result) {
+    }
+
+    private record Key(String key, Entry entry, AtomicBoolean retired) {
+    }
+}
@@ -0,0 +1,37 @@
+package ru.netology.cardtocardservice.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import ru.netology.cardtocardservice.domain.OperationInfo;
+import ru.netology.cardtocardservice.domain.TransferInfo;
+
+/**
+ * Неблокирующий фасад {@link TransferService} для реактивного контроллера
+ * <p>
+ * Операции хранилища блокирующие при любом журнале: ожидание блокировок счетов, ответа потока-писателя
+ * SINGLE_WRITER, первого запроса с тем же ключом идемпотентности и fsync долговечного журнала.
+ * Поэтому каждая операция переносится на ограниченный пул {@link Schedulers#boundedElastic()}
+ * и никогда не выполняется в потоке event loop
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveTransferService {
+    private final TransferService transferService;
+    private final Scheduler scheduler = Schedulers.boundedElastic();
+
+    public ReactiveTransferService(TransferService transferService) {
+        this.transferService = transferService;
+    }
+
+    public Mono<String> doTransaction(TransferInfo transferInfo, String idempotencyKey) {
+        return Mono.defer(() -> Mono.fromFuture(transferService.doTransactionAsync(transferInfo, idempotencyKey)))
+                .subscribeOn(scheduler);
+    }
+
+    public Mono<String> doConfirm(OperationInfo operationInfo) {
+        return Mono.fromCallable(() -> transferService.doConfirm(operationInfo)).subscribeOn(scheduler);
+    }
+}
@@ -1,29 +1,87 @@
 package ru.netology.cardtocardservice.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import ru.netology.cardtocardservice.dictionary.ComissionTransferDictionary;
 import ru.netology.cardtocardservice.domain.AccountTransaction;
+import ru.netology.cardtocardservice.domain.BatchItemResult;
 import ru.netology.cardtocardservice.domain.ConfirmType;
 import ru.netology.cardtocardservice.domain.OperationInfo;
+import ru.netology.cardtocardservice.domain.TransferAmount;
 import ru.netology.cardtocardservice.domain.TransferInfo;
 import ru.netology.cardtocardservice.exception.AccountNotExist;
 import ru.netology.cardtocardservice.exception.NegativeAccountState;
 import ru.netology.cardtocardservice.exception.OperationNotExist;
+import ru.netology.cardtocardservice.exception.TransferException;
 import ru.netology.cardtocardservice.exception.UnknownAccountAction;
+import ru.netology.cardtocardservice.metrics.TransferMetrics;
+import ru.netology.cardtocardservice.metrics.TransferMetrics.Stage;
 import ru.netology.cardtocardservice.repository.Storagable;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @Service
 public class TransferService {
     private final Storagable transferRepository;
+    private final CommissionEngine commissionEngine;
+    private final IdempotencyCache idempotencyCache;
+    private final TransferMetrics metrics;
 
     public TransferService(Storagable transferRepository) {
+        this(transferRepository, new CommissionEngine(), new IdempotencyCache(), TransferMetrics.DISABLED);
+    }
+
+    @Autowired
+    public TransferService(Storagable transferRepository, CommissionEngine commissionEngine,
+                           IdempotencyCache idempotencyCache, TransferMetrics metrics) {
         this.transferRepository = transferRepository;
+        this.commissionEngine = commissionEngine;
+        this.idempotencyCache = idempotencyCache;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Метод регистрации транзакции с ключом идемпотентности
+     *
+     * @param transferData   объект перевода
+     * @param idempotencyKey ключ из заголовка Idempotency-Key, null - без защиты от повторов
+     * @return возвращает operationId транзакции, зарегистрированной первым запросом с этим ключом
+     */
+    public String doTransaction(TransferInfo transferData, String idempotencyKey) {
+        try {
+            return doTransactionAsync(transferData, idempotencyKey).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Метод регистрации транзакции с ключом идемпотентности для неблокирующего вызова:
+     * одновременный повтор ключа не ждет первый запрос в потоке вызова, а получает его future
+     */
+    public CompletableFuture<String> doTransactionAsync(TransferInfo transferData, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            try {
+                return CompletableFuture.completedFuture(doTransaction(transferData));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        //копия снимается до расчета комиссии и времени регистрации, которые меняют объект перевода
+        return idempotencyCache.execute(idempotencyKey, TransferRequest.of(transferData), () -> doTransaction(transferData));
     }
 
     /**
@@ -33,62 +91,109 @@ public class TransferService {
      * @return возвращает operationId - идентификатор зарегистрированной транзакции
      */
     public String doTransaction(TransferInfo transferData) {
-        Map<String, AccountTransaction> transactions = transferRepository.getTransactions();
-        Map<String, Integer> accountRest = transferRepository.getAccountRest();
-
         //Проверим существование счетов в плане счетов, перед созданием транзакции
-        checkTransferAccounts(transferData, accountRest);
+        long start = metrics.start();
+        checkTransferAccounts(transferData);
+        metrics.record(Stage.CHECK_ACCOUNTS, start);
 
         //Рассчитаем комиссию за перевод. Добавим значение в объект перевода
-        transferData.setCommissionAmount(transferData.getAmount().getValue() * ComissionTransferDictionary.getCommisionList().get("C2C") / 100);
+        start = metrics.start();
+        calculateCommission(transferData);
+        boolean positiveBalance = isPositiveBalance(getAmount(transferData.getCardFromNumber()), getTotalTransactionSum(transferData));
+        metrics.record(Stage.HOLD, start);
 
-        if (isPositiveBalance(getAmount(transferData.getCardFromNumber(), accountRest), getTotalTransactionSum(transferData, transactions))) {
+        if (positiveBalance) {
             transferData.setTransactionRegistrationTime(new SimpleDateFormat("dd.MM.yyyy HH:mm:ss").format(new Date()));
 
+            start = metrics.start();
             String operationId = transferRepository.createTransaction(transferData);
-            log.debug(String.format("Transaction {%s} was created. operationId = {%s} ", transferData, operationId));
+            metrics.record(Stage.CREATE_TRANSACTION, start);
+            metrics.countResult(TransferMetrics.SUCCESS);
+            log.debug("Transaction {{}} was created. operationId = {{}} ", transferData, operationId);
 
             return operationId;
         } else {
-            String msg = String.format("Account {%s} rest can become negative. Transaction can not be registered. Fill the balance and try it later", transferData.getCardFromNumber());
-            log.error(msg);
-            throw new NegativeAccountState(msg, 101);
+            throw negativeAccountState(transferData.getCardFromNumber());
         }
     }
 
+    /**
+     * Метод пакетной регистрации транзакций
+     * Переводы группируются по карте Дебета: остаток и сумма удержаний читаются один раз на группу,
+     * переводы группы принимаются по порядку, пока перспективный остаток остается положительным.
+     * Все принятые переводы регистрируются в хранилище одной операцией. Ошибка одного перевода
+     * не влияет на обработку остальных
+     *
+     * @param transfers прошедшие валидацию переводы
+     * @return результаты в порядке переводов: operationId или описание ошибки
+     */
+    public List<BatchItemResult> doTransactionBatch(List<TransferInfo> transfers) {
+        BatchItemResult[] results = new BatchItemResult[transfers.size()];
 
-    public String doConfirm(OperationInfo operationInfo) {
-        String msg = "";
-        Map<String, AccountTransaction> transactions = transferRepository.getTransactions();
-        Map<String, Integer> accountRest = transferRepository.getAccountRest();
-
-        if (!transactions.containsKey(operationInfo.getOperationId())) {
-            msg = String.format("Transaction {%s} is not exists in transaction table", operationInfo.getOperationId());
-            log.error(msg);
-            throw new OperationNotExist(msg, 103);
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            groups.computeIfAbsent(transfers.get(i).getCardFromNumber(), key -> new ArrayList<>()).add(i);
         }
 
-        AccountTransaction transaction = transactions.get(operationInfo.getOperationId());
+        List<TransferInfo> accepted = new ArrayList<>(transfers.size());
+        List<Integer> acceptedPositions = new ArrayList<>(transfers.size());
+        String registrationTime = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss").format(new Date());
+
+        for (Map.Entry<String, List<Integer>> group : groups.entrySet()) {
+            String cardFromNumber = group.getKey();
+            boolean accountExists = transferRepository.hasAccount(cardFromNumber);
+            long balance = accountExists ? getAmount(cardFromNumber) : 0L;
+            long pendingTotal = accountExists ? getUnknownTotalTransactSum(cardFromNumber) : 0L;
+
+            for (int position : group.getValue()) {
+                TransferInfo transferData = transfers.get(position);
+                try {
+                    checkTransferAccounts(transferData);
+                    calculateCommission(transferData);
+
+                    long transferTotal = (long) transferData.getAmount().getValue() + transferData.getCommissionAmount();
+                    if (balance - (pendingTotal + transferTotal) <= 0) {
+                        throw negativeAccountState(cardFromNumber);
+                    }
+                    pendingTotal += transferTotal;
+                    transferData.setTransactionRegistrationTime(registrationTime);
+                    accepted.add(transferData);
+                    acceptedPositions.add(position);
+                } catch (TransferException e) {
+                    results[position] = BatchItemResult.failure(e);
+                }
+            }
+        }
 
-        if (transaction.getCommitCode().equals(ConfirmType.COMMITED)) {
-            msg = String.format("Transaction {%s} is already commited", operationInfo.getOperationId());
-            log.error(msg);
-            throw new OperationNotExist(msg, 104);
+        List<String> operationIds = accepted.isEmpty() ? List.of() : transferRepository.createTransactions(accepted);
+        for (int i = 0; i < operationIds.size(); i++) {
+            results[acceptedPositions.get(i)] = BatchItemResult.success(operationIds.get(i));
         }
-        if (transaction.getCommitCode().equals(ConfirmType.ROLLBACK)) {
-            msg = String.format("Transaction {%s} was already rollback", operationInfo.getOperationId());
-            log.error(msg);
-            throw new OperationNotExist(msg, 105);
+        if (log.isDebugEnabled()) {
+            log.debug("Batch of {{}} transfers is processed, {{}} transactions are created", transfers.size(), operationIds.size());
         }
 
+        return Arrays.asList(results);
+    }
+
+
+    public String doConfirm(OperationInfo operationInfo) {
+        String msg = "";
+        Map<String, AccountTransaction> transactions = transferRepository.getTransactions();
+
+        AccountTransaction transaction = getUnknownTransaction(operationInfo.getOperationId(), transactions);
+
         switch (operationInfo.getCode().toUpperCase()) {
             case "0000"://COMMIT
 
-                if (isPositiveBalance(getAmount(transaction.getCardFromNumber(), accountRest),
-                        transaction.getAmount().getValue() + transaction.getCommissionAmount())) {
+                if (isPositiveBalance(getAmount(transaction.getCardFromNumber()),
+                        (long) transaction.getAmount().getValue() + transaction.getCommissionAmount())) {
 
+                    long start = metrics.start();
                     String operationId = transferRepository.commitTransaction(transaction);
-                    log.debug(String.format("Transaction {%s} is commited. Detail transaction: {%s}", operationId, transaction.toString()));
+                    metrics.record(Stage.COMMIT_TRANSACTION, start);
+                    metrics.countResult(TransferMetrics.SUCCESS);
+                    log.debug("Transaction {{}} is commited. Detail transaction: {{}}", operationId, transaction);
                     return operationId;
 
                 } else {
@@ -96,22 +201,131 @@ public class TransferService {
                     msg = String.format("The account PAN {%s} status may receive a negative balance, " +
                             "operation does not possible. The transaction was rejected (ROLLBACK)", transaction.getCardFromNumber());
 
-                    log.error(String.format("Transaction {%s} was rollback. Detail transaction: {%s} ", operationId, transaction) + msg);
+                    log.error("Transaction {{}} was rollback. Detail transaction: {{}} {}", operationId, transaction, msg);
                     throw new NegativeAccountState(msg, 102);
                 }
 
             case "0001"://ROLLBACK
                 String operationId = transferRepository.rollbackTransaction(operationInfo.getOperationId());
-                log.debug(String.format("Transaction {%s} was rollback. Detail transaction: {%s} ", operationId, transaction));
+                metrics.countResult(TransferMetrics.SUCCESS);
+                log.debug("Transaction {{}} was rollback. Detail transaction: {{}} ", operationId, transaction);
                 return operationId;
 
             default:
-                msg = String.format("Unknown action {%s} for transaction processing", operationInfo.getCode());
-                log.error(msg);
-                throw new UnknownAccountAction(msg, 106);
+                throw unknownAccountAction(operationInfo.getCode());
         }
     }
 
+    /**
+     * Метод пакетного подтверждения\отката транзакций
+     * Операции проверяются по таблице транзакций, сортируются по счетам Дебета и Кредита, чтобы соседние
+     * операции работали с одними и теми же блокировками, и применяются хранилищем за один проход.
+     * Ошибка одной операции (коды 102 - 106) возвращается в ее элементе ответа и не влияет на остальные
+     *
+     * @param operations операции подтверждения (0000) или отката (0001)
+     * @return результаты в порядке операций: operationId или описание ошибки
+     */
+    public List<BatchItemResult> doConfirmBatch(List<OperationInfo> operations) {
+        Map<String, AccountTransaction> transactions = transferRepository.getTransactions();
+        BatchItemResult[] results = new BatchItemResult[operations.size()];
+        List<Integer> positions = new ArrayList<>(operations.size());
+        AccountTransaction[] resolved = new AccountTransaction[operations.size()];
+        ConfirmType[] actions = new ConfirmType[operations.size()];
+
+        for (int i = 0; i < operations.size(); i++) {
+            OperationInfo operationInfo = operations.get(i);
+            try {
+                resolved[i] = getUnknownTransaction(operationInfo.getOperationId(), transactions);
+                actions[i] = switch (operationInfo.getCode().toUpperCase()) {
+                    case "0000" -> ConfirmType.COMMITED;
+                    case "0001" -> ConfirmType.ROLLBACK;
+                    default -> throw unknownAccountAction(operationInfo.getCode());
+                };
+                positions.add(i);
+            } catch (TransferException e) {
+                results[i] = BatchItemResult.failure(e);
+            }
+        }
+
+        positions.sort(Comparator
+                .comparing((Integer position) -> resolved[position].getCardFromNumber())
+                .thenComparing(position -> resolved[position].getCardToNumber()));
+
+        List<AccountTransaction> sortedTransactions = new ArrayList<>(positions.size());
+        List<ConfirmType> sortedActions = new ArrayList<>(positions.size());
+        for (int position : positions) {
+            sortedTransactions.add(resolved[position]);
+            sortedActions.add(actions[position]);
+        }
+
+        List<TransferException> errors = positions.isEmpty()
+                ? List.of()
+                : transferRepository.confirmTransactions(sortedTransactions, sortedActions);
+        for (int i = 0; i < positions.size(); i++) {
+            TransferException error = errors.get(i);
+            results[positions.get(i)] = error == null
+                    ? BatchItemResult.success(sortedTransactions.get(i).getOperationId())
+                    : BatchItemResult.failure(error);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Batch of {{}} confirmations is processed", operations.size());
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Метод находит транзакцию для подтверждения\отката и проверяет, что она еще не обработана
+     *
+     * @param operationId идентификатор транзакции
+     * @return транзакция в состоянии UNKNOWN
+     */
+    private AccountTransaction getUnknownTransaction(String operationId, Map<String, AccountTransaction> transactions) {
+        String msg;
+        AccountTransaction transaction = transactions.get(operationId);
+        //завершенная транзакция могла быть перенесена в архив, там хранится только ее итоговое состояние
+        ConfirmType commitCode = transaction != null
+                ? transaction.getCommitCode()
+                : transferRepository.getArchivedState(operationId);
+
+        if (commitCode == null) {
+            msg = String.format("Transaction {%s} is not exists in transaction table", operationId);
+            log.error(msg);
+            throw new OperationNotExist(msg, 103);
+        }
+
+        if (commitCode.equals(ConfirmType.COMMITED)) {
+            msg = String.format("Transaction {%s} is already commited", operationId);
+            log.error(msg);
+            throw new OperationNotExist(msg, 104);
+        }
+        if (commitCode.equals(ConfirmType.ROLLBACK)) {
+            msg = String.format("Transaction {%s} was already rollback", operationId);
+            log.error(msg);
+            throw new OperationNotExist(msg, 105);
+        }
+        return transaction;
+    }
+
+    private UnknownAccountAction unknownAccountAction(String code) {
+        String msg = String.format("Unknown action {%s} for transaction processing", code);
+        log.error(msg);
+        return new UnknownAccountAction(msg, 106);
+    }
+
+    /**
+     * Метод рассчитывает комиссию за перевод по тарифу карты отправителя и добавляет ее в объект перевода
+     */
+    private void calculateCommission(TransferInfo transferData) {
+        transferData.setCommissionAmount(commissionEngine.calculate(transferData.getCardFromNumber(), transferData.getAmount().getValue()));
+    }
+
+    private NegativeAccountState negativeAccountState(String account) {
+        String msg = String.format("Account {%s} rest can become negative. Transaction can not be registered. Fill the balance and try it later", account);
+        log.error(msg);
+        return new NegativeAccountState(msg, 101);
+    }
+
     /**
      * Метод возвращает перспективу отстака по счету с учетом текущего перевода и необработанных транзакций  по счету Дебета
      *
@@ -119,51 +333,47 @@ public class TransferService {
      * @param totalTransactionSum  итоговая сумма списания со счета
      * @return возвращает true - если перспективный остаток счета положительный, иначе false
      */
-    private boolean isPositiveBalance(Integer currentAccountAmount, Integer totalTransactionSum) {
+    private boolean isPositiveBalance(long currentAccountAmount, long totalTransactionSum) {
         return currentAccountAmount - totalTransactionSum > 0;
     }
 
-    private Integer getTotalTransactionSum(TransferInfo transferData, Map<String, AccountTransaction> transactions) {
+    private long getTotalTransactionSum(TransferInfo transferData) {
         //Сумма перевода и комиссии по необработанным проводкам
-        Integer unknownTransactionSum = getUnknownTotalTransactSum(transferData.getCardFromNumber(), transactions);
+        long unknownTransactionSum = getUnknownTotalTransactSum(transferData.getCardFromNumber());
 
         //Сумма указанная в переводе
-        Integer transferAmount = transferData.getAmount().getValue();
+        int transferAmount = transferData.getAmount().getValue();
 
         //Итоговая пердрасчитанная сумма: текущий перевод + комиссия + сумма переводов и комиссий по всем необработанным транзакциям счета
-        Integer totalAmount = unknownTransactionSum + (transferAmount + transferData.getCommissionAmount());
-
-        log.debug(String.format("Total transactions with unknown status on debet account = {%s} " +
-                        "Transfer amount on debet account  = {%s} " +
-                        "Total amount on debet account = {%s} " +
-                        "Details: [%s]",
-                unknownTransactionSum,
-                transferAmount,
-                totalAmount,
-                transferData)
-        );
+        long totalAmount = unknownTransactionSum + ((long) transferAmount + transferData.getCommissionAmount());
+
+        if (log.isDebugEnabled()) {
+            log.debug("Total transactions with unknown status on debet account = {{}} " +
+                            "Transfer amount on debet account  = {{}} " +
+                            "Total amount on debet account = {{}} " +
+                            "Details: [{}]",
+                    unknownTransactionSum,
+                    transferAmount,
+                    totalAmount,
+                    transferData);
+        }
         return totalAmount;
     }
 
     /**
      * Метод возвращает общую сумму неподтвержденных транзакций по переданному номеру карты
      * Общая сумма рассчитывается из суммы перевода и суммы комиссии неподтвержденных транзакций
+     * и ведется хранилищем в разрезе счета, поэтому не требует просмотра таблицы транзакций
      *
      * @param account значение номера счета (карты)
      * @return сумма неподтвержденных транзакций
      */
-    private Integer getUnknownTotalTransactSum(String account, Map<String, AccountTransaction> transactions) {
-        Integer result = 0;
-
-        result = transactions.values().stream()
-                .filter(x -> x.getCommitCode().equals(ConfirmType.UNKNOWN))
-                .filter(y -> y.getCardFromNumber().equals(account))
-                .map(x -> new TransactAmountInfo(
-                        x.getAmount().getValue(),
-                        x.getCommissionAmount()))
-                .reduce(0, (x, y) -> x + y.getTotalSum(), Integer::sum);
-
-        log.debug(String.format("Total amount UNKNOWN transaction: " + result + " for account {%s}", account));
+    private long getUnknownTotalTransactSum(String account) {
+        long result = transferRepository.getHoldAmount(account);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Total amount UNKNOWN transaction: {} for account {{}}", result, account);
+        }
         return result;
     }
 
@@ -173,47 +383,34 @@ public class TransferService {
      * @param account PAN - номер карты
      * @return возвращает размер остатка карты
      */
-    private Integer getAmount(String account, Map<String, Integer> accountRest) {
-        Integer result = 0;
-        result = accountRest.get(account);
-        return result;
+    private long getAmount(String account) {
+        return transferRepository.getBalance(account);
     }
 
-    private void checkTransferAccounts(TransferInfo transferInfo, Map<String, Integer> accountRest) {
+    private void checkTransferAccounts(TransferInfo transferInfo) {
 
-        if (!accountRest.containsKey(transferInfo.getCardFromNumber())) {
-            log.error(String.format("Debet account PAN {%s} not exists in rest table", transferInfo.getCardFromNumber()));
+        if (!transferRepository.hasAccount(transferInfo.getCardFromNumber())) {
+            log.error("Debet account PAN {{}} not exists in rest table", transferInfo.getCardFromNumber());
             throw new AccountNotExist(String.format("Account {%s} not exists in rest table", transferInfo.getCardFromNumber()), 99);
         }
 
-        if (!accountRest.containsKey(transferInfo.getCardToNumber())) {
-            log.error(String.format("Credit account PAN {%s} not exists in rest table", transferInfo.getCardToNumber()));
+        if (!transferRepository.hasAccount(transferInfo.getCardToNumber())) {
+            log.error("Credit account PAN {{}} not exists in rest table", transferInfo.getCardToNumber());
             throw new AccountNotExist(String.format("Account {%s} not exists in rest table", transferInfo.getCardToNumber()), 100);
         }
     }
 
     /**
-     * Класс внутренний. Добавлен для удобства рассчета общей суммы: перевод + комиссия
+     * Реквизиты запроса перевода, по которым сравниваются повторы ключа идемпотентности
+     * Копия хранится в кэше до истечения срока ключа, поэтому CVV в нее не входит и в памяти кэша не остается
      */
-    class TransactAmountInfo {
-        private Integer transactAmount;
-        private Integer transactCommision;
-
-        public TransactAmountInfo(Integer transactAmount, Integer transactCommision) {
-            this.transactAmount = transactAmount;
-            this.transactCommision = transactCommision;
-        }
-
-        public Integer getTransactAmount() {
-            return transactAmount;
-        }
-
-        public Integer getTransactCommision() {
-            return transactCommision;
-        }
-
-        public Integer getTotalSum() {
-            return transactAmount + transactCommision;
+    private record TransferRequest(String cardFromNumber, String cardFromValidTill,
+                                   String cardToNumber, Integer value, String currency) {
+        static TransferRequest of(TransferInfo transferData) {
+            TransferAmount amount = transferData.getAmount();
+            return new TransferRequest(transferData.getCardFromNumber(), transferData.getCardFromValidTill(),
+                    transferData.getCardToNumber(),
+                    amount == null ? null : amount.getValue(), amount == null ? null : amount.getCurrency());
         }
     }
 }
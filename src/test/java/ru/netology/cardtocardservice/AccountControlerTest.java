@@ -0,0 +1,36 @@
+package ru.netology.cardtocardservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import ru.netology.cardtocardservice.advice.ValidationExceptionHandler;
+import ru.netology.cardtocardservice.controler.AccountControler;
+import ru.netology.cardtocardservice.repository.TransferRepository;
+import ru.netology.cardtocardservice.service.AccountImportService;
+import ru.netology.cardtocardservice.service.AccountService;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class AccountControlerTest {
+
+    @Test
+    void getTransactions_NonNumericLimit_ReturnsRequestFieldInvalid() throws Exception {
+        //given
+        TransferRepository transferRepository = new TransferRepository();
+        MockMvc mockMvc = MockMvcBuilders
+                .standaloneSetup(new AccountControler(new AccountService(transferRepository),
+                        new AccountImportService(transferRepository), new ObjectMapper()))
+                .setControllerAdvice(new ValidationExceptionHandler())
+                .build();
+
+        //when
+        var result = mockMvc.perform(get("/accounts/4548987854653311/transactions").param("limit", "ten"));
+
+        //then
+        result.andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.id").value(107));
+    }
+}
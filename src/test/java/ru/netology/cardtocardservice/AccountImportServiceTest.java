@@ -0,0 +1,185 @@
+package ru.netology.cardtocardservice;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.netology.cardtocardservice.domain.ImportReport;
+import ru.netology.cardtocardservice.exception.AccountImportFailed;
+import ru.netology.cardtocardservice.repository.TransferRepository;
+import ru.netology.cardtocardservice.repository.balance.BalanceStore;
+import ru.netology.cardtocardservice.repository.journal.LedgerJournal;
+import ru.netology.cardtocardservice.repository.shard.ShardedLedger;
+import ru.netology.cardtocardservice.service.AccountImportService;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AccountImportServiceTest {
+    private static final int ACCOUNTS = 5000;
+
+    private TransferRepository transferRepository;
+    private AccountImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        transferRepository = new TransferRepository();
+        importService = new AccountImportService(transferRepository, 100, 4, true, "");
+    }
+
+    @Test
+    void importAccounts_OpensAllAccountsWithBalances() {
+        //given
+        StringBuilder ndjson = accounts(ACCOUNTS);
+        ndjson.append('\n');
+
+        //when
+        ImportReport report = importService.importAccounts(input(ndjson));
+
+        //then
+        Assertions.assertEquals(ACCOUNTS + 1, report.getLines());
+        Assertions.assertEquals(ACCOUNTS, report.getAccounts());
+        Assertions.assertEquals(3 + ACCOUNTS, transferRepository.getAccountRest().size());
+        Assertions.assertEquals(ACCOUNTS - 1, transferRepository.getAccountRest().get(card(ACCOUNTS - 1)));
+    }
+
+    @Test
+    void importAccounts_InvalidLine_OpensNoAccounts() {
+        //given
+        StringBuilder ndjson = accounts(ACCOUNTS);
+        ndjson.insert(ndjson.indexOf(card(3000)) - 12, "{\"account\":\"4111111111111112\",\"balance\":1}\n");
+
+        //when
+        AccountImportFailed e = Assertions.assertThrows(AccountImportFailed.class, () -> importService.importAccounts(input(ndjson)));
+
+        //then
+        Assertions.assertEquals(109, e.getId());
+        Assertions.assertTrue(e.getMessage().contains("line 3001"), e.getMessage());
+        Assertions.assertEquals(3, transferRepository.getAccountRest().size());
+    }
+
+    @Test
+    void importAccounts_RepeatedOrExistingAccount_OpensNoAccounts() {
+        //given
+        StringBuilder repeated = accounts(ACCOUNTS).append(line(card(10), 5));
+        StringBuilder existing = accounts(10).append("{\"account\":\"4548987854653322\"}\n");
+        AccountImportService withoutLuhn = new AccountImportService(transferRepository, 100, 4, false, "");
+
+        //when
+        AccountImportFailed repeatedError = Assertions.assertThrows(AccountImportFailed.class, () -> importService.importAccounts(input(repeated)));
+        AccountImportFailed existingError = Assertions.assertThrows(AccountImportFailed.class, () -> withoutLuhn.importAccounts(input(existing)));
+
+        //then
+        Assertions.assertTrue(repeatedError.getMessage().contains("is repeated"), repeatedError.getMessage());
+        Assertions.assertTrue(existingError.getMessage().contains("already exists"), existingError.getMessage());
+        Assertions.assertEquals(3, transferRepository.getAccountRest().size());
+    }
+
+    @Test
+    void importAccounts_ShardedLedger_OpensAccountsOnOwningShards() {
+        //given
+        ShardedLedger ledger = new ShardedLedger(4);
+        AccountImportService shardedImport = new AccountImportService(ledger, 100, 4, true, "");
+
+        //when
+        ImportReport report = shardedImport.importAccounts(input(accounts(ACCOUNTS)));
+
+        //then
+        Assertions.assertEquals(ACCOUNTS, report.getAccounts());
+        for (int i = 0; i < ACCOUNTS; i += 97) {
+            Assertions.assertEquals(i, ledger.getShard(ledger.shardOf(card(i))).getAccountRest().get(card(i)));
+        }
+    }
+
+    @Test
+    void importAccounts_JournalFailsWhileOpening_ClosesOpenedAccounts() {
+        //given
+        AtomicInteger durableCalls = new AtomicInteger();
+        LedgerJournal failingJournal = new LedgerJournal() {
+            @Override
+            public void awaitDurable(long position) {
+                if (durableCalls.incrementAndGet() == 10) {
+                    throw new UncheckedIOException("Journal write failed", new IOException("disk is full"));
+                }
+            }
+        };
+        TransferRepository journaled = new TransferRepository(BalanceStore.Type.MAP, failingJournal);
+        AccountImportService journaledImport = new AccountImportService(journaled, 100, 4, true, "");
+
+        //when
+        AccountImportFailed e = Assertions.assertThrows(AccountImportFailed.class, () -> journaledImport.importAccounts(input(accounts(ACCOUNTS))));
+
+        //then
+        Assertions.assertEquals(109, e.getId());
+        Assertions.assertTrue(e.getMessage().contains("Journal write failed"), e.getMessage());
+        Assertions.assertEquals(3, journaled.getAccountRest().size());
+    }
+
+    @Test
+    void importAccounts_JournalFailsWhileOpening_KeepsAccountsOpenedByAnotherRequest() {
+        //given
+        AtomicInteger durableCalls = new AtomicInteger();
+        LedgerJournal failingJournal = new LedgerJournal() {
+            @Override
+            public void awaitDurable(long position) {
+                if (durableCalls.incrementAndGet() == 10) {
+                    throw new UncheckedIOException("Journal write failed", new IOException("disk is full"));
+                }
+            }
+        };
+        //счет card(0) с нулевым остатком открывает другой запрос после проверки его строки
+        TransferRepository journaled = new TransferRepository(BalanceStore.Type.MAP, failingJournal) {
+            @Override
+            public boolean hasAccount(String account) {
+                boolean exists = super.hasAccount(account);
+                if (account.equals(card(0))) {
+                    openAccount(account, 0);
+                }
+                return exists;
+            }
+        };
+        AccountImportService journaledImport = new AccountImportService(journaled, 100, 4, true, "");
+
+        //when
+        Assertions.assertThrows(AccountImportFailed.class, () -> journaledImport.importAccounts(input(accounts(ACCOUNTS))));
+
+        //then
+        Assertions.assertEquals(4, journaled.getAccountRest().size());
+        Assertions.assertEquals(0, journaled.getAccountRest().get(card(0)));
+    }
+
+    private static StringBuilder accounts(int count) {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            ndjson.append(line(card(i), i));
+        }
+        return ndjson;
+    }
+
+    private static String line(String card, int balance) {
+        return "{\"account\":\"" + card + "\",\"balance\":" + balance + "}\n";
+    }
+
+    /**
+     * Номер карты с контрольной цифрой по алгоритму Луна
+     */
+    private static String card(int number) {
+        String body = String.format("411111%09d", number);
+        int sum = 0;
+        for (int i = 0; i < body.length(); i++) {
+            int digit = body.charAt(body.length() - 1 - i) - '0';
+            if (i % 2 == 0) {
+                digit = digit * 2 > 9 ? digit * 2 - 9 : digit * 2;
+            }
+            sum += digit;
+        }
+        return body + (10 - sum % 10) % 10;
+    }
+
+    private static InputStream input(CharSequence ndjson) {
+        return new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
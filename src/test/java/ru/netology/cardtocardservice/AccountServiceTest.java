@@ -0,0 +1,183 @@
+package ru.netology.cardtocardservice;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.netology.cardtocardservice.domain.AccountBalance;
+import ru.netology.cardtocardservice.domain.AccountTransaction;
+import ru.netology.cardtocardservice.domain.ConfirmType;
+import ru.netology.cardtocardservice.domain.StatementItem;
+import ru.netology.cardtocardservice.domain.TransferAmount;
+import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.exception.AccountNotExist;
+import ru.netology.cardtocardservice.exception.RequestFieldInvalid;
+import ru.netology.cardtocardservice.repository.HoldExpiryWheel;
+import ru.netology.cardtocardservice.repository.TransferRepository;
+import ru.netology.cardtocardservice.repository.balance.BalanceStore;
+import ru.netology.cardtocardservice.repository.id.UuidOperationIdGenerator;
+import ru.netology.cardtocardservice.repository.journal.LedgerJournal;
+import ru.netology.cardtocardservice.repository.ring.SingleWriterLedger;
+import ru.netology.cardtocardservice.repository.shard.ShardedLedger;
+import ru.netology.cardtocardservice.service.AccountService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public class AccountServiceTest {
+    private static final String CARD_FROM = "4548987854653322";
+    private static final String CARD_TO = "4548987854653311";
+
+    private TransferRepository transferRepository;
+    private AccountService accountService;
+
+    @BeforeEach
+    void setUp() {
+        transferRepository = new TransferRepository();
+        accountService = new AccountService(transferRepository);
+    }
+
+    @Test
+    void getStatement_KeysetPagesReturnAllTransactionsNewestFirst() {
+        //given
+        List<String> created = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            created.add(0, transferRepository.createTransaction(getTransferObj(10)));
+        }
+
+        //when
+        List<String> read = new ArrayList<>();
+        String after = null;
+        List<StatementItem> page;
+        do {
+            page = accountService.getStatement(CARD_TO, null, after, 10).toList();
+            page.forEach(item -> read.add(item.getOperationId()));
+            after = page.isEmpty() ? null : page.get(page.size() - 1).getOperationId();
+        } while (page.size() == 10);
+
+        //then
+        Assertions.assertEquals(created, read);
+        StatementItem item = accountService.getStatement(CARD_TO, null, null, 1).findFirst().orElseThrow();
+        Assertions.assertEquals(StatementItem.CREDIT, item.getDirection());
+        Assertions.assertEquals(CARD_FROM, item.getCounterpartyCard());
+        Assertions.assertNull(item.getCommissionAmount());
+    }
+
+    @Test
+    void getStatement_FiltersByStatusAndMatchesFullScan() {
+        //given
+        String committed = transferRepository.createTransaction(getTransferObj(100));
+        String rolledBack = transferRepository.createTransaction(getTransferObj(50));
+        String pending = transferRepository.createTransaction(getTransferObj(10));
+        transferRepository.commitTransaction(transferRepository.getTransactions().get(committed));
+        transferRepository.rollbackTransaction(rolledBack);
+        //выписка без индекса карт: просмотр и сортировка всей таблицы
+        List<String> fullScan = transferRepository.getTransactions().values().stream()
+                .filter(transaction -> CARD_FROM.equals(transaction.getCardFromNumber()) || CARD_FROM.equals(transaction.getCardToNumber()))
+                .sorted(Comparator.comparing(AccountTransaction::getOperationKey).reversed())
+                .map(AccountTransaction::getOperationId)
+                .toList();
+
+        //when
+        List<StatementItem> committedItems = accountService.getStatement(CARD_FROM, "commited", null, 10).toList();
+        List<StatementItem> all = accountService.getStatement(CARD_FROM, null, null, 10).toList();
+
+        //then
+        Assertions.assertEquals(1, committedItems.size());
+        Assertions.assertEquals(committed, committedItems.get(0).getOperationId());
+        Assertions.assertEquals(StatementItem.DEBIT, committedItems.get(0).getDirection());
+        Assertions.assertEquals(List.of(pending, rolledBack, committed), all.stream().map(StatementItem::getOperationId).toList());
+        Assertions.assertEquals(fullScan, all.stream().map(StatementItem::getOperationId).toList());
+    }
+
+    @Test
+    void getStatement_SingleWriterAndShardedLedgers_ReadByAccountIndex() {
+        //given
+        SingleWriterLedger singleWriter = new SingleWriterLedger();
+        ShardedLedger sharded = new ShardedLedger(4);
+        List<String> singleWriterIds = new ArrayList<>();
+        List<String> shardedIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            singleWriterIds.add(0, singleWriter.createTransaction(getTransferObj(10)));
+            shardedIds.add(0, sharded.createTransaction(getTransferObj(10)));
+        }
+
+        //when
+        List<StatementItem> singleWriterItems = new AccountService(singleWriter).getStatement(CARD_FROM, null, singleWriterIds.get(0), 10).toList();
+        List<StatementItem> shardedItems = new AccountService(sharded).getStatement(CARD_FROM, null, null, 10).toList();
+
+        //then
+        Assertions.assertEquals(singleWriterIds.subList(1, 5), singleWriterItems.stream().map(StatementItem::getOperationId).toList());
+        Assertions.assertEquals(shardedIds, shardedItems.stream().map(StatementItem::getOperationId).toList());
+        singleWriter.close();
+    }
+
+    @Test
+    void getStatement_UuidOperationIds_NewestFirst() {
+        //given
+        TransferRepository uuidRepository = new TransferRepository(BalanceStore.Type.MAP, LedgerJournal.NONE,
+                HoldExpiryWheel.DISABLED, Duration.ZERO, new UuidOperationIdGenerator(0));
+        List<String> created = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            created.add(0, uuidRepository.createTransaction(getTransferObj(10)));
+        }
+
+        //when
+        List<StatementItem> read = new AccountService(uuidRepository).getStatement(CARD_TO, null, created.get(9), 100).toList();
+
+        //then
+        Assertions.assertEquals(created.subList(10, 50), read.stream().map(StatementItem::getOperationId).toList());
+    }
+
+    @Test
+    void getStatement_OverStatementDepth_DropsOldestTransactions() {
+        //given
+        List<String> created = new ArrayList<>();
+        for (int i = 0; i <= TransferRepository.STATEMENT_DEPTH; i++) {
+            created.add(transferRepository.createTransaction(getTransferObj(10)));
+        }
+
+        //when
+        List<StatementItem> afterSecond = accountService.getStatement(CARD_TO, null, created.get(1), 10).toList();
+        List<StatementItem> newest = accountService.getStatement(CARD_TO, null, null, 1).toList();
+
+        //then
+        Assertions.assertTrue(afterSecond.isEmpty());
+        Assertions.assertEquals(created.get(created.size() - 1), newest.get(0).getOperationId());
+        Assertions.assertNotNull(transferRepository.getTransactions().get(created.get(0)));
+    }
+
+    @Test
+    void getBalance_ReturnsRestHoldAndRejectsUnknownAccounts() {
+        //given
+        transferRepository.createTransaction(getTransferObj(30));
+
+        //when
+        AccountBalance balance = accountService.getBalance(CARD_TO);
+        AccountBalance debitBalance = accountService.getBalance(CARD_FROM);
+
+        //then
+        Assertions.assertEquals(50, balance.getBalance());
+        Assertions.assertEquals(10000000 - 31, debitBalance.getAvailable());
+        Assertions.assertThrows(AccountNotExist.class, () -> accountService.getBalance("4548987854650000"));
+        Assertions.assertThrows(RequestFieldInvalid.class, () -> accountService.getBalance("454898785465"));
+        Assertions.assertThrows(RequestFieldInvalid.class, () -> accountService.getStatement(CARD_TO, "DONE", null, 10));
+        Assertions.assertThrows(RequestFieldInvalid.class, () -> accountService.getStatement(CARD_TO, null, null, 0));
+    }
+
+    private TransferInfo getTransferObj(Integer value) {
+        TransferAmount transferAmount = new TransferAmount();
+        transferAmount.setValue(value);
+        transferAmount.setCurrency("RUR");
+
+        TransferInfo transferInfo = new TransferInfo();
+        transferInfo.setCardFromNumber(CARD_FROM);
+        transferInfo.setCardToNumber(CARD_TO);
+        transferInfo.setCardFromCVV("956");
+        transferInfo.setCardFromValidTill("08/30");
+        transferInfo.setAmount(transferAmount);
+        transferInfo.setCommissionAmount(value / 30);
+        return transferInfo;
+    }
+}
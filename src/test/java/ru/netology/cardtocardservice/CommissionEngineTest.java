@@ -0,0 +1,89 @@
+package ru.netology.cardtocardservice;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.netology.cardtocardservice.dictionary.TariffDefinition;
+import ru.netology.cardtocardservice.dictionary.TariffTable;
+import ru.netology.cardtocardservice.service.CommissionEngine;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+
+public class CommissionEngineTest {
+
+    @Test
+    public void defaultTariff_EqualsOnePercent() {
+        //given
+        CommissionEngine commissionEngine = new CommissionEngine();
+
+        //when //then
+        for (int amount = 1; amount < 100000; amount += 7) {
+            Assertions.assertEquals(amount * 1 / 100, commissionEngine.calculate("4548987854653322", amount));
+        }
+    }
+
+    @Test
+    public void compiledTariffs_ApplyBinRangeTiersCapsAndFreeLimit() {
+        //given
+        TariffDefinition.Tariff promo = new TariffDefinition.Tariff(
+                List.of(new TariffDefinition.Tier(0, 150), new TariffDefinition.Tier(10000, 50)),
+                30, 200, 1000);
+        TariffTable table = TariffTable.compile(new TariffDefinition(
+                new TariffDefinition.Tariff(List.of(new TariffDefinition.Tier(0, 100)), 0, 0, 0),
+                List.of(new TariffDefinition.BinRange(454898, 454899, promo),
+                        new TariffDefinition.BinRange(220000, 220499, new TariffDefinition.Tariff(
+                                List.of(new TariffDefinition.Tier(0, 0)), 0, 0, 0)))));
+        CommissionEngine commissionEngine = new CommissionEngine(table);
+
+        //when //then
+        Assertions.assertEquals(0, commissionEngine.calculate("4548987854653322", 1000)); //льготный лимит
+        Assertions.assertEquals(30, commissionEngine.calculate("4548987854653322", 1001)); //минимум
+        Assertions.assertEquals(75, commissionEngine.calculate("4548987854653322", 5000)); //1.5%
+        Assertions.assertEquals(50, commissionEngine.calculate("4548997854653322", 10000)); //0.5%
+        Assertions.assertEquals(200, commissionEngine.calculate("4548987854653322", 1000000)); //максимум
+        Assertions.assertEquals(0, commissionEngine.calculate("2200301234567890", 5000));
+        Assertions.assertEquals(50, commissionEngine.calculate("2205001234567890", 5000)); //вне диапазона
+        Assertions.assertEquals(50, commissionEngine.calculate("4548977854653322", 5000));
+    }
+
+    @Test
+    public void compile_OverlappingBinRanges_ThrowsIllegalArgument() {
+        //given
+        TariffDefinition.Tariff tariff = new TariffDefinition.Tariff(List.of(new TariffDefinition.Tier(0, 100)), 0, 0, 0);
+        TariffDefinition definition = new TariffDefinition(tariff,
+                List.of(new TariffDefinition.BinRange(454800, 454899, tariff),
+                        new TariffDefinition.BinRange(454899, 454999, tariff)));
+
+        //when //then
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TariffTable.compile(definition));
+    }
+
+    @Test
+    public void reload_ChangedFile_SwapsTariffsAndKeepsThemOnInvalidFile(@TempDir Path directory) throws Exception {
+        //given
+        Path file = directory.resolve("tariffs.json");
+        Files.writeString(file, "{\"defaultTariff\":{\"tiers\":[{\"from\":0,\"rateBp\":200}]}}");
+        CommissionEngine commissionEngine = new CommissionEngine(file.toString(), Duration.ZERO);
+        Assertions.assertEquals(20, commissionEngine.calculate("4548987854653322", 1000));
+
+        //when
+        Files.writeString(file, "{\"defaultTariff\":{\"tiers\":[{\"from\":0,\"rateBp\":300}]}}");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+
+        //then
+        Assertions.assertTrue(commissionEngine.reload());
+        Assertions.assertEquals(30, commissionEngine.calculate("4548987854653322", 1000));
+
+        //when
+        Files.writeString(file, "{\"defaultTariff\":{\"tiers\":[{\"from\":10,\"rateBp\":300}]}}");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 2000));
+
+        //then
+        Assertions.assertFalse(commissionEngine.reload());
+        Assertions.assertEquals(30, commissionEngine.calculate("4548987854653322", 1000));
+    }
+}
@@ -0,0 +1,174 @@
+package ru.netology.cardtocardservice;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.netology.cardtocardservice.domain.ConfirmType;
+import ru.netology.cardtocardservice.domain.TransferAmount;
+import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.repository.TransferRepository;
+import ru.netology.cardtocardservice.repository.balance.BalanceStore;
+import ru.netology.cardtocardservice.repository.journal.FileLedgerJournal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class FileLedgerJournalTest {
+    @TempDir
+    Path journalDir;
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void replay_RestoresBalancesAndTransactions(boolean groupCommit) {
+        //given
+        Path path = journalDir;
+        String committedId;
+        String rolledBackId;
+        String pendingId;
+        try (FileLedgerJournal journal = new FileLedgerJournal(path, groupCommit)) {
+            TransferRepository transferRepository = new TransferRepository(BalanceStore.Type.MAP, journal);
+            committedId = transferRepository.createTransaction(getTransferObj(100, 1));
+            transferRepository.commitTransaction(transferRepository.getTransactions().get(committedId));
+            rolledBackId = transferRepository.createTransaction(getTransferObj(30, 0));
+            transferRepository.rollbackTransaction(rolledBackId);
+            pendingId = transferRepository.createTransaction(getTransferObj(20, 0));
+        }
+
+        //when
+        try (FileLedgerJournal journal = new FileLedgerJournal(path, groupCommit)) {
+            TransferRepository restored = new TransferRepository(BalanceStore.Type.PRIMITIVE, journal);
+
+            //then
+            Assertions.assertEquals(10000000 - 101, restored.getAccountRest().get("4548987854653322"));
+            Assertions.assertEquals(150, restored.getAccountRest().get("4548987854653311"));
+            Assertions.assertEquals(1, restored.getAccountRest().get("7060100000000001"));
+            Assertions.assertEquals(ConfirmType.COMMITED, restored.getTransactions().get(committedId).getCommitCode());
+            Assertions.assertEquals(ConfirmType.ROLLBACK, restored.getTransactions().get(rolledBackId).getCommitCode());
+            Assertions.assertEquals(ConfirmType.UNKNOWN, restored.getTransactions().get(pendingId).getCommitCode());
+            Assertions.assertEquals(20, restored.getHoldAmount("4548987854653322"));
+        }
+    }
+
+    @Test
+    void replay_TruncatesBrokenTail() throws IOException {
+        //given
+        Path path = journalDir;
+        String operationId;
+        try (FileLedgerJournal journal = new FileLedgerJournal(path, true)) {
+            operationId = new TransferRepository(BalanceStore.Type.MAP, journal).createTransaction(getTransferObj(100, 1));
+        }
+        Path segment = path.resolve(String.format("ledger-%020d.journal", 1));
+        long validSize = Files.size(segment);
+        Files.write(segment, new byte[]{0, 0, 0, 42, 2, 7}, StandardOpenOption.APPEND);
+
+        //when
+        try (FileLedgerJournal journal = new FileLedgerJournal(path, true)) {
+            TransferRepository restored = new TransferRepository(BalanceStore.Type.MAP, journal);
+
+            //then
+            Assertions.assertEquals(ConfirmType.UNKNOWN, restored.getTransactions().get(operationId).getCommitCode());
+            Assertions.assertEquals(validSize, Files.size(segment));
+        }
+    }
+
+    @Test
+    void snapshot_CompactsJournalAndReplaysOnlyTail() throws IOException {
+        //given
+        Path path = journalDir;
+        String committedId;
+        String pendingId;
+        String tailId;
+        try (FileLedgerJournal journal = new FileLedgerJournal(path, true)) {
+            TransferRepository transferRepository = new TransferRepository(BalanceStore.Type.MAP, journal);
+            for (int i = 0; i < 100; i++) {
+                String operationId = transferRepository.createTransaction(getTransferObj(10, 0));
+                transferRepository.commitTransaction(transferRepository.getTransactions().get(operationId));
+            }
+            committedId = transferRepository.createTransaction(getTransferObj(100, 1));
+            pendingId = transferRepository.createTransaction(getTransferObj(20, 0));
+
+            //when
+            transferRepository.snapshot();
+            transferRepository.commitTransaction(transferRepository.getTransactions().get(committedId));
+            tailId = transferRepository.createTransaction(getTransferObj(5, 0));
+        }
+
+        //then
+        try (Stream<Path> files = Files.list(path)) {
+            Assertions.assertEquals(List.of("ledger-00000000000000000002.journal", "snapshot-00000000000000000002.snap"),
+                    files.map(file -> file.getFileName().toString()).sorted().toList());
+        }
+        try (FileLedgerJournal journal = new FileLedgerJournal(path, true)) {
+            TransferRepository restored = new TransferRepository(BalanceStore.Type.MAP, journal);
+
+            Assertions.assertEquals(10000000 - 1000 - 101, restored.getAccountRest().get("4548987854653322"));
+            Assertions.assertEquals(50 + 1000 + 100, restored.getAccountRest().get("4548987854653311"));
+            Assertions.assertEquals(1, restored.getAccountRest().get("7060100000000001"));
+            Assertions.assertEquals(ConfirmType.COMMITED, restored.getTransactions().get(committedId).getCommitCode());
+            Assertions.assertEquals(ConfirmType.UNKNOWN, restored.getTransactions().get(pendingId).getCommitCode());
+            Assertions.assertEquals(ConfirmType.UNKNOWN, restored.getTransactions().get(tailId).getCommitCode());
+            Assertions.assertEquals(25, restored.getHoldAmount("4548987854653322"));
+            Assertions.assertEquals(3, restored.getTransactions().size());
+        }
+    }
+
+    @Test
+    void snapshot_WhileTransfersRun_RestoresLiveState() throws Exception {
+        //given
+        Path path = journalDir;
+        long restFrom;
+        long restTo;
+        long restCommission;
+        try (FileLedgerJournal journal = new FileLedgerJournal(path, true)) {
+            TransferRepository transferRepository = new TransferRepository(BalanceStore.Type.MAP, journal);
+            Thread transfers = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    String operationId = transferRepository.createTransaction(getTransferObj(10, 1));
+                    transferRepository.commitTransaction(transferRepository.getTransactions().get(operationId));
+                }
+            });
+
+            //when
+            transfers.start();
+            for (int i = 0; i < 5; i++) {
+                transferRepository.snapshot();
+            }
+            transfers.join();
+            restFrom = transferRepository.getBalance("4548987854653322");
+            restTo = transferRepository.getBalance("4548987854653311");
+            restCommission = transferRepository.getBalance("7060100000000001");
+        }
+
+        //then
+        try (FileLedgerJournal journal = new FileLedgerJournal(path, true)) {
+            TransferRepository restored = new TransferRepository(BalanceStore.Type.MAP, journal);
+
+            Assertions.assertEquals(10000000 - 5500, restFrom);
+            Assertions.assertEquals(restFrom, restored.getBalance("4548987854653322"));
+            Assertions.assertEquals(restTo, restored.getBalance("4548987854653311"));
+            Assertions.assertEquals(restCommission, restored.getBalance("7060100000000001"));
+            Assertions.assertEquals(0, restored.getHoldAmount("4548987854653322"));
+        }
+    }
+
+    private TransferInfo getTransferObj(Integer value, Integer commission) {
+        TransferAmount transferAmount = new TransferAmount();
+        transferAmount.setValue(value);
+        transferAmount.setCurrency("RUR");
+
+        TransferInfo transferInfo = new TransferInfo();
+        transferInfo.setCardFromNumber("4548987854653322");
+        transferInfo.setCardToNumber("4548987854653311");
+        transferInfo.setCardFromCVV("956");
+        transferInfo.setCardFromValidTill("08/30");
+        transferInfo.setAmount(transferAmount);
+        transferInfo.setCommissionAmount(commission);
+        return transferInfo;
+    }
+}
@@ -0,0 +1,143 @@
+package ru.netology.cardtocardservice;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.netology.cardtocardservice.exception.IdempotencyKeyConflict;
+import ru.netology.cardtocardservice.exception.NegativeAccountState;
+import ru.netology.cardtocardservice.service.IdempotencyCache;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class IdempotencyCacheTest {
+
+    @Test
+    public void execute_ConcurrentDuplicates_RunActionOnce() throws Exception {
+        //given
+        IdempotencyCache cache = new IdempotencyCache();
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        //when
+        CompletableFuture<CompletableFuture<String>> first = CompletableFuture.supplyAsync(() -> cache.execute("key", "request-1", () -> {
+            executions.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "operation-1";
+        }), executor);
+        started.await();
+        CompletableFuture<String> duplicate = cache.execute("key", "request-1", () -> "operation-2");
+        release.countDown();
+
+        //then
+        Assertions.assertEquals("operation-1", duplicate.get());
+        Assertions.assertEquals("operation-1", first.get().get());
+        Assertions.assertEquals(1, executions.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void execute_SameKeyAnotherRequest_ThrowsIdempotencyKeyConflict() {
+        //given
+        IdempotencyCache cache = new IdempotencyCache();
+        cache.execute("key", "request-1", () -> "operation-1");
+
+        //when
+        CompletableFuture<String> conflict = cache.execute("key", "request-2", () -> "operation-2");
+
+        //then
+        CompletionException e = Assertions.assertThrows(CompletionException.class, conflict::join);
+        Assertions.assertInstanceOf(IdempotencyKeyConflict.class, e.getCause());
+        Assertions.assertEquals(108, ((IdempotencyKeyConflict) e.getCause()).getId());
+    }
+
+    @Test
+    public void execute_SameKeyRequestWithSameHashCode_ThrowsIdempotencyKeyConflict() {
+        //given
+        IdempotencyCache cache = new IdempotencyCache();
+        Assertions.assertEquals("Aa".hashCode(), "BB".hashCode());
+        cache.execute("key", "Aa", () -> "operation-1");
+
+        //when
+        CompletableFuture<String> conflict = cache.execute("key", "BB", () -> "operation-2");
+
+        //then
+        CompletionException e = Assertions.assertThrows(CompletionException.class, conflict::join);
+        Assertions.assertEquals(108, ((IdempotencyKeyConflict) e.getCause()).getId());
+    }
+
+    @Test
+    public void execute_FailedAction_IsNotCached() {
+        //given
+        IdempotencyCache cache = new IdempotencyCache();
+        CompletableFuture<String> failed = cache.execute("key", "request-1", () -> {
+            throw new NegativeAccountState("Account rest can become negative", 101);
+        });
+
+        //when
+        CompletableFuture<String> retried = cache.execute("key", "request-1", () -> "operation-1");
+
+        //then
+        Assertions.assertTrue(failed.isCompletedExceptionally());
+        Assertions.assertEquals("operation-1", retried.join());
+    }
+
+    @Test
+    public void execute_OverMaxKeysOrTtl_EvictsOldestKeys() throws Exception {
+        //given
+        IdempotencyCache bounded = new IdempotencyCache(Duration.ofHours(1), 100);
+        IdempotencyCache expiring = new IdempotencyCache(Duration.ofMillis(10), 100);
+
+        //when
+        for (int i = 0; i < 1000; i++) {
+            bounded.execute("key-" + i, "request", () -> "operation");
+        }
+        expiring.execute("key", "request", () -> "operation-1");
+        Thread.sleep(20);
+
+        //then
+        Assertions.assertEquals(100, bounded.size());
+        Assertions.assertEquals("operation-2", expiring.execute("key", "request", () -> "operation-2").join());
+        Assertions.assertEquals(1, expiring.size());
+    }
+
+    @Test
+    public void execute_FailedRequestsBurst_KeepsLiveKeys() {
+        //given
+        IdempotencyCache cache = new IdempotencyCache(Duration.ofHours(24), 3);
+        cache.execute("live-1", "request-1", () -> "operation-1");
+        cache.execute("live-2", "request-2", () -> "operation-2");
+        AtomicInteger executions = new AtomicInteger();
+
+        //when
+        for (int i = 0; i < 10; i++) {
+            cache.execute("failed-" + i, "request", () -> {
+                throw new NegativeAccountState("no rest", 101);
+            });
+        }
+        CompletableFuture<String> repeated = cache.execute("live-1", "request-1", () -> {
+            executions.incrementAndGet();
+            return "operation-3";
+        });
+
+        //then
+        Assertions.assertEquals("operation-1", repeated.join());
+        Assertions.assertEquals(0, executions.get());
+        Assertions.assertEquals(2, cache.size());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ru.netology.cardtocardservice;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.netology.cardtocardservice.repository.balance.BalanceStore;
+import ru.netology.cardtocardservice.repository.balance.LongBalanceStore;
+
+import java.util.Map;
+
+public class LongBalanceStoreTest {
+
+    @Test
+    void add_KeepsLongAmountsWithoutOverflow() {
+        //given
+        BalanceStore store = new LongBalanceStore();
+        store.put("4548987854653322", Integer.MAX_VALUE);
+
+        //when
+        long result = store.add("4548987854653322", Integer.MAX_VALUE);
+
+        //then
+        Assertions.assertEquals(2L * Integer.MAX_VALUE, result);
+        Assertions.assertEquals(2L * Integer.MAX_VALUE, store.get("4548987854653322"));
+    }
+
+    @Test
+    void put_GrowsTableAndRemovesWithoutLosingNeighbours() {
+        //given
+        BalanceStore store = new LongBalanceStore(16);
+
+        //when
+        for (int i = 0; i < 100_000; i++) {
+            store.put(String.format("%016d", i * 7919L), i);
+        }
+        for (int i = 0; i < 100_000; i += 2) {
+            store.remove(String.format("%016d", i * 7919L));
+        }
+
+        //then
+        Assertions.assertEquals(50_000, store.size());
+        for (int i = 1; i < 100_000; i += 2) {
+            Assertions.assertEquals(i, store.get(String.format("%016d", i * 7919L)));
+        }
+        Assertions.assertFalse(store.contains("0000000000000000"));
+    }
+
+    @Test
+    void add_RemovedAccount_RevivesItWithDelta() {
+        //given
+        BalanceStore store = new LongBalanceStore();
+        store.put("4548987854653322", 500);
+        store.remove("4548987854653322");
+
+        //when
+        long result = store.add("4548987854653322", 100);
+
+        //then
+        Assertions.assertEquals(100, result);
+        Assertions.assertEquals(100, store.get("4548987854653322"));
+        Assertions.assertEquals(1, store.size());
+        store.add("4548987854653322", 1);
+        Assertions.assertEquals(101, store.get("4548987854653322"));
+    }
+
+    @Test
+    void add_ConcurrentWithTableGrowth_LosesNoUpdates() throws InterruptedException {
+        //given
+        BalanceStore store = new LongBalanceStore(16);
+        store.put("4548987854653322", 0);
+        Thread adder = new Thread(() -> {
+            for (int i = 0; i < 200_000; i++) {
+                store.add("4548987854653322", 1);
+            }
+        });
+
+        //when
+        adder.start();
+        for (int i = 1; i <= 50_000; i++) {
+            store.put(String.format("%016d", i * 7919L), i);
+        }
+        adder.join();
+
+        //then
+        Assertions.assertEquals(200_000, store.get("4548987854653322"));
+        Assertions.assertEquals(50_001, store.size());
+        Assertions.assertEquals(50_000, store.get(String.format("%016d", 50_000 * 7919L)));
+    }
+
+    @Test
+    void asMap_ReturnsReadOnlyView() {
+        //given
+        BalanceStore store = new LongBalanceStore();
+        store.put("0000000000000001", 50);
+
+        //when
+        Map<String, Integer> view = store.asMap();
+
+        //then
+        Assertions.assertEquals(50, view.get("0000000000000001"));
+        Assertions.assertNull(view.get("not a card"));
+        Assertions.assertEquals(Map.of("0000000000000001", 50), Map.copyOf(view));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> view.put("0000000000000002", 1));
+    }
+}
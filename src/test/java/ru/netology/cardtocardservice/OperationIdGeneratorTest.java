@@ -0,0 +1,98 @@
+package ru.netology.cardtocardservice;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.netology.cardtocardservice.repository.id.OperationIdGenerator;
+import ru.netology.cardtocardservice.repository.id.SnowflakeOperationIdGenerator;
+import ru.netology.cardtocardservice.repository.id.UuidOperationIdGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class OperationIdGeneratorTest {
+
+    @Test
+    public void snowflake_nextId_MonotonicAndRoundTrip() {
+        //given
+        SnowflakeOperationIdGenerator generator = new SnowflakeOperationIdGenerator(5);
+
+        //when
+        String previous = generator.nextId();
+        for (int i = 0; i < 100000; i++) {
+            String current = generator.nextId();
+
+            //then
+            Assertions.assertEquals(SnowflakeOperationIdGenerator.ID_LENGTH, current.length());
+            Assertions.assertTrue(current.compareTo(previous) > 0);
+            Assertions.assertEquals(current, SnowflakeOperationIdGenerator.encode(SnowflakeOperationIdGenerator.decode(current)));
+            Assertions.assertEquals(5, (SnowflakeOperationIdGenerator.decode(current) >>> 12) & 1023);
+            previous = current;
+        }
+    }
+
+    @Test
+    public void snowflake_nextId_UniqueAcrossThreadsAndNodes() throws Exception {
+        //given
+        SnowflakeOperationIdGenerator node0 = new SnowflakeOperationIdGenerator(0);
+        SnowflakeOperationIdGenerator node1 = new SnowflakeOperationIdGenerator(1);
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        //when
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            SnowflakeOperationIdGenerator generator = i % 2 == 0 ? node0 : node1;
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 50000; j++) {
+                    ids.add(generator.nextId());
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        //then
+        Assertions.assertEquals(200000, ids.size());
+    }
+
+    @Test
+    public void snowflake_observe_NextIdAfterRecovered() {
+        //given
+        SnowflakeOperationIdGenerator generator = new SnowflakeOperationIdGenerator(0);
+        long recovered = generator.nextKey() + (60_000L << 22);
+
+        //when
+        generator.observe(recovered);
+
+        //then
+        Assertions.assertTrue(generator.nextKey() > recovered);
+    }
+
+    @Test
+    public void uuid_nextId_OrderedAndParsedToKey() {
+        //given
+        UuidOperationIdGenerator generator = new UuidOperationIdGenerator(7);
+
+        //when
+        String previous = generator.nextId();
+        for (int i = 0; i < 10000; i++) {
+            String current = generator.nextId();
+            long key = OperationIdGenerator.parse(current);
+
+            //then
+            Assertions.assertEquals(UuidOperationIdGenerator.ID_LENGTH, current.length());
+            Assertions.assertTrue(current.compareTo(previous) > 0);
+            Assertions.assertEquals(current, generator.format(key));
+            Assertions.assertEquals(7, SnowflakeOperationIdGenerator.nodeOf(key));
+            previous = current;
+        }
+        Assertions.assertEquals(-1L, OperationIdGenerator.parse("4745f8b8-9a35-41a2-a865-949fd2e52ee2"));
+    }
+}
@@ -0,0 +1,134 @@
+package ru.netology.cardtocardservice;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import ru.netology.cardtocardservice.advice.ExceptionAdviceHandler;
+import ru.netology.cardtocardservice.advice.ReactiveValidationExceptionHandler;
+import ru.netology.cardtocardservice.advice.ValidationExceptionHandler;
+import ru.netology.cardtocardservice.controler.ReactiveTransferControler;
+import ru.netology.cardtocardservice.domain.OperationInfo;
+import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.repository.TransferRepository;
+import ru.netology.cardtocardservice.service.ReactiveTransferService;
+import ru.netology.cardtocardservice.service.TransferService;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ReactiveTransferControlerTest {
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        TransferService transferService = new TransferService(new TransferRepository());
+        webTestClient = WebTestClient
+                .bindToController(new ReactiveTransferControler(new ReactiveTransferService(transferService)))
+                .controllerAdvice(new ExceptionAdviceHandler(), new ValidationExceptionHandler(), new ReactiveValidationExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void doTransfer_ReturnsOperationId() {
+        //given
+        String request = getTransferJson("581");
+
+        //when
+        //then
+        webTestClient.post().uri("/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.operationId").isNotEmpty();
+    }
+
+    @Test
+    void doTransfer_InvalidRequest_ReturnsValidationError() {
+        //given
+        String request = getTransferJson("58");
+
+        //when
+        //then
+        webTestClient.post().uri("/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(107)
+                .jsonPath("$.message").isEqualTo("CVV может быть только числовым и должен состоять из 3 симвлов");
+    }
+
+    @Test
+    void commit_UnknownOperation_ReturnsOperationNotExist() {
+        //given
+        String request = "{\"operationId\":\"7777\",\"code\":\"0000\"}";
+
+        //when
+        //then
+        webTestClient.post().uri("/confirmOperation")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.id").isEqualTo(103);
+    }
+
+    @Test
+    void doTransfer_RepeatedIdempotencyKey_ReturnsSameOperationId() {
+        //given
+        String request = getTransferJson("581");
+        String operationId = new String(webTestClient.post().uri("/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Idempotency-Key", "retry-1")
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().returnResult().getResponseBody());
+
+        //when
+        //then
+        webTestClient.post().uri("/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Idempotency-Key", "retry-1")
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().json(operationId);
+    }
+
+    @Test
+    void doTransaction_InMemoryStorage_RunsOffCallerThread() {
+        //given
+        TransferService transferService = Mockito.mock(TransferService.class);
+        AtomicReference<String> transferThread = new AtomicReference<>();
+        AtomicReference<String> confirmThread = new AtomicReference<>();
+        Mockito.when(transferService.doTransactionAsync(ArgumentMatchers.any(), ArgumentMatchers.any())).thenAnswer(invocation -> {
+            transferThread.set(Thread.currentThread().getName());
+            return CompletableFuture.completedFuture("1");
+        });
+        Mockito.when(transferService.doConfirm(ArgumentMatchers.any())).thenAnswer(invocation -> {
+            confirmThread.set(Thread.currentThread().getName());
+            return "1";
+        });
+        ReactiveTransferService reactiveService = new ReactiveTransferService(transferService);
+
+        //when
+        reactiveService.doTransaction(new TransferInfo(), null).block();
+        reactiveService.doConfirm(new OperationInfo()).block();
+
+        //then
+        Assertions.assertTrue(transferThread.get().startsWith("boundedElastic"), transferThread.get());
+        Assertions.assertTrue(confirmThread.get().startsWith("boundedElastic"), confirmThread.get());
+    }
+
+    private String getTransferJson(String cvv) {
+        return "{\"cardFromNumber\":\"4548987854653322\",\"cardFromValidTill\":\"12/99\",\"cardFromCVV\":\"" + cvv + "\"," +
+                "\"cardToNumber\":\"4548987854653311\",\"amount\":{\"value\":500,\"currency\":\"RUR\"}}";
+    }
+}
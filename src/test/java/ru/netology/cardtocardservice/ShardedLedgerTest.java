@@ -0,0 +1,361 @@
+package ru.netology.cardtocardservice;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.netology.cardtocardservice.domain.AccountTransaction;
+import ru.netology.cardtocardservice.domain.ConfirmType;
+import ru.netology.cardtocardservice.domain.OperationInfo;
+import ru.netology.cardtocardservice.domain.TransferAmount;
+import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.exception.AccountNotExist;
+import ru.netology.cardtocardservice.exception.NegativeAccountState;
+import ru.netology.cardtocardservice.exception.OperationNotExist;
+import ru.netology.cardtocardservice.repository.HoldExpiryWheel;
+import ru.netology.cardtocardservice.repository.TransferRepository;
+import ru.netology.cardtocardservice.repository.balance.BalanceStore;
+import ru.netology.cardtocardservice.repository.id.OperationIdGenerator;
+import ru.netology.cardtocardservice.repository.id.SnowflakeOperationIdGenerator;
+import ru.netology.cardtocardservice.repository.shard.ShardRing;
+import ru.netology.cardtocardservice.repository.shard.ShardedLedger;
+import ru.netology.cardtocardservice.service.TransferService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ShardedLedgerTest {
+    private static final int SHARDS = 4;
+
+    private ShardedLedger ledger;
+    private TransferService transferService;
+    private String cardFrom;
+    private String cardToOtherShard;
+    private String cardToSameShard;
+
+    @BeforeEach
+    void setUp() {
+        ledger = new ShardedLedger(SHARDS);
+        transferService = new TransferService(ledger);
+
+        cardFrom = "4548987854650000";
+        for (int i = 1; cardToOtherShard == null || cardToSameShard == null; i++) {
+            String card = String.format("45489878546%05d", i);
+            if (ledger.shardOf(card) == ledger.shardOf(cardFrom)) {
+                cardToSameShard = cardToSameShard == null ? card : cardToSameShard;
+            } else {
+                cardToOtherShard = cardToOtherShard == null ? card : cardToOtherShard;
+            }
+        }
+        ledger.openAccount(cardFrom, 10000);
+        ledger.openAccount(cardToOtherShard, 0);
+        ledger.openAccount(cardToSameShard, 0);
+    }
+
+    @Test
+    void doConfirm_CrossShardTransfer_CommitsBothShards() {
+        //given
+        String operationId = transferService.doTransaction(getTransferObj(cardToOtherShard, 1000));
+
+        //when
+        transferService.doConfirm(getOperationObj(operationId, "0000"));
+
+        //then
+        Assertions.assertEquals(10000 - 1010, ledger.getAccountRest().get(cardFrom));
+        Assertions.assertEquals(1000, ledger.getAccountRest().get(cardToOtherShard));
+        Assertions.assertEquals(10, ledger.getAccountRest().get("7060100000000001"));
+        Assertions.assertEquals(0, ledger.getHoldAmount(cardFrom));
+        Assertions.assertEquals(ConfirmType.COMMITED, ledger.getTransactions().get(operationId).getCommitCode());
+        Assertions.assertEquals(SHARDS * ShardedLedger.TRANSIT_LIQUIDITY, transitTotal());
+    }
+
+    @Test
+    void doConfirm_CrossShardRollback_RestoresBothShards() {
+        //given
+        String operationId = transferService.doTransaction(getTransferObj(cardToOtherShard, 1000));
+
+        //when
+        transferService.doConfirm(getOperationObj(operationId, "0001"));
+
+        //then
+        Assertions.assertEquals(10000, ledger.getAccountRest().get(cardFrom));
+        Assertions.assertEquals(0, ledger.getAccountRest().get(cardToOtherShard));
+        Assertions.assertEquals(0, ledger.getHoldAmount(cardFrom));
+        Assertions.assertEquals(0, ledger.getShard(ledger.shardOf(cardToOtherShard)).getHoldAmount(ShardedLedger.TRANSIT_ACCOUNT));
+        Assertions.assertThrows(OperationNotExist.class, () -> transferService.doConfirm(getOperationObj(operationId, "0000")));
+        Assertions.assertEquals(SHARDS * ShardedLedger.TRANSIT_LIQUIDITY, transitTotal());
+    }
+
+    @Test
+    void commitTransaction_CrossShardDebitRejected_RollsBackCreditShard() {
+        //given
+        TransferInfo transferInfo = getTransferObj(cardToOtherShard, 9000);
+        transferInfo.setCommissionAmount(90);
+        String operationId = ledger.createTransaction(transferInfo);
+        //списание с карты отправителя на том же шарде делает ее остаток недостаточным
+        ledger.commitTransaction(ledger.getTransactions().get(ledger.createTransaction(getLocalTransfer(5000))));
+
+        //when
+        Assertions.assertThrows(NegativeAccountState.class,
+                () -> ledger.commitTransaction(ledger.getTransactions().get(operationId)));
+
+        //then
+        Assertions.assertEquals(ConfirmType.ROLLBACK, ledger.getTransactions().get(operationId).getCommitCode());
+        Assertions.assertEquals(0, ledger.getAccountRest().get(cardToOtherShard));
+        Assertions.assertEquals(0, ledger.getShard(ledger.shardOf(cardToOtherShard)).getHoldAmount(ShardedLedger.TRANSIT_ACCOUNT));
+        Assertions.assertEquals(SHARDS * ShardedLedger.TRANSIT_LIQUIDITY, transitTotal());
+    }
+
+    @Test
+    void commitTransaction_CreditLegNotCompleted_KeepsItPendingWithoutError() {
+        //given
+        String completedId = transferService.doTransaction(getTransferObj(cardToOtherShard, 1000));
+        String failedId = transferService.doTransaction(getTransferObj(cardToOtherShard, 2000));
+        TransferRepository creditShard = ledger.getShard(ledger.shardOf(cardToOtherShard));
+        //первое зачисление уже завершено параллельным запросом, второе отменено и не может быть подтверждено
+        creditShard.commitTransaction(creditLeg(creditShard, 1000));
+        creditShard.rollbackTransaction(creditLeg(creditShard, 2000).getOperationId());
+
+        //when
+        transferService.doConfirm(getOperationObj(completedId, "0000"));
+        transferService.doConfirm(getOperationObj(failedId, "0000"));
+
+        //then
+        Assertions.assertEquals(ConfirmType.COMMITED, ledger.getTransactions().get(completedId).getCommitCode());
+        Assertions.assertEquals(ConfirmType.COMMITED, ledger.getTransactions().get(failedId).getCommitCode());
+        Assertions.assertEquals(1, ledger.getPendingCreditLegCount());
+        Assertions.assertEquals(0, ledger.completeCreditLegs());
+        Assertions.assertEquals(1, ledger.getPendingCreditLegCount());
+    }
+
+    @Test
+    void createTransaction_ConcurrentCrossShardTransfers_DoNotOverdrawTransit() throws Exception {
+        //given
+        ShardedLedger liquidLedger = new ShardedLedger(SHARDS);
+        liquidLedger.openAccount(cardFrom, 2_000_000_000L);
+        liquidLedger.openAccount(cardToOtherShard, 0);
+        int amount = 300_000_000;
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        //when
+        for (int i = 0; i < 6; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                TransferInfo transferInfo = getTransferObj(cardToOtherShard, amount);
+                transferInfo.setCommissionAmount(0);
+                try {
+                    liquidLedger.createTransaction(transferInfo);
+                    return true;
+                } catch (NegativeAccountState e) {
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+        int created = 0;
+        for (Future<Boolean> result : results) {
+            created += result.get() ? 1 : 0;
+        }
+        executor.shutdown();
+
+        //then
+        Assertions.assertEquals(3, created);
+        Assertions.assertEquals(3L * amount,
+                liquidLedger.getShard(liquidLedger.shardOf(cardToOtherShard)).getHoldAmount(ShardedLedger.TRANSIT_ACCOUNT));
+    }
+
+    @Test
+    void settleTransit_DepletedCreditShard_RestoresLiquidity() {
+        //given
+        ledger = new ShardedLedger(SHARDS);
+        ledger.openAccount(cardFrom, 2_000_000_000L);
+        ledger.openAccount(cardToOtherShard, 0);
+        TransferRepository creditShard = ledger.getShard(ledger.shardOf(cardToOtherShard));
+        TransferRepository debitShard = ledger.getShard(ledger.shardOf(cardFrom));
+        int amount = 600_000_000;
+        ledger.commitTransaction(ledger.getTransactions().get(ledger.createTransaction(getLiquidTransfer(cardFrom, cardToOtherShard, amount))));
+        NegativeAccountState depleted = Assertions.assertThrows(NegativeAccountState.class,
+                () -> ledger.createTransaction(getLiquidTransfer(cardFrom, cardToOtherShard, amount)));
+
+        //when
+        long moved = ledger.settleTransit();
+        String operationId = ledger.createTransaction(getLiquidTransfer(cardFrom, cardToOtherShard, amount));
+        ledger.commitTransaction(ledger.getTransactions().get(operationId));
+
+        //then
+        Assertions.assertEquals(101, depleted.getId());
+        Assertions.assertEquals(amount, moved);
+        Assertions.assertEquals(2L * amount, ledger.getBalance(cardToOtherShard));
+        Assertions.assertEquals(ShardedLedger.TRANSIT_LIQUIDITY - amount, creditShard.getBalance(ShardedLedger.TRANSIT_ACCOUNT));
+        Assertions.assertEquals(ShardedLedger.TRANSIT_LIQUIDITY + amount, debitShard.getBalance(ShardedLedger.TRANSIT_ACCOUNT));
+        Assertions.assertEquals(SHARDS * ShardedLedger.TRANSIT_LIQUIDITY, transitTotal());
+    }
+
+    @Test
+    void settleTransit_HeldSurplus_StaysForPendingCreditLeg() {
+        //given
+        ledger = new ShardedLedger(SHARDS);
+        ledger.openAccount(cardFrom, 1_000_000_000L);
+        ledger.openAccount(cardToOtherShard, 2_000_000_000L);
+        TransferRepository shard = ledger.getShard(ledger.shardOf(cardFrom));
+        ledger.commitTransaction(ledger.getTransactions().get(
+                ledger.createTransaction(getLiquidTransfer(cardFrom, cardToOtherShard, 900_000_000))));
+        String pendingId = ledger.createTransaction(getLiquidTransfer(cardToOtherShard, cardFrom, 1_500_000_000));
+
+        //when
+        long moved = ledger.settleTransit();
+        ledger.commitTransaction(ledger.getTransactions().get(pendingId));
+
+        //then
+        Assertions.assertEquals(400_000_000L - 1, moved);
+        Assertions.assertEquals(1L, shard.getBalance(ShardedLedger.TRANSIT_ACCOUNT));
+        Assertions.assertEquals(0L, shard.getHoldAmount(ShardedLedger.TRANSIT_ACCOUNT));
+        Assertions.assertEquals(1_600_000_000L, ledger.getBalance(cardFrom));
+        Assertions.assertEquals(0, ledger.getPendingCreditLegCount());
+        Assertions.assertEquals(SHARDS * ShardedLedger.TRANSIT_LIQUIDITY, transitTotal());
+    }
+
+    @Test
+    void archiveFinalized_HotWindowElapsed_MovesShardTransactionsToArchive() throws Exception {
+        //given
+        ShardedLedger archivingLedger = new ShardedLedger(BalanceStore.Type.MAP, HoldExpiryWheel.DISABLED, SHARDS, 64,
+                OperationIdGenerator.Type.SNOWFLAKE, 0, Duration.ofMillis(1));
+        archivingLedger.openAccount(cardFrom, 10000);
+        archivingLedger.openAccount(cardToOtherShard, 0);
+        TransferService archivingService = new TransferService(archivingLedger);
+        String operationId = archivingService.doTransaction(getTransferObj(cardToOtherShard, 1000));
+        archivingService.doConfirm(getOperationObj(operationId, "0000"));
+        Thread.sleep(5);
+
+        //when
+        int moved = archivingLedger.archiveFinalized();
+
+        //then
+        Assertions.assertEquals(2, moved);
+        Assertions.assertNull(archivingLedger.getTransactions().get(operationId));
+        Assertions.assertEquals(ConfirmType.COMMITED, archivingLedger.getArchivedState(operationId));
+        Assertions.assertEquals(1000, archivingLedger.getBalance(cardToOtherShard));
+    }
+
+    @Test
+    void doTransaction_UnknownCard_ThrowsAccountNotExist() {
+        //given
+        String unknownCard = "4548987854651111";
+
+        //when
+        AccountNotExist unknownFrom = Assertions.assertThrows(AccountNotExist.class,
+                () -> transferService.doTransaction(getTransferObj(unknownCard, cardToOtherShard, 1000)));
+        AccountNotExist unknownTo = Assertions.assertThrows(AccountNotExist.class,
+                () -> transferService.doTransaction(getTransferObj(unknownCard, 1000)));
+
+        //then
+        Assertions.assertEquals(99, unknownFrom.getId());
+        Assertions.assertEquals(100, unknownTo.getId());
+        Assertions.assertNull(ledger.getAccountRest().get(unknownCard));
+        Assertions.assertFalse(ledger.getAccountRest().containsKey(unknownCard));
+    }
+
+    @Test
+    void createTransaction_NodeIdCombinedWithShard_RoutesByKey() {
+        //given
+        ShardedLedger nodeLedger = new ShardedLedger(BalanceStore.Type.MAP, HoldExpiryWheel.DISABLED, SHARDS, 64,
+                OperationIdGenerator.Type.SNOWFLAKE, 3);
+        nodeLedger.openAccount(cardFrom, 10000);
+        nodeLedger.openAccount(cardToOtherShard, 0);
+
+        //when
+        String operationId = new TransferService(nodeLedger).doTransaction(getTransferObj(cardToOtherShard, 1000));
+
+        //then
+        Assertions.assertEquals(3 * SHARDS + nodeLedger.shardOf(cardFrom),
+                SnowflakeOperationIdGenerator.nodeOf(OperationIdGenerator.parse(operationId)));
+        Assertions.assertSame(nodeLedger.getTransactions().get(operationId),
+                nodeLedger.getShard(nodeLedger.shardOf(cardFrom)).getTransactions().get(operationId));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ShardedLedger(BalanceStore.Type.MAP,
+                HoldExpiryWheel.DISABLED, SHARDS, 64, OperationIdGenerator.Type.SNOWFLAKE, 256));
+    }
+
+    @Test
+    void shardRing_AddShard_MovesOnlyPartOfCards() {
+        //given
+        ShardRing ring = new ShardRing(4, 64);
+        ShardRing grown = new ShardRing(5, 64);
+        int[] counts = new int[4];
+        int moved = 0;
+
+        //when
+        for (int i = 0; i < 20000; i++) {
+            String card = String.format("4%015d", i * 7919L);
+            counts[ring.shardOf(card)]++;
+            if (ring.shardOf(card) != grown.shardOf(card)) {
+                moved++;
+            }
+        }
+
+        //then
+        for (int count : counts) {
+            Assertions.assertTrue(count > 20000 / 4 * 0.7 && count < 20000 / 4 * 1.3);
+        }
+        //при равномерном распределении переезжает около 1/5 карт
+        Assertions.assertTrue(moved < 20000 * 0.3);
+    }
+
+    private long transitTotal() {
+        long total = 0;
+        for (int i = 0; i < SHARDS; i++) {
+            total += ledger.getShard(i).getAccountRest().get(ShardedLedger.TRANSIT_ACCOUNT);
+        }
+        return total;
+    }
+
+    private AccountTransaction creditLeg(TransferRepository shard, int amount) {
+        return shard.getTransactions().values().stream()
+                .filter(transaction -> ShardedLedger.TRANSIT_ACCOUNT.equals(transaction.getCardFromNumber()))
+                .filter(transaction -> transaction.getAmount().getValue() == amount)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private TransferInfo getLocalTransfer(Integer value) {
+        TransferInfo transferInfo = getTransferObj(cardToSameShard, value);
+        transferInfo.setCommissionAmount(0);
+        return transferInfo;
+    }
+
+    private TransferInfo getLiquidTransfer(String cardFrom, String cardTo, Integer value) {
+        TransferInfo transferInfo = getTransferObj(cardFrom, cardTo, value);
+        transferInfo.setCommissionAmount(0);
+        return transferInfo;
+    }
+
+    private TransferInfo getTransferObj(String cardTo, Integer value) {
+        return getTransferObj(cardFrom, cardTo, value);
+    }
+
+    private TransferInfo getTransferObj(String cardFrom, String cardTo, Integer value) {
+        TransferAmount transferAmount = new TransferAmount();
+        transferAmount.setValue(value);
+        transferAmount.setCurrency("RUR");
+
+        TransferInfo transferInfo = new TransferInfo();
+        transferInfo.setCardFromNumber(cardFrom);
+        transferInfo.setCardToNumber(cardTo);
+        transferInfo.setCardFromCVV("956");
+        transferInfo.setCardFromValidTill("08/30");
+        transferInfo.setAmount(transferAmount);
+        return transferInfo;
+    }
+
+    private OperationInfo getOperationObj(String operationId, String code) {
+        OperationInfo operationInfo = new OperationInfo();
+        operationInfo.setOperationId(operationId);
+        operationInfo.setCode(code);
+        return operationInfo;
+    }
+}
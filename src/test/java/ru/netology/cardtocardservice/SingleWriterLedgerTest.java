@@ -0,0 +1,179 @@
+package ru.netology.cardtocardservice;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.netology.cardtocardservice.domain.AccountTransaction;
+import ru.netology.cardtocardservice.domain.ConfirmType;
+import ru.netology.cardtocardservice.domain.TransferAmount;
+import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.exception.OperationNotExist;
+import ru.netology.cardtocardservice.exception.TransferException;
+import ru.netology.cardtocardservice.repository.HoldExpiryWheel;
+import ru.netology.cardtocardservice.repository.balance.BalanceStore;
+import ru.netology.cardtocardservice.repository.journal.LedgerJournal;
+import ru.netology.cardtocardservice.repository.ring.SingleWriterLedger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class SingleWriterLedgerTest {
+    private SingleWriterLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        //маленькое кольцо, чтобы публикующие потоки упирались в его заполнение
+        ledger = new SingleWriterLedger(BalanceStore.Type.MAP, LedgerJournal.NONE, HoldExpiryWheel.DISABLED, 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ledger.close();
+    }
+
+    @Test
+    void commitTransaction_ReleasesHoldAndMovesAmount() {
+        //given
+        String operationId = ledger.createTransaction(getTransferObj(100, 1));
+        long holdAmount = ledger.getHoldAmount("4548987854653322");
+
+        //when
+        ledger.commitTransaction(ledger.getTransactions().get(operationId));
+
+        //then
+        Assertions.assertEquals(101, holdAmount);
+        Assertions.assertEquals(0, ledger.getHoldAmount("4548987854653322"));
+        Assertions.assertEquals(10000000 - 101, ledger.getAccountRest().get("4548987854653322"));
+        Assertions.assertEquals(150, ledger.getAccountRest().get("4548987854653311"));
+        Assertions.assertEquals(1, ledger.getAccountRest().get("7060100000000001"));
+    }
+
+    @Test
+    void rollbackTransaction_SecondRollbackReturnsAlreadyRollback() {
+        //given
+        String operationId = ledger.createTransaction(getTransferObj(100, 1));
+
+        //when
+        ledger.rollbackTransaction(operationId);
+        OperationNotExist exception = Assertions.assertThrows(OperationNotExist.class,
+                () -> ledger.rollbackTransaction(operationId));
+
+        //then
+        Assertions.assertEquals(105, exception.getId());
+        Assertions.assertEquals(0, ledger.getHoldAmount("4548987854653322"));
+        Assertions.assertEquals(10000000, ledger.getAccountRest().get("4548987854653322"));
+    }
+
+    @Test
+    void confirmTransactionsAsync_ReturnsErrorsInOrder() {
+        //given
+        List<String> operationIds = ledger.createTransactionsAsync(
+                List.of(getTransferObj(100, 1), getTransferObj(9999999, 0))).join();
+        Map<String, AccountTransaction> transactions = ledger.getTransactions();
+        AccountTransaction commit = transactions.get(operationIds.get(0));
+        AccountTransaction tooLarge = transactions.get(operationIds.get(1));
+
+        //when
+        CompletableFuture<List<TransferException>> result = ledger.confirmTransactionsAsync(
+                List.of(commit, commit, tooLarge),
+                List.of(ConfirmType.COMMITED, ConfirmType.COMMITED, ConfirmType.COMMITED));
+        List<TransferException> errors = result.join();
+
+        //then
+        Assertions.assertNull(errors.get(0));
+        Assertions.assertEquals(104, errors.get(1).getId());
+        Assertions.assertEquals(102, errors.get(2).getId());
+        Assertions.assertEquals(ConfirmType.ROLLBACK, tooLarge.getCommitCode());
+        Assertions.assertEquals(0, ledger.getHoldAmount("4548987854653322"));
+    }
+
+    @Test
+    void commitTransaction_ConcurrentTransfersKeepTotalBalance() throws Exception {
+        //given
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        //when
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            futures.add(executor.submit(() -> {
+                String operationId = ledger.createTransaction(getTransferObj(10, 1));
+                return ledger.commitTransaction(ledger.getTransactions().get(operationId));
+            }));
+        }
+        List<String> committed = new ArrayList<>();
+        for (Future<String> future : futures) {
+            committed.add(future.get());
+        }
+        executor.shutdown();
+
+        //then
+        Assertions.assertEquals(1000, Collections.frequency(
+                ledger.getTransactions().values().stream().map(AccountTransaction::getCommitCode).toList(), ConfirmType.COMMITED));
+        Assertions.assertEquals(1000, committed.size());
+        Assertions.assertEquals(10000000 - 11000, ledger.getAccountRest().get("4548987854653322"));
+        Assertions.assertEquals(50 + 10000, ledger.getAccountRest().get("4548987854653311"));
+        Assertions.assertEquals(1000, ledger.getAccountRest().get("7060100000000001"));
+        Assertions.assertEquals(0, ledger.getHoldAmount("4548987854653322"));
+    }
+
+    @Test
+    void openAccounts_OpensNewAndClosesUntouchedAccounts() {
+        //given
+        String[] accounts = {"4111111111111111", "4548987854653322"};
+        long[] amounts = {500, 1};
+
+        //when
+        boolean[] openedFlags = new boolean[accounts.length];
+        int opened = ledger.openAccounts(accounts, amounts, openedFlags);
+        int closed = ledger.closeAccounts(accounts, amounts);
+
+        //then
+        Assertions.assertEquals(1, opened);
+        Assertions.assertArrayEquals(new boolean[]{true, false}, openedFlags);
+        Assertions.assertEquals(1, closed);
+        Assertions.assertNull(ledger.getAccountRest().get("4111111111111111"));
+        Assertions.assertEquals(10000000, ledger.getAccountRest().get("4548987854653322"));
+    }
+
+    @Test
+    void close_CompletesPublishedCommandsAndRejectsNewOnes() {
+        //given
+        List<CompletableFuture<List<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(ledger.createTransactionsAsync(List.of(getTransferObj(10, 0))));
+        }
+
+        //when
+        ledger.close();
+
+        //then
+        for (CompletableFuture<List<String>> future : futures) {
+            Assertions.assertTrue(future.isDone());
+            Assertions.assertEquals(1, future.join().size());
+        }
+        Assertions.assertEquals(1000, ledger.getHoldAmount("4548987854653322"));
+        Assertions.assertThrows(IllegalStateException.class, () -> ledger.createTransaction(getTransferObj(10, 0)));
+    }
+
+    private TransferInfo getTransferObj(Integer value, Integer commission) {
+        TransferAmount transferAmount = new TransferAmount();
+        transferAmount.setValue(value);
+        transferAmount.setCurrency("RUR");
+
+        TransferInfo transferInfo = new TransferInfo();
+        transferInfo.setCardFromNumber("4548987854653322");
+        transferInfo.setCardToNumber("4548987854653311");
+        transferInfo.setCardFromCVV("956");
+        transferInfo.setCardFromValidTill("08/30");
+        transferInfo.setAmount(transferAmount);
+        transferInfo.setCommissionAmount(commission);
+        return transferInfo;
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import ru.netology.cardtocardservice.controler.TransferControler;
@@ -13,6 +14,7 @@ import ru.netology.cardtocardservice.domain.OperationInfo;
 import ru.netology.cardtocardservice.domain.TransactionInfo;
 import ru.netology.cardtocardservice.domain.TransferAmount;
 import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.metrics.TransferMetrics;
 import ru.netology.cardtocardservice.service.TransferService;
 
 import java.text.ParseException;
@@ -22,6 +24,9 @@ public class TransferControlerTest {
     @Mock
     TransferService transferService;
 
+    @Spy
+    TransferMetrics transferMetrics = TransferMetrics.DISABLED;
+
     @InjectMocks
     TransferControler transferControler;
 
@@ -30,12 +35,12 @@ public class TransferControlerTest {
 
         //given
         TransferInfo transferInfo = getTransferObj();
-        Mockito.doReturn("78900987").when(this.transferService).doTransaction(transferInfo);
+        Mockito.doReturn("78900987").when(this.transferService).doTransaction(transferInfo, null);
 
         String expected = "78900987";
 
         //when
-        var responseEntity = this.transferControler.doTransfer(transferInfo);
+        var responseEntity = this.transferControler.doTransfer(transferInfo, null);
 
         //then
         Assertions.assertNotNull(responseEntity);
@@ -0,0 +1,93 @@
+package ru.netology.cardtocardservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+import ru.netology.cardtocardservice.controler.TransferMessageConverter;
+import ru.netology.cardtocardservice.domain.OperationInfo;
+import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.exception.RequestFieldInvalid;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+public class TransferMessageConverterTest {
+    private static final String VALID_TRANSFER = "{\"cardFromNumber\":\"4548987854653322\",\"cardFromValidTill\":\"08/30\"," +
+            "\"cardFromCVV\":\"581\",\"cardToNumber\":\"4548987854653311\",\"amount\":{\"value\":500,\"currency\":\"RUR\"}}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    private final TransferMessageConverter converter = new TransferMessageConverter(objectMapper.getFactory(), validator);
+
+    @Test
+    public void read_ValidTransfer_EqualsObjectMapperResult() throws Exception {
+        //given
+        String body = VALID_TRANSFER.replace("}}", "},\"unknown\":[1,{\"a\":2}]}");
+
+        //when
+        Object result = converter.read(TransferInfo.class, input(body));
+
+        //then
+        Assertions.assertEquals(objectMapper.readValue(VALID_TRANSFER, TransferInfo.class), result);
+    }
+
+    @Test
+    public void read_InvalidFields_SameMessageAsBeanValidation() throws Exception {
+        //given
+        List<String> bodies = List.of(
+                VALID_TRANSFER.replace("4548987854653322", "45489878546533"),
+                VALID_TRANSFER.replace("4548987854653311", "454898785465331A"),
+                VALID_TRANSFER.replace("08/30", "13/30"),
+                VALID_TRANSFER.replace("\"581\"", "\"58\""),
+                VALID_TRANSFER.replace("RUR", "USD"),
+                VALID_TRANSFER.replace("500", "-1"),
+                VALID_TRANSFER.replace(",\"cardFromCVV\":\"581\"", ""),
+                VALID_TRANSFER.replace(",\"amount\":{\"value\":500,\"currency\":\"RUR\"}", ""));
+
+        for (String body : bodies) {
+            //when
+            RequestFieldInvalid e = Assertions.assertThrows(RequestFieldInvalid.class,
+                    () -> converter.read(TransferInfo.class, input(body)), body);
+
+            //then
+            Assertions.assertEquals(107, e.getId());
+            Assertions.assertEquals(beanValidationMessage(objectMapper.readValue(body, TransferInfo.class)), e.getMessage(), body);
+        }
+    }
+
+    @Test
+    public void read_OperationInfo_ChecksRequiredFieldsAndSyntax() throws Exception {
+        //given
+        String valid = "{\"operationId\":\"01KQ3Z7M0G000\",\"code\":\"0000\"}";
+        String missingCode = "{\"operationId\":\"01KQ3Z7M0G000\"}";
+
+        //when
+        Object result = converter.read(OperationInfo.class, input(valid));
+        RequestFieldInvalid e = Assertions.assertThrows(RequestFieldInvalid.class,
+                () -> converter.read(OperationInfo.class, input(missingCode)));
+
+        //then
+        Assertions.assertEquals(objectMapper.readValue(valid, OperationInfo.class), result);
+        Assertions.assertEquals(beanValidationMessage(objectMapper.readValue(missingCode, OperationInfo.class)), e.getMessage());
+        Assertions.assertThrows(HttpMessageNotReadableException.class,
+                () -> converter.read(OperationInfo.class, input("{\"operationId\":")));
+        Assertions.assertThrows(HttpMessageNotReadableException.class,
+                () -> converter.read(OperationInfo.class, input("{\"operationId\":{\"id\":1}}")));
+    }
+
+    private <T> String beanValidationMessage(T target) {
+        Set<ConstraintViolation<T>> violations = validator.validate(target);
+        Assertions.assertEquals(1, violations.size());
+        return violations.iterator().next().getMessage();
+    }
+
+    private static MockHttpInputMessage input(String body) {
+        return new MockHttpInputMessage(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
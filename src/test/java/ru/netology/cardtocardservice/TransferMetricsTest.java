@@ -0,0 +1,125 @@
+package ru.netology.cardtocardservice;
+
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.netology.cardtocardservice.controler.TransferControler;
+import ru.netology.cardtocardservice.domain.OperationInfo;
+import ru.netology.cardtocardservice.domain.TransferAmount;
+import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.metrics.LatencyHistogram;
+import ru.netology.cardtocardservice.metrics.TransferMetrics;
+import ru.netology.cardtocardservice.metrics.TransferMetrics.Stage;
+import ru.netology.cardtocardservice.repository.TransferRepository;
+import ru.netology.cardtocardservice.service.CommissionEngine;
+import ru.netology.cardtocardservice.service.IdempotencyCache;
+import ru.netology.cardtocardservice.service.TransferService;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class TransferMetricsTest {
+
+    @Test
+    public void percentile_UniformValues_WithinRelativeError() {
+        //given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        //when
+        for (long i = 1; i <= 100000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        //then
+        Assertions.assertEquals(100000, histogram.count());
+        Assertions.assertEquals(100000L * 1000, histogram.max());
+        assertNear(50_000_000L, histogram.percentile(0.5));
+        assertNear(99_000_000L, histogram.percentile(0.99));
+        assertNear(99_900_000L, histogram.percentile(0.999));
+        Assertions.assertEquals(histogram.max(), histogram.percentile(1.0));
+    }
+
+    @Test
+    public void doTransaction_MetricsEnabled_RecordsStagesAndResults() {
+        //given
+        TransferMetrics metrics = new TransferMetrics(true);
+        TransferRepository repository = new TransferRepository();
+        TransferService transferService = new TransferService(repository, new CommissionEngine(), new IdempotencyCache(), metrics);
+
+        //when
+        String operationId = transferService.doTransaction(getTransferObj());
+        transferService.doConfirm(getOperationObj(operationId));
+
+        //then
+        Assertions.assertEquals(2, metrics.resultCount(TransferMetrics.SUCCESS));
+        Assertions.assertEquals(1, metrics.histogram(Stage.CHECK_ACCOUNTS).count());
+        Assertions.assertEquals(1, metrics.histogram(Stage.HOLD).count());
+        Assertions.assertEquals(1, metrics.histogram(Stage.CREATE_TRANSACTION).count());
+        Assertions.assertEquals(1, metrics.histogram(Stage.COMMIT_TRANSACTION).count());
+    }
+
+    @Test
+    public void doTransferBatch_MetricsEnabled_CountsEveryItemResult() {
+        //given
+        TransferMetrics metrics = new TransferMetrics(true);
+        TransferService transferService = new TransferService(new TransferRepository(), new CommissionEngine(), new IdempotencyCache(), metrics);
+        TransferControler transferControler = new TransferControler(transferService,
+                Validation.buildDefaultValidatorFactory().getValidator(), metrics);
+        TransferInfo unknownCard = getTransferObj();
+        unknownCard.setCardToNumber("4548987854650000");
+        TransferInfo overdraft = getTransferObj();
+        overdraft.getAmount().setValue(50_000_000);
+
+        //when
+        transferControler.doTransferBatch(Arrays.asList(getTransferObj(), null, unknownCard, overdraft));
+        String operationId = transferService.doTransaction(getTransferObj());
+        transferControler.commitBatch(List.of(getOperationObj(operationId), getOperationObj(operationId)));
+
+        //then
+        Assertions.assertEquals(3, metrics.resultCount(TransferMetrics.SUCCESS));
+        Assertions.assertEquals(1, metrics.resultCount(107));
+        Assertions.assertEquals(1, metrics.resultCount(100));
+        Assertions.assertEquals(1, metrics.resultCount(101));
+        Assertions.assertEquals(1, metrics.resultCount(104));
+    }
+
+    @Test
+    public void countResult_MetricsDisabled_CountsNothing() {
+        //given
+        TransferMetrics metrics = new TransferMetrics(false);
+
+        //when
+        metrics.record(Stage.VALIDATION, metrics.start());
+        metrics.countResult(102);
+
+        //then
+        Assertions.assertEquals(0, metrics.start());
+        Assertions.assertEquals(0, metrics.resultCount(102));
+        Assertions.assertEquals(0, metrics.histogram(Stage.VALIDATION).count());
+    }
+
+    private static void assertNear(long expected, long actual) {
+        Assertions.assertTrue(Math.abs(actual - expected) <= expected / 32, "expected ~" + expected + " but was " + actual);
+    }
+
+    private TransferInfo getTransferObj() {
+        TransferAmount transferAmount = new TransferAmount();
+        transferAmount.setValue(500);
+        transferAmount.setCurrency("RUR");
+
+        TransferInfo transferInfo = new TransferInfo();
+        transferInfo.setCardFromNumber("4548987854653322");
+        transferInfo.setCardToNumber("4548987854653311");
+        transferInfo.setCardFromCVV("581");
+        transferInfo.setCardFromValidTill("08/30");
+        transferInfo.setAmount(transferAmount);
+        return transferInfo;
+    }
+
+    private OperationInfo getOperationObj(String operationId) {
+        OperationInfo operationInfo = new OperationInfo();
+        operationInfo.setOperationId(operationId);
+        operationInfo.setCode("0000");
+        return operationInfo;
+    }
+}
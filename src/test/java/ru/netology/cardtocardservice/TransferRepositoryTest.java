@@ -0,0 +1,297 @@
+package ru.netology.cardtocardservice;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.netology.cardtocardservice.domain.AccountTransaction;
+import ru.netology.cardtocardservice.domain.ConfirmType;
+import ru.netology.cardtocardservice.domain.TransferAmount;
+import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.exception.AccountNotExist;
+import ru.netology.cardtocardservice.exception.OperationNotExist;
+import ru.netology.cardtocardservice.exception.TransferException;
+import ru.netology.cardtocardservice.repository.HoldExpiryWheel;
+import ru.netology.cardtocardservice.repository.TransferRepository;
+import ru.netology.cardtocardservice.repository.balance.BalanceStore;
+import ru.netology.cardtocardservice.repository.journal.LedgerJournal;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TransferRepositoryTest {
+    private TransferRepository transferRepository;
+
+    @BeforeEach
+    void setUp() {
+        transferRepository = new TransferRepository();
+    }
+
+    @Test
+    void createTransaction_HoldsTransferAndCommissionAmount() {
+        //given
+        TransferInfo transferInfo = getTransferObj(100, 1);
+
+        //when
+        transferRepository.createTransaction(transferInfo);
+        transferRepository.createTransaction(transferInfo);
+
+        //then
+        Assertions.assertEquals(202, transferRepository.getHoldAmount("4548987854653322"));
+        Assertions.assertEquals(0, transferRepository.getHoldAmount("4548987854653311"));
+    }
+
+    @Test
+    void commitTransaction_ReleasesHoldAndMovesAmount() {
+        //given
+        String operationId = transferRepository.createTransaction(getTransferObj(100, 1));
+        AccountTransaction transaction = transferRepository.getTransactions().get(operationId);
+
+        //when
+        transferRepository.commitTransaction(transaction);
+
+        //then
+        Assertions.assertEquals(0, transferRepository.getHoldAmount("4548987854653322"));
+        Assertions.assertEquals(10000000 - 101, transferRepository.getAccountRest().get("4548987854653322"));
+        Assertions.assertEquals(150, transferRepository.getAccountRest().get("4548987854653311"));
+        Assertions.assertEquals(1, transferRepository.getAccountRest().get("7060100000000001"));
+    }
+
+    @Test
+    void rollbackTransaction_ReleasesHoldOnlyOnce() {
+        //given
+        String firstId = transferRepository.createTransaction(getTransferObj(100, 1));
+        transferRepository.createTransaction(getTransferObj(50, 0));
+
+        //when
+        transferRepository.rollbackTransaction(firstId);
+        OperationNotExist exception = Assertions.assertThrows(OperationNotExist.class,
+                () -> transferRepository.rollbackTransaction(firstId));
+
+        //then
+        Assertions.assertEquals(105, exception.getId());
+        Assertions.assertEquals(50, transferRepository.getHoldAmount("4548987854653322"));
+        Assertions.assertEquals(10000000, transferRepository.getAccountRest().get("4548987854653322"));
+    }
+
+    @Test
+    void commitTransaction_ConcurrentConfirmsDebitOnlyOnce() throws Exception {
+        //given
+        String operationId = transferRepository.createTransaction(getTransferObj(100, 1));
+        AccountTransaction transaction = transferRepository.getTransactions().get(operationId);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger committed = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        //when
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    transferRepository.commitTransaction(transaction);
+                    committed.incrementAndGet();
+                } catch (OperationNotExist e) {
+                    Assertions.assertEquals(104, e.getId());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        //then
+        Assertions.assertEquals(1, committed.get());
+        Assertions.assertEquals(10000000 - 101, transferRepository.getAccountRest().get("4548987854653322"));
+        Assertions.assertEquals(150, transferRepository.getAccountRest().get("4548987854653311"));
+    }
+
+    @Test
+    void commitTransaction_ConcurrentTransfersKeepTotalBalance() throws Exception {
+        //given
+        List<AccountTransaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String operationId = transferRepository.createTransaction(getTransferObj(10, 1));
+            transactions.add(transferRepository.getTransactions().get(operationId));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        //when
+        List<Future<String>> futures = new ArrayList<>();
+        for (AccountTransaction transaction : transactions) {
+            futures.add(executor.submit(() -> transferRepository.commitTransaction(transaction)));
+        }
+        for (Future<String> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        //then
+        Assertions.assertEquals(10000000 - 11000, transferRepository.getAccountRest().get("4548987854653322"));
+        Assertions.assertEquals(50 + 10000, transferRepository.getAccountRest().get("4548987854653311"));
+        Assertions.assertEquals(1000, transferRepository.getAccountRest().get("7060100000000001"));
+        Assertions.assertEquals(0, transferRepository.getHoldAmount("4548987854653322"));
+    }
+
+    @Test
+    void foldCommission_KeepsCommissionBalanceExact() {
+        //given
+        for (int i = 0; i < 10; i++) {
+            String operationId = transferRepository.createTransaction(getTransferObj(100, 3));
+            transferRepository.commitTransaction(transferRepository.getTransactions().get(operationId));
+        }
+        int beforeFold = transferRepository.getAccountRest().get("7060100000000001");
+        Map<String, Integer> snapshot = Map.copyOf(transferRepository.getAccountRest());
+
+        //when
+        long folded = transferRepository.foldCommission();
+
+        //then
+        Assertions.assertEquals(30, beforeFold);
+        Assertions.assertEquals(30, snapshot.get("7060100000000001"));
+        Assertions.assertEquals(30, folded);
+        Assertions.assertEquals(30, transferRepository.getAccountRest().get("7060100000000001"));
+        Assertions.assertEquals(0, transferRepository.foldCommission());
+    }
+
+    @Test
+    void confirmTransactions_AppliesCommitsAndRollbacksInOnePass() {
+        //given
+        String commitId = transferRepository.createTransaction(getTransferObj(100, 1));
+        String rollbackId = transferRepository.createTransaction(getTransferObj(30, 0));
+        String tooLargeId = transferRepository.createTransaction(getTransferObj(9999999, 0));
+        Map<String, AccountTransaction> transactions = transferRepository.getTransactions();
+
+        //when
+        List<TransferException> errors = transferRepository.confirmTransactions(
+                List.of(transactions.get(commitId), transactions.get(rollbackId), transactions.get(commitId), transactions.get(tooLargeId)),
+                List.of(ConfirmType.COMMITED, ConfirmType.ROLLBACK, ConfirmType.COMMITED, ConfirmType.COMMITED));
+
+        //then
+        Assertions.assertNull(errors.get(0));
+        Assertions.assertNull(errors.get(1));
+        Assertions.assertEquals(104, errors.get(2).getId());
+        Assertions.assertEquals(102, errors.get(3).getId());
+        Assertions.assertEquals(ConfirmType.ROLLBACK, transactions.get(tooLargeId).getCommitCode());
+        Assertions.assertEquals(10000000 - 101, transferRepository.getAccountRest().get("4548987854653322"));
+        Assertions.assertEquals(0, transferRepository.getHoldAmount("4548987854653322"));
+    }
+
+    @Test
+    void holdExpiryWheel_RollsBackOnlyUnconfirmedTransactions() throws Exception {
+        //given
+        HoldExpiryWheel expiryWheel = new HoldExpiryWheel(Duration.ofMillis(50), Duration.ofMillis(10));
+        TransferRepository repository = new TransferRepository(BalanceStore.Type.MAP, LedgerJournal.NONE, expiryWheel, Duration.ZERO);
+        String expiredId = repository.createTransaction(getTransferObj(100, 1));
+        String committedId = repository.createTransaction(getTransferObj(50, 0));
+        repository.commitTransaction(repository.getTransactions().get(committedId));
+
+        //when
+        long deadline = System.currentTimeMillis() + 5000;
+        while (repository.getExpiredCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        expiryWheel.stop();
+
+        //then
+        Assertions.assertEquals(1, repository.getExpiredCount());
+        Assertions.assertEquals(ConfirmType.ROLLBACK, repository.getTransactions().get(expiredId).getCommitCode());
+        Assertions.assertEquals(ConfirmType.COMMITED, repository.getTransactions().get(committedId).getCommitCode());
+        Assertions.assertEquals(0, repository.getHoldAmount("4548987854653322"));
+        Assertions.assertEquals(10000000 - 50, repository.getAccountRest().get("4548987854653322"));
+    }
+
+    @Test
+    void archiveFinalized_MovesFinalizedTransactionsOutOfHotTable() {
+        //given
+        TransferRepository repository = new TransferRepository(BalanceStore.Type.MAP, LedgerJournal.NONE,
+                HoldExpiryWheel.DISABLED, Duration.ofNanos(1));
+        String committedId = repository.createTransaction(getTransferObj(100, 1));
+        String rolledBackId = repository.createTransaction(getTransferObj(50, 0));
+        String pendingId = repository.createTransaction(getTransferObj(10, 0));
+        repository.commitTransaction(repository.getTransactions().get(committedId));
+        repository.rollbackTransaction(rolledBackId);
+
+        //when
+        int moved = repository.archiveFinalized();
+
+        //then
+        Assertions.assertEquals(2, moved);
+        Assertions.assertEquals(Set.of(pendingId), repository.getTransactions().keySet());
+        Assertions.assertEquals(ConfirmType.COMMITED, repository.getArchivedState(committedId));
+        Assertions.assertEquals(ConfirmType.ROLLBACK, repository.getArchivedState(rolledBackId));
+        Assertions.assertNull(repository.getArchivedState(pendingId));
+        Assertions.assertEquals(List.of(pendingId), repository.findAccountTransactions("4548987854653311", null)
+                .map(AccountTransaction::getOperationId).toList());
+        OperationNotExist exception = Assertions.assertThrows(OperationNotExist.class,
+                () -> repository.rollbackTransaction(rolledBackId));
+        Assertions.assertEquals(105, exception.getId());
+    }
+
+    @Test
+    void closeAccounts_PendingCreditTransfer_KeepsAccountOpen() {
+        //given
+        String[] accounts = {"4111111111111111"};
+        long[] amounts = {0};
+        transferRepository.openAccounts(accounts, amounts, new boolean[1]);
+        TransferInfo transferInfo = getTransferObj(100, 1);
+        transferInfo.setCardToNumber("4111111111111111");
+        String operationId = transferRepository.createTransaction(transferInfo);
+
+        //when
+        int closed = transferRepository.closeAccounts(accounts, amounts);
+        transferRepository.commitTransaction(transferRepository.getTransactions().get(operationId));
+
+        //then
+        Assertions.assertEquals(0, closed);
+        Assertions.assertEquals(100, transferRepository.getAccountRest().get("4111111111111111"));
+    }
+
+    @Test
+    void commitTransaction_CreditAccountClosedAfterCreate_RollsBackWithAccountNotExist() {
+        //given
+        String[] accounts = {"4111111111111111"};
+        long[] amounts = {0};
+        transferRepository.openAccounts(accounts, amounts, new boolean[1]);
+        transferRepository.closeAccounts(accounts, amounts);
+        //транзакция на счет, закрытый параллельно с ее созданием
+        TransferInfo transferInfo = getTransferObj(100, 1);
+        transferInfo.setCardToNumber("4111111111111111");
+        AccountTransaction transaction = transferRepository.getTransactions().get(transferRepository.createTransaction(transferInfo));
+
+        //when
+        AccountNotExist exception = Assertions.assertThrows(AccountNotExist.class,
+                () -> transferRepository.commitTransaction(transaction));
+
+        //then
+        Assertions.assertEquals(100, exception.getId());
+        Assertions.assertEquals(ConfirmType.ROLLBACK, transaction.getCommitCode());
+        Assertions.assertFalse(transferRepository.hasAccount("4111111111111111"));
+        Assertions.assertEquals(0, transferRepository.getHoldAmount("4548987854653322"));
+    }
+
+    private TransferInfo getTransferObj(Integer value, Integer commission) {
+        TransferAmount transferAmount = new TransferAmount();
+        transferAmount.setValue(value);
+        transferAmount.setCurrency("RUR");
+
+        TransferInfo transferInfo = new TransferInfo();
+        transferInfo.setCardFromNumber("4548987854653322");
+        transferInfo.setCardToNumber("4548987854653311");
+        transferInfo.setCardFromCVV("956");
+        transferInfo.setCardFromValidTill("08/30");
+        transferInfo.setAmount(transferAmount);
+        transferInfo.setCommissionAmount(commission);
+        return transferInfo;
+    }
+}
@@ -3,15 +3,25 @@ package ru.netology.cardtocardservice;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import ru.netology.cardtocardservice.domain.*;
+import ru.netology.cardtocardservice.exception.OperationNotExist;
+import ru.netology.cardtocardservice.metrics.TransferMetrics;
 import ru.netology.cardtocardservice.repository.Storagable;
+import ru.netology.cardtocardservice.repository.TransferRepository;
+import ru.netology.cardtocardservice.repository.balance.BalanceStore;
+import ru.netology.cardtocardservice.repository.journal.LedgerJournal;
+import ru.netology.cardtocardservice.service.CommissionEngine;
+import ru.netology.cardtocardservice.service.IdempotencyCache;
 import ru.netology.cardtocardservice.service.TransferService;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 @ExtendWith(MockitoExtension.class)
@@ -19,6 +29,15 @@ public class TransferServiceTest {
     @Mock
     Storagable transferRepository;
 
+    @Spy
+    CommissionEngine commissionEngine = new CommissionEngine();
+
+    @Spy
+    IdempotencyCache idempotencyCache = new IdempotencyCache();
+
+    @Spy
+    TransferMetrics transferMetrics = new TransferMetrics(false);
+
     @InjectMocks
     TransferService transferService;
 
@@ -26,12 +45,11 @@ public class TransferServiceTest {
     void doTransaction_ReturnOperationIdString() {
         //given
         TransferInfo transferInfo = getTransferObj();
-        Mockito.doReturn(Map.of("4548987854653322", 1000,
-                        "4548987854653311", 50,
-                        "7060100000000001", 0)
-                ).when(this.transferRepository).getAccountRest();
+        Mockito.doReturn(true).when(this.transferRepository).hasAccount("4548987854653322");
+        Mockito.doReturn(true).when(this.transferRepository).hasAccount("4548987854653311");
+        Mockito.doReturn(1000L).when(this.transferRepository).getBalance("4548987854653322");
 
-        Mockito.doReturn(new HashMap<>()).when(this.transferRepository).getTransactions();
+        Mockito.doReturn(0L).when(this.transferRepository).getHoldAmount("4548987854653322");
         Mockito.doReturn("11234567890").when(this.transferRepository).createTransaction(transferInfo);
 
         //when
@@ -41,6 +59,75 @@ public class TransferServiceTest {
         Assertions.assertNotNull(operationId);
     }
 
+    @Test
+    void doTransaction_BalanceAboveIntegerRange_RegistersAndCommits() {
+        //given
+        TransferRepository repository = new TransferRepository(BalanceStore.Type.PRIMITIVE, LedgerJournal.NONE);
+        repository.openAccount("4548987854650001", 3_000_000_000L);
+        TransferService service = new TransferService(repository);
+        TransferInfo transferInfo = getTransferObj();
+        transferInfo.setCardFromNumber("4548987854650001");
+        transferInfo.setCardFromValidTill("12/99");
+
+        //when
+        String operationId = service.doTransaction(transferInfo);
+        service.doConfirm(getOperationObj("0000", operationId));
+
+        //then
+        Assertions.assertEquals(3_000_000_000L - 100 - transferInfo.getCommissionAmount(), repository.getBalance("4548987854650001"));
+        Assertions.assertEquals(0L, repository.getHoldAmount("4548987854650001"));
+    }
+
+    @Test
+    void doTransaction_IdempotencyKey_DoesNotKeepCvvInCache() {
+        //given
+        TransferRepository repository = new TransferRepository();
+        TransferService service = new TransferService(repository, commissionEngine, idempotencyCache, transferMetrics);
+        TransferInfo transferInfo = getTransferObj();
+        transferInfo.setCardFromValidTill("12/99");
+        TransferInfo repeated = getTransferObj();
+        repeated.setCardFromValidTill("12/99");
+        repeated.setCardFromCVV("123");
+        ArgumentCaptor<Object> request = ArgumentCaptor.forClass(Object.class);
+
+        //when
+        String operationId = service.doTransaction(transferInfo, "key-1");
+        String repeatedOperationId = service.doTransaction(repeated, "key-1");
+
+        //then
+        Mockito.verify(idempotencyCache, Mockito.times(2)).execute(Mockito.eq("key-1"), request.capture(), Mockito.any());
+        Assertions.assertEquals(operationId, repeatedOperationId);
+        Assertions.assertFalse(request.getAllValues().get(0).toString().contains("956"));
+        Assertions.assertEquals(1, repository.getTransactions().size());
+    }
+
+    @Test
+    void doTransactionBatch_ChecksBalanceOncePerDebitCard() {
+        //given
+        TransferInfo first = getTransferObj();
+        first.getAmount().setValue(600);
+        TransferInfo second = getTransferObj();
+        second.getAmount().setValue(600);
+        TransferInfo unknownCard = getTransferObj();
+        unknownCard.setCardFromNumber("4548987854650000");
+
+        Mockito.doReturn(true).when(this.transferRepository).hasAccount("4548987854653322");
+        Mockito.doReturn(true).when(this.transferRepository).hasAccount("4548987854653311");
+        Mockito.doReturn(false).when(this.transferRepository).hasAccount("4548987854650000");
+        Mockito.doReturn(1000L).when(this.transferRepository).getBalance("4548987854653322");
+        Mockito.doReturn(0L).when(this.transferRepository).getHoldAmount("4548987854653322");
+        Mockito.doReturn(List.of("1")).when(this.transferRepository).createTransactions(List.of(first));
+
+        //when
+        List<BatchItemResult> results = this.transferService.doTransactionBatch(List.of(first, second, unknownCard));
+
+        //then
+        Assertions.assertEquals("1", results.get(0).getOperationId());
+        Assertions.assertEquals(101, results.get(1).getError().getId());
+        Assertions.assertEquals(99, results.get(2).getError().getId());
+        Mockito.verify(this.transferRepository, Mockito.times(1)).getHoldAmount("4548987854653322");
+    }
+
     @Test
     void doConfirm_CommitedAction_ReturnOperationIdValue() {
 
@@ -49,10 +136,7 @@ public class TransferServiceTest {
 
         OperationInfo operationInfo = getOperationObj("0000");
         TransferInfo transferInfo = getTransferObj();
-        Mockito.doReturn(Map.of("4548987854653322", 1000,
-                "4548987854653311", 50,
-                "7060100000000001", 0)
-        ).when(this.transferRepository).getAccountRest();
+        Mockito.doReturn(1000L).when(this.transferRepository).getBalance("4548987854653322");
 
         Map<String, AccountTransaction> transactions = getTransaction(transferInfo);
 
@@ -72,8 +156,6 @@ public class TransferServiceTest {
         OperationInfo operationInfo = getOperationObj("0001");
         TransferInfo transferInfo = getTransferObj();
 
-        Mockito.doReturn(Map.of("4548987854653322", 1000)).when(this.transferRepository).getAccountRest();
-
         Map<String, AccountTransaction> transactions = getTransaction(transferInfo);
 
         Mockito.doReturn(transactions).when(this.transferRepository).getTransactions();
@@ -88,9 +170,53 @@ public class TransferServiceTest {
         Assertions.assertEquals(expected, result);
     }
 
+    @Test
+    void doConfirm_ArchivedTransaction_ThrowsAlreadyCommited() {
+        //given
+        OperationInfo operationInfo = getOperationObj("0000");
+
+        Mockito.doReturn(Map.of()).when(this.transferRepository).getTransactions();
+        Mockito.doReturn(ConfirmType.COMMITED).when(this.transferRepository).getArchivedState("7777");
+
+        //when
+        OperationNotExist exception = Assertions.assertThrows(OperationNotExist.class,
+                () -> this.transferService.doConfirm(operationInfo));
+
+        //then
+        Assertions.assertEquals(104, exception.getId());
+    }
+
+    @Test
+    void doConfirmBatch_ReturnsResultPerOperation() {
+        //given
+        TransferInfo transferInfo = getTransferObj();
+        Map<String, AccountTransaction> transactions = getTransaction(transferInfo);
+
+        OperationInfo commit = getOperationObj("0000");
+        OperationInfo unknownAction = getOperationObj("0005");
+        OperationInfo absent = getOperationObj("0000");
+        absent.setOperationId("8888");
+
+        Mockito.doReturn(transactions).when(this.transferRepository).getTransactions();
+        Mockito.doReturn(Collections.singletonList(null)).when(this.transferRepository)
+                .confirmTransactions(List.of(transactions.get("7777")), List.of(ConfirmType.COMMITED));
+
+        //when
+        List<BatchItemResult> results = this.transferService.doConfirmBatch(List.of(commit, unknownAction, absent));
+
+        //then
+        Assertions.assertEquals("7777", results.get(0).getOperationId());
+        Assertions.assertEquals(106, results.get(1).getError().getId());
+        Assertions.assertEquals(103, results.get(2).getError().getId());
+    }
+
     private OperationInfo getOperationObj(String typeConfim) {
+        return getOperationObj(typeConfim, "7777");
+    }
+
+    private OperationInfo getOperationObj(String typeConfim, String operationId) {
         OperationInfo operationInfo = new OperationInfo();
-        operationInfo.setOperationId("7777");
+        operationInfo.setOperationId(operationId);
         operationInfo.setCode(typeConfim);
         return operationInfo;
     }
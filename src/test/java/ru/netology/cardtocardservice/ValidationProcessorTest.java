@@ -0,0 +1,101 @@
+package ru.netology.cardtocardservice;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.netology.cardtocardservice.domain.TransferInfo;
+import ru.netology.cardtocardservice.exception.DateInvalidException;
+import ru.netology.cardtocardservice.processor.CurrentMonth;
+import ru.netology.cardtocardservice.processor.ValidationProcessor;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+public class ValidationProcessorTest {
+
+    @Test
+    void validate_CardValidTillCurrentMonth_Passes() {
+        //given
+        CurrentMonth currentMonth = new CurrentMonth(new MutableClock(Instant.parse("2025-08-31T23:59:59Z")));
+
+        //when
+        //then
+        Assertions.assertDoesNotThrow(() -> ValidationProcessor.validate(getTransferObj("08/25"), currentMonth));
+        Assertions.assertDoesNotThrow(() -> ValidationProcessor.validate(getTransferObj("01/26"), currentMonth));
+    }
+
+    @Test
+    void validate_ExpiredCard_ThrowsDateInvalid() {
+        //given
+        CurrentMonth currentMonth = new CurrentMonth(new MutableClock(Instant.parse("2025-08-01T00:00:00Z")));
+
+        //when
+        DateInvalidException exception = Assertions.assertThrows(DateInvalidException.class,
+                () -> ValidationProcessor.validate(getTransferObj("07/25"), currentMonth));
+
+        //then
+        Assertions.assertEquals(110, exception.getId());
+        Assertions.assertEquals("Дата действия карты меньше текущей даты. Операция невозможна", exception.getMessage());
+    }
+
+    @Test
+    void currentMonth_RefreshesAtMonthBoundary() {
+        //given
+        MutableClock clock = new MutableClock(Instant.parse("2025-08-31T23:59:59Z"));
+        CurrentMonth currentMonth = new CurrentMonth(clock);
+        int august = currentMonth.index();
+
+        //when
+        clock.instant = Instant.parse("2025-09-01T00:00:00Z");
+
+        //then
+        Assertions.assertEquals(CurrentMonth.index(2025, 8), august);
+        Assertions.assertEquals(CurrentMonth.index(2025, 9), currentMonth.index());
+    }
+
+    @Test
+    void isValidPeriod_MalformedValue_ReturnsFalse() {
+        //given
+        int currentMonth = CurrentMonth.index(2025, 8);
+
+        //when
+        //then
+        Assertions.assertFalse(ValidationProcessor.isValidPeriod("13/30", currentMonth));
+        Assertions.assertFalse(ValidationProcessor.isValidPeriod("1a/30", currentMonth));
+        Assertions.assertFalse(ValidationProcessor.isValidPeriod("0830", currentMonth));
+        Assertions.assertFalse(ValidationProcessor.isValidPeriod(null, currentMonth));
+    }
+
+    private TransferInfo getTransferObj(String validTill) {
+        TransferInfo transferInfo = new TransferInfo();
+        transferInfo.setCardFromNumber("4548987854653322");
+        transferInfo.setCardFromValidTill(validTill);
+        transferInfo.setCardFromCVV("123");
+        transferInfo.setCardToNumber("4548987854653311");
+        return transferInfo;
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}